@@ -0,0 +1,130 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark of {@link RedBlackTree#applyBatch(List, OutputStream, Utility)} against applying the same
+ * InsertBook and DeleteBook commands one by one, over batch sizes from 1 to 100k.
+ *
+ * The library holds the books 2, 4, ..., 2n and is rebuilt with {@link RedBlackTree#loadBooks(List)}
+ * before every measured batch. A batch inserts --inserts percent new odd book IDs and deletes existing
+ * even ones for the rest, all picked at random without repeats. For every batch size the benchmark
+ * reports the nanoseconds per command of both ways, averaged over --runs batches after --warmup batches,
+ * and the color flips of the last batch both ways. A batch of less than a quarter of the library is
+ * applied command by command, so both ways take the same time and give the same color flips, a larger
+ * batch rebuilds the tree, which changes the color flips and has to hold a large part of the library to
+ * win, as the rebuild walks the whole library.
+ *
+ * Usage: java BatchBenchmark [--books 100000] [--sizes 1,10,100,1000,10000,100000] [--inserts 50]
+ * [--runs 5] [--warmup 3] [--seed 42]
+ */
+public class BatchBenchmark {
+
+	public static void main(String[] args) throws IOException {
+		int books = 100_000;
+		int[] sizes = {1, 10, 100, 1_000, 10_000, 100_000};
+		int inserts = 50;
+		int runs = 5;
+		int warmup = 3;
+		long seed = 42;
+		for(int i = 0; i + 1 < args.length; i += 2) {
+			String value = args[i + 1];
+			switch(args[i]) {
+			case "--books":
+				books = Integer.parseInt(value);
+				break;
+			case "--sizes":
+				String[] parts = value.split(",");
+				sizes = new int[parts.length];
+				for(int j = 0; j < parts.length; j++) {
+					sizes[j] = Integer.parseInt(parts[j].trim());
+				}
+				break;
+			case "--inserts":
+				inserts = Integer.parseInt(value);
+				break;
+			case "--runs":
+				runs = Integer.parseInt(value);
+				break;
+			case "--warmup":
+				warmup = Integer.parseInt(value);
+				break;
+			case "--seed":
+				seed = Long.parseLong(value);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+		Random random = new Random(seed);
+		System.out.printf("%8s %16s %16s %14s %14s%n", "batch", "batch ns/cmd", "single ns/cmd", "batch flips", "single flips");
+		for(int size : sizes) {
+			if(size > books) {
+				throw new IllegalArgumentException("A batch of " + size + " commands needs at least as many books");
+			}
+			long batchTime = 0;
+			long singleTime = 0;
+			int batchFlips = 0;
+			int singleFlips = 0;
+			for(int run = -warmup; run < runs; run++) {
+				List<Command> batch = batch(books, size, inserts, random);
+				RedBlackTree library = library(books);
+				int loaded = library.colorFlipCount;
+				long start = System.nanoTime();
+				library.applyBatch(batch, OutputStream.nullOutputStream(), new Utility());
+				long batched = System.nanoTime() - start;
+				int flips = library.colorFlipCount - loaded;
+
+				library = library(books);
+				Utility utility = new Utility();
+				start = System.nanoTime();
+				for(Command command : batch) {
+					CommandExecutor.execute(command, library, utility, OutputStream.nullOutputStream());
+				}
+				long single = System.nanoTime() - start;
+				if(run >= 0) {
+					batchTime += batched;
+					singleTime += single;
+					batchFlips = flips;
+					singleFlips = library.colorFlipCount - loaded;
+				}
+			}
+			System.out.printf("%8d %16.0f %16.0f %14d %14d%n", size, (double) batchTime / runs / size,
+					(double) singleTime / runs / size, batchFlips, singleFlips);
+		}
+	}
+
+	//inserts of new odd ids and deletes of existing even ids, no id appears twice
+	private static List<Command> batch(int books, int size, int inserts, Random random) {
+		List<Command> batch = new ArrayList<>(size);
+		int[] picked = new int[books];
+		for(int i = 0; i < books; i++) {
+			picked[i] = i;
+		}
+		for(int i = 0; i < size; i++) {
+			int j = i + random.nextInt(books - i);
+			int index = picked[j];
+			picked[j] = picked[i];
+			picked[i] = index;
+			if(random.nextInt(100) < inserts) {
+				int bookId = 2 * index + 1;
+				batch.add(Command.insertBook(bookId, "New" + bookId, "Author", "Yes"));
+			} else {
+				batch.add(Command.deleteBook(2 * (index + 1)));
+			}
+		}
+		return batch;
+	}
+
+	private static RedBlackTree library(int books) {
+		RedBlackTree library = new RedBlackTree();
+		List<Book> batch = new ArrayList<>(books);
+		for(int i = 0; i < books; i++) {
+			batch.add(library.getBook(2 * (i + 1), "Book" + i, "Author" + (i % 1000), "Yes"));
+		}
+		library.loadBooks(batch);
+		return library;
+	}
+}
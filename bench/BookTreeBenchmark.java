@@ -0,0 +1,158 @@
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark of the memory footprint and the insert and lookup times of the book trees.
+ *
+ * For every size n and tree, the benchmark inserts the books 2, 4, ..., 2n in random order into a new
+ * {@link RedBlackTree} of {@link Book} objects, an {@link ArrayBookTree} or an {@link OffHeapBookTree},
+ * then looks up --lookups random books, once with a search that only reads the keys and once getting the
+ * book, which for the index trees is a copy of it. It reports the nanoseconds per insert, search and get,
+ * the bytes a get allocates on average, which are the copy and for the off-heap tree its decoded strings
+ * unless the JIT removes them, and the bytes per book: the heap in use after a garbage collection with
+ * the tree minus the heap in use once the tree is dropped, plus the direct memory of the off-heap tree.
+ * All books share the same three strings, so the footprint is that of the tree without the text of the
+ * books. Only one tree is alive at a time, so the largest tree decides the heap that is needed, about
+ * 100 bytes per book for the library tree.
+ *
+ * Usage: java -Xmx4g BookTreeBenchmark [--books 1000000,10000000] [--trees book,array,offheap]
+ * [--lookups 5000000] [--seed 42]
+ */
+public class BookTreeBenchmark {
+
+	private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	private enum Tree {
+		BOOK, ARRAY, OFFHEAP
+	}
+
+	public static void main(String[] args) {
+		int[] sizes = {1_000_000, 10_000_000};
+		List<Tree> trees = List.of(Tree.values());
+		int lookups = 5_000_000;
+		long seed = 42;
+		for(int i = 0; i + 1 < args.length; i += 2) {
+			String value = args[i + 1];
+			switch(args[i]) {
+			case "--books":
+				String[] parts = value.split(",");
+				sizes = new int[parts.length];
+				for(int j = 0; j < parts.length; j++) {
+					sizes[j] = Integer.parseInt(parts[j].trim());
+				}
+				break;
+			case "--trees":
+				String[] names = value.split(",");
+				Tree[] parsed = new Tree[names.length];
+				for(int j = 0; j < names.length; j++) {
+					parsed[j] = Tree.valueOf(names[j].trim().toUpperCase());
+				}
+				trees = List.of(parsed);
+				break;
+			case "--lookups":
+				lookups = Integer.parseInt(value);
+				break;
+			case "--seed":
+				seed = Long.parseLong(value);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+		System.out.printf("%-8s %10s %12s %14s %14s %14s %14s%n", "tree", "books", "bytes/book", "insert ns/op", "search ns/op", "get ns/op", "get B/op");
+		for(int books : sizes) {
+			int[] order = shuffled(books, new Random(seed));
+			int[] probes = new int[lookups];
+			Random random = new Random(seed + 1);
+			for(int i = 0; i < lookups; i++) {
+				probes[i] = 2 * (random.nextInt(books) + 1);
+			}
+			for(Tree tree : trees) {
+				run(tree, order, probes);
+			}
+		}
+	}
+
+	private static void run(Tree tree, int[] order, int[] probes) {
+		RedBlackTree library = null;
+		IndexedBookTree indexed = null;
+		long start = System.nanoTime();
+		if(tree == Tree.BOOK) {
+			library = new RedBlackTree();
+			for(int bookId : order) {
+				library.insertBook(bookId, "Book", "Author", "Yes");
+			}
+		} else {
+			indexed = tree == Tree.ARRAY ? new ArrayBookTree() : new OffHeapBookTree();
+			for(int bookId : order) {
+				indexed.insertBook(bookId, "Book", "Author", "Yes");
+			}
+		}
+		long inserted = System.nanoTime() - start;
+		long bytes = usedHeap();
+		if(indexed instanceof OffHeapBookTree) {
+			bytes += ((OffHeapBookTree) indexed).getOffHeapBytes();
+		}
+		//the ids of the books found are summed up so that the JIT cannot drop the search
+		long checksum = 0;
+		start = System.nanoTime();
+		if(library != null) {
+			for(int bookId : probes) {
+				checksum += library.getBookFromLibrary(library.getRoot(), bookId) != null ? 1 : 0;
+			}
+		} else {
+			for(int bookId : probes) {
+				checksum += indexed.contains(bookId) ? 1 : 0;
+			}
+		}
+		long searched = System.nanoTime() - start;
+		long allocated = THREADS.getCurrentThreadAllocatedBytes();
+		start = System.nanoTime();
+		if(library != null) {
+			for(int bookId : probes) {
+				checksum += library.getBookFromLibrary(library.getRoot(), bookId).getBookId();
+			}
+		} else {
+			for(int bookId : probes) {
+				checksum += indexed.getBookFromLibrary(bookId).getBookId();
+			}
+		}
+		long looked = System.nanoTime() - start;
+		allocated = THREADS.getCurrentThreadAllocatedBytes() - allocated;
+		if(checksum == 0) {
+			throw new IllegalStateException("No book was found");
+		}
+		//the heap of the tree is what the collector frees once the tree is dropped
+		library = null;
+		indexed = null;
+		bytes -= usedHeap();
+		System.out.printf("%-8s %10d %12.1f %14.0f %14.0f %14.0f %14.1f%n", tree.name().toLowerCase(), order.length,
+				(double) bytes / order.length, (double) inserted / order.length, (double) searched / probes.length,
+				(double) looked / probes.length, (double) allocated / probes.length);
+	}
+
+	//the ids 2, 4, ..., 2n in random order
+	private static int[] shuffled(int books, Random random) {
+		int[] order = new int[books];
+		for(int i = 0; i < books; i++) {
+			order[i] = 2 * (i + 1);
+		}
+		for(int i = books - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int bookId = order[i];
+			order[i] = order[j];
+			order[j] = bookId;
+		}
+		return order;
+	}
+
+	//the heap in use after the garbage collector ran a few times, so that it settled
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for(int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
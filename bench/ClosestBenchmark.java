@@ -0,0 +1,152 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Benchmark of the FindClosestBook search against the search it replaced, in nanoseconds and bytes
+ * allocated per call.
+ *
+ * The library holds the books 2, 4, ..., 2n. Every call looks for the closest books to a random ID,
+ * either a book of the library (hit) or an odd ID between two books (miss), where both neighbours are
+ * at the same distance and are found. The navigation search is {@link RedBlackTree#floor(int)} and
+ * {@link RedBlackTree#higher(int)} as findClosestBooks uses them; the map search is the walk the
+ * library used before, which goes from the root to a leaf and keeps the closest books so far in a
+ * shared {@link TreeMap}, clearing and refilling it, then reads them back in order. Writing the books
+ * is the same both ways and is left out, the IDs of the books found are summed up instead. The bytes
+ * per call are measured with the allocation counter of the thread.
+ *
+ * Usage: java ClosestBenchmark [--books 10000,1000000] [--probes hit,miss] [--ops 5000000]
+ * [--warmup 1000000] [--seed 42]
+ */
+public class ClosestBenchmark {
+
+	private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	//the map the library kept as a field for the closest books
+	private static final TreeMap<Integer, Book> treeMap = new TreeMap<>();
+	//the ids of the books found are summed up so that the JIT cannot drop the search
+	private static long checksum;
+
+	public static void main(String[] args) {
+		int[] sizes = {10_000, 1_000_000};
+		List<String> probes = List.of("hit", "miss");
+		int ops = 5_000_000;
+		int warmup = 1_000_000;
+		long seed = 42;
+		for(int i = 0; i + 1 < args.length; i += 2) {
+			String value = args[i + 1];
+			switch(args[i]) {
+			case "--books":
+				String[] parts = value.split(",");
+				sizes = new int[parts.length];
+				for(int j = 0; j < parts.length; j++) {
+					sizes[j] = Integer.parseInt(parts[j].trim());
+				}
+				break;
+			case "--probes":
+				probes = List.of(value.split(","));
+				break;
+			case "--ops":
+				ops = Integer.parseInt(value);
+				break;
+			case "--warmup":
+				warmup = Integer.parseInt(value);
+				break;
+			case "--seed":
+				seed = Long.parseLong(value);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+		System.out.printf("%-10s %-6s %-10s %10s %10s%n", "books", "probe", "search", "ns/op", "bytes/op");
+		for(int books : sizes) {
+			RedBlackTree library = new RedBlackTree();
+			List<Book> catalogue = new ArrayList<>(books);
+			for(int i = 0; i < books; i++) {
+				catalogue.add(library.getBook(2 * (i + 1), "Book" + i, "Author" + (i % 1000), "Yes"));
+			}
+			library.loadBooks(catalogue);
+			for(String probe : probes) {
+				int[] bookIds = new int[ops];
+				Random random = new Random(seed);
+				for(int i = 0; i < ops; i++) {
+					int bookId = 2 * (random.nextInt(books) + 1);
+					bookIds[i] = probe.trim().equals("miss") ? bookId - 1 : bookId;
+				}
+				for(boolean navigation : new boolean[] {true, false}) {
+					run(library, bookIds, warmup, navigation);
+					long thread = Thread.currentThread().getId();
+					long allocatedBefore = THREADS.getThreadAllocatedBytes(thread);
+					long start = System.nanoTime();
+					run(library, bookIds, ops, navigation);
+					long elapsed = System.nanoTime() - start;
+					long allocated = THREADS.getThreadAllocatedBytes(thread) - allocatedBefore;
+					System.out.printf("%-10d %-6s %-10s %10.1f %10.1f%n", books, probe.trim(), navigation ? "navigation" : "map",
+							(double) elapsed / ops, (double) allocated / ops);
+				}
+			}
+		}
+		System.out.println("checksum " + checksum);
+	}
+
+	private static void run(RedBlackTree library, int[] bookIds, int calls, boolean navigation) {
+		for(int i = 0; i < calls; i++) {
+			int bookId = bookIds[i % bookIds.length];
+			if(navigation) {
+				closest(library, bookId);
+			} else {
+				closestInMap(library.getRoot(), bookId);
+			}
+		}
+	}
+
+	//picks the books findClosestBooks writes from the floor and the next higher book
+	private static void closest(RedBlackTree library, int bookId) {
+		Book below = library.floor(bookId);
+		if(below != null && below.getBookId() == bookId) {
+			checksum += below.getBookId();
+			return;
+		}
+		Book above = library.higher(bookId);
+		if(below == null || (above != null && above.getBookId() - bookId < bookId - below.getBookId())) {
+			checksum += above == null ? 0 : above.getBookId();
+		} else if(above == null || bookId - below.getBookId() < above.getBookId() - bookId) {
+			checksum += below.getBookId();
+		} else {
+			checksum += below.getBookId() + above.getBookId();
+		}
+	}
+
+	//the search of findClosestBooks before the navigation methods
+	private static void closestInMap(Book root, int bookId) {
+		Book currentNode = root;
+		int closest = root.getBookId();
+		while(currentNode != null) {
+			if(bookId == currentNode.getBookId()) {
+				treeMap.clear();
+				treeMap.put(currentNode.getBookId(), currentNode);
+				break;
+			}
+			if(Math.abs(bookId - currentNode.getBookId()) < Math.abs(bookId - closest)) {
+				closest = currentNode.getBookId();
+				treeMap.clear();
+				treeMap.put(currentNode.getBookId(), currentNode);
+			} else if(Math.abs(bookId - currentNode.getBookId()) == Math.abs(bookId - closest)) {
+				treeMap.put(currentNode.getBookId(), currentNode);
+			}
+			if(bookId < currentNode.getBookId()) {
+				currentNode = currentNode.left;
+			} else {
+				currentNode = currentNode.right;
+			}
+		}
+		for(Map.Entry<Integer, Book> entry : treeMap.entrySet()) {
+			checksum += entry.getValue().getBookId();
+		}
+		treeMap.clear();
+	}
+}
@@ -0,0 +1,214 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Benchmark of the throughput of a {@link ConcurrentLibrary} under a mixed workload as the number of
+ * threads grows.
+ *
+ * The library holds the books 2, 4, ..., 2n. Every thread runs the same mix of commands for --seconds
+ * seconds: --reads percent PrintBook and FindClosestBook on books picked by the {@link KeyDistribution},
+ * --borrows percent BorrowBook followed by ReturnBook of the same book, and the rest InsertBook or
+ * DeleteBook of odd book IDs that only this thread inserts and deletes, as the library does not check
+ * that the ID of a new book is unused. For comparison, with --coarse true the same commands are run on a
+ * plain {@link RedBlackTree} through the {@link CommandExecutor} under one lock, like a library that
+ * serializes every command. The benchmark reports the commands per second of all threads and per thread.
+ *
+ * Usage: java ConcurrentBenchmark [--threads 1,2,4,8,16,32] [--books 1000000] [--seconds 5]
+ * [--reads 60] [--borrows 30] [--distribution random] [--coarse false] [--seed 42]
+ */
+public class ConcurrentBenchmark {
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int[] threadCounts = {1, 2, 4, 8, 16, 32};
+		int books = 1_000_000;
+		double seconds = 5;
+		int reads = 60;
+		int borrows = 30;
+		KeyDistribution distribution = KeyDistribution.RANDOM;
+		boolean coarse = false;
+		long seed = 42;
+		for(int i = 0; i + 1 < args.length; i += 2) {
+			String value = args[i + 1];
+			switch(args[i]) {
+			case "--threads":
+				String[] parts = value.split(",");
+				threadCounts = new int[parts.length];
+				for(int j = 0; j < parts.length; j++) {
+					threadCounts[j] = Integer.parseInt(parts[j].trim());
+				}
+				break;
+			case "--books":
+				books = Integer.parseInt(value);
+				break;
+			case "--seconds":
+				seconds = Double.parseDouble(value);
+				break;
+			case "--reads":
+				reads = Integer.parseInt(value);
+				break;
+			case "--borrows":
+				borrows = Integer.parseInt(value);
+				break;
+			case "--distribution":
+				distribution = KeyDistribution.valueOf(value.trim().toUpperCase());
+				break;
+			case "--coarse":
+				coarse = Boolean.parseBoolean(value);
+				break;
+			case "--seed":
+				seed = Long.parseLong(value);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+		if(reads < 0 || borrows < 0 || reads + borrows > 100) {
+			throw new IllegalArgumentException("The reads and borrows must be percentages that add up to at most 100");
+		}
+		Library library = coarse ? new CoarseLibrary() : new StripedLibrary();
+		for(int i = 0; i < books; i++) {
+			library.execute(Command.insertBook(bookId(i), "Book" + i, "Author" + (i % 1000), "Yes"));
+		}
+		System.out.printf("%8s %14s %16s%n", "threads", "commands/s", "commands/s/thread");
+		for(int threads : threadCounts) {
+			run(library, books, threads, reads, borrows, distribution, seconds, seed);
+		}
+	}
+
+	private static void run(Library library, int books, int threadCount, int reads, int borrows,
+			KeyDistribution distribution, double seconds, long seed) throws InterruptedException {
+		AtomicBoolean running = new AtomicBoolean(true);
+		LongAdder commands = new LongAdder();
+		CountDownLatch ready = new CountDownLatch(threadCount);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Thread> threads = new ArrayList<>();
+		for(int t = 0; t < threadCount; t++) {
+			int thread = t;
+			threads.add(new Thread(() -> {
+				ready.countDown();
+				try {
+					start.await();
+					commands.add(work(library, books, threadCount, thread, reads, borrows,
+							distribution.sampler(books, seed + thread), new Random(seed - thread - 1), running));
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch(IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}));
+		}
+		for(Thread thread : threads) {
+			thread.start();
+		}
+		ready.await();
+		long begin = System.nanoTime();
+		start.countDown();
+		Thread.sleep((long) (seconds * 1000));
+		running.set(false);
+		long elapsed = System.nanoTime() - begin;
+		for(Thread thread : threads) {
+			thread.join();
+		}
+		double throughput = commands.sum() * 1e9 / elapsed;
+		System.out.printf("%8d %14.0f %16.0f%n", threadCount, throughput, throughput / threadCount);
+	}
+
+	//runs the mix of commands until the measurement ends and returns the number of commands
+	private static long work(Library library, int books, int threads, int thread, int reads, int borrows,
+			KeyDistribution.Sampler sampler, Random random, AtomicBoolean running) throws IOException {
+		int patronId = thread + 1;
+		//the odd ids this thread inserted, they are deleted again before the next thread count runs
+		List<Integer> inserted = new ArrayList<>();
+		long commands = 0;
+		while(running.get()) {
+			int choice = random.nextInt(100);
+			int bookId = bookId(sampler.nextIndex());
+			if(choice < reads) {
+				if((choice & 1) == 0) {
+					library.execute(Command.printBook(bookId));
+				} else {
+					library.execute(Command.findClosestBook(bookId + 1));
+				}
+				commands++;
+			} else if(choice < reads + borrows) {
+				library.execute(Command.borrowBook(patronId, bookId, 1));
+				library.execute(Command.returnBook(patronId, bookId));
+				commands += 2;
+			} else if(inserted.isEmpty() || (inserted.size() < 1024 && random.nextBoolean())) {
+				//odd ids, every thread uses every threads-th one
+				int newId = 2 * (random.nextInt(books) * threads + thread) + 1;
+				if(!inserted.contains(newId)) {
+					library.execute(Command.insertBook(newId, "New", "Author", "Yes"));
+					inserted.add(newId);
+				}
+				commands++;
+			} else {
+				library.execute(Command.deleteBook(inserted.remove(inserted.size() - 1)));
+				commands++;
+			}
+		}
+		for(int bookId : inserted) {
+			library.execute(Command.deleteBook(bookId));
+		}
+		return commands;
+	}
+
+	private interface Library {
+		void execute(Command command) throws IOException;
+	}
+
+	private static class StripedLibrary implements Library {
+
+		private final ConcurrentLibrary library = new ConcurrentLibrary();
+
+		@Override
+		public void execute(Command command) throws IOException {
+			OutputStream discard = OutputStream.nullOutputStream();
+			switch(command.getType()) {
+			case INSERT_BOOK:
+				library.insertBook(command.getBookId(), command.getBookName(), command.getAuthorName(), command.getAvailabilityStatus());
+				break;
+			case DELETE_BOOK:
+				library.deleteBookFromLibrary(command.getBookId(), discard);
+				break;
+			case BORROW_BOOK:
+				library.borrowBook(command.getPatronId(), command.getBookId(), command.getPatronPriority(), discard);
+				break;
+			case RETURN_BOOK:
+				library.returnBook(command.getPatronId(), command.getBookId(), discard);
+				break;
+			case PRINT_BOOK:
+				library.printBook(command.getBookId(), discard);
+				break;
+			case FIND_CLOSEST_BOOK:
+				library.findClosestBooks(command.getBookId(), discard);
+				break;
+			default:
+				throw new IllegalArgumentException(command.getType() + " is not part of the benchmark");
+			}
+		}
+	}
+
+	//every command holds the one lock of the library
+	private static class CoarseLibrary implements Library {
+
+		private final RedBlackTree library = new RedBlackTree();
+		private final Utility utility = new Utility();
+
+		@Override
+		public synchronized void execute(Command command) throws IOException {
+			CommandExecutor.execute(command, library, utility, OutputStream.nullOutputStream());
+		}
+	}
+
+	private static int bookId(int index) {
+		return 2 * (index + 1);
+	}
+}
@@ -0,0 +1,111 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Benchmark of the sustained mutation throughput of a {@link DurableLibrary} for different group
+ * commit sizes.
+ *
+ * For every group size the benchmark opens an empty library in a fresh directory and applies a mix
+ * of InsertBook, BorrowBook, ReturnBook and DeleteBook commands on a catalogue of --books book IDs:
+ * two fifths borrows, a fifth returns, a fifth deletes and a fifth inserts of books that are missing,
+ * or deletes of the ones that are not. Every command is logged
+ * and applied, and the log is synced every groupSize commands, so the number of fsyncs is the number
+ * of commands divided by the group size. Closing the library syncs the rest and is part of the
+ * measurement. The results depend on the disk under --directory, a tmpfs directory makes fsync free
+ * and measures the log encoding only.
+ *
+ * Usage: java DurabilityBenchmark [--groups 1,8,64,512,4096] [--commands 200000] [--books 10000]
+ * [--directory <temporary directory>] [--seed 42]
+ */
+public class DurabilityBenchmark {
+
+	public static void main(String[] args) throws IOException {
+		int[] groups = {1, 8, 64, 512, 4096};
+		int commands = 200_000;
+		int books = 10_000;
+		Path parent = null;
+		long seed = 42;
+		for(int i = 0; i + 1 < args.length; i += 2) {
+			String value = args[i + 1];
+			switch(args[i]) {
+			case "--groups":
+				String[] parts = value.split(",");
+				groups = new int[parts.length];
+				for(int j = 0; j < parts.length; j++) {
+					groups[j] = Integer.parseInt(parts[j].trim());
+				}
+				break;
+			case "--commands":
+				commands = Integer.parseInt(value);
+				break;
+			case "--books":
+				books = Integer.parseInt(value);
+				break;
+			case "--directory":
+				parent = Paths.get(value);
+				break;
+			case "--seed":
+				seed = Long.parseLong(value);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+		System.out.printf("%8s %10s %12s %10s %12s%n", "group", "commands", "commands/s", "fsyncs", "us/group");
+		for(int groupSize : groups) {
+			Path directory = parent == null ? Files.createTempDirectory("durability") : Files.createTempDirectory(parent, "durability");
+			try {
+				run(directory, groupSize, commands, books, seed);
+			} finally {
+				delete(directory);
+			}
+		}
+	}
+
+	private static void run(Path directory, int groupSize, int commands, int books, long seed) throws IOException {
+		Random random = new Random(seed);
+		OutputStream discard = OutputStream.nullOutputStream();
+		long start = System.nanoTime();
+		try(DurableLibrary library = DurableLibrary.open(directory.toString(), groupSize)) {
+			for(int i = 0; i < commands; i++) {
+				int bookId = 1 + random.nextInt(books);
+				int patronId = 1 + random.nextInt(1000);
+				switch(random.nextInt(5)) {
+				case 0:
+					if(library.getLibrary().getBookFromLibrary(library.getLibrary().getRoot(), bookId) == null) {
+						library.insertBook(bookId, "Book" + bookId, "Author" + bookId % 100, "Yes");
+					} else {
+						library.deleteBookFromLibrary(bookId, discard);
+					}
+					break;
+				case 1:
+					library.deleteBookFromLibrary(bookId, discard);
+					break;
+				case 2:
+					library.returnBook(patronId, bookId, discard);
+					break;
+				default:
+					library.borrowBook(patronId, bookId, 1 + random.nextInt(5), discard);
+					break;
+				}
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+		long fsyncs = (commands + groupSize - 1) / groupSize;
+		System.out.printf("%8d %10d %12.0f %10d %12.1f%n", groupSize, commands, commands * 1e9 / elapsed, fsyncs, elapsed / 1e3 / fsyncs);
+	}
+
+	private static void delete(Path directory) throws IOException {
+		try(Stream<Path> files = Files.walk(directory)) {
+			for(Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+				Files.delete(file);
+			}
+		}
+	}
+}
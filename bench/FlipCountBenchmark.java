@@ -0,0 +1,100 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+/**
+ * Benchmark of the InsertBook and DeleteBook throughput of the library together with its color flip
+ * count.
+ *
+ * The benchmark inserts the books 2, 4, ..., 2n in random order, then runs --ops commands that delete a
+ * random book of the library or insert a random book that is not in it, half and half, so the library
+ * keeps its size. Every run starts over with an empty library, the earlier runs warm up the JIT and
+ * the last one is reported: the inserts per second of the build, the commands per second of the mix
+ * and the color flip count at the end, which has to be the same for every implementation.
+ *
+ * Only the methods the library had before its color flips were counted at the point of recoloring are
+ * used, so that make flips can build the benchmark against the library right before and right after
+ * that change and show what the dictionary and colorChanged maps cost. Built with the other
+ * benchmarks, it runs on the library of this tree.
+ *
+ * Usage: java FlipCountBenchmark [--books 1000000] [--ops 2000000] [--runs 3] [--label current]
+ * [--seed 42]
+ */
+public class FlipCountBenchmark {
+
+	public static void main(String[] args) throws IOException {
+		int books = 1_000_000;
+		int ops = 2_000_000;
+		int runs = 3;
+		String label = "current";
+		long seed = 42;
+		for(int i = 0; i + 1 < args.length; i += 2) {
+			String value = args[i + 1];
+			switch(args[i]) {
+			case "--books":
+				books = Integer.parseInt(value);
+				break;
+			case "--ops":
+				ops = Integer.parseInt(value);
+				break;
+			case "--runs":
+				runs = Integer.parseInt(value);
+				break;
+			case "--label":
+				label = value;
+				break;
+			case "--seed":
+				seed = Long.parseLong(value);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+		OutputSink output = new OutputSink(OutputStream.nullOutputStream());
+		long built = 0;
+		long mixed = 0;
+		int flips = 0;
+		for(int run = 0; run < runs; run++) {
+			Random random = new Random(seed);
+			RedBlackTree library = new RedBlackTree();
+			Utility utility = new Utility();
+			//the first half of the array holds the books of the library, 2, 4, ..., 2n in random order, the second half the missing odd ids
+			int[] bookIds = new int[2 * books];
+			for(int i = 0; i < books; i++) {
+				bookIds[i] = 2 * (i + 1);
+				bookIds[books + i] = 2 * i + 1;
+			}
+			for(int i = books - 1; i > 0; i--) {
+				swap(bookIds, i, random.nextInt(i + 1));
+			}
+			long start = System.nanoTime();
+			for(int i = 0; i < books; i++) {
+				library.insertBook(bookIds[i], "Book", "Author", "Yes");
+			}
+			built = System.nanoTime() - start;
+			start = System.nanoTime();
+			//a delete swaps a book of the library to the back, an insert swaps a missing book to the front
+			for(int i = 0; i < ops; i++) {
+				if(i % 2 == 0) {
+					int present = random.nextInt(books);
+					library.deleteBookFromLibrary(bookIds[present], output, utility);
+					swap(bookIds, present, books - 1);
+					swap(bookIds, books - 1, books + random.nextInt(books));
+				} else {
+					library.insertBook(bookIds[books - 1], "Book", "Author", "Yes");
+				}
+			}
+			output.flush();
+			mixed = System.nanoTime() - start;
+			flips = library.colorFlipCount;
+		}
+		System.out.printf("%-8s %10s %12s %12s %12s%n", "library", "books", "inserts/s", "mixed ops/s", "color flips");
+		System.out.printf("%-8s %10d %12.0f %12.0f %12d%n", label, books, books * 1e9 / built, ops * 1e9 / mixed, flips);
+	}
+
+	private static void swap(int[] bookIds, int i, int j) {
+		int bookId = bookIds[i];
+		bookIds[i] = bookIds[j];
+		bookIds[j] = bookId;
+	}
+}
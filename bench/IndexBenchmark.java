@@ -0,0 +1,148 @@
+import java.util.Random;
+
+/**
+ * Benchmark of the author and title indexes on a large catalogue.
+ *
+ * The benchmark creates the titles and authors of a catalogue of n books, "Book <id>" and
+ * "Author <id % authors>", and adds them to a title and an author {@link StringIndex} in random order
+ * of book ID. It reports the time of the build and the heap the indexes take on top of the strings,
+ * then the throughput and latency percentiles of exact and prefix lookups of random titles and
+ * authors, and for comparison the time of a linear scan over all titles, which is what a lookup costs
+ * without an index. A prefix is a title or author with its last --trim characters removed. The library
+ * tree itself is not built, so that a catalogue of 10 million books fits into a few GB of heap.
+ *
+ * Usage: java -Xmx3g IndexBenchmark [--books 10000000] [--authors 100000] [--lookups 1000000] [--trim 1]
+ * [--scans 10] [--seed 42]
+ */
+public class IndexBenchmark {
+
+	private enum Lookup {
+		TITLE, AUTHOR, TITLE_PREFIX, AUTHOR_PREFIX
+	}
+
+	public static void main(String[] args) {
+		int books = 10_000_000;
+		int authors = 100_000;
+		int lookups = 1_000_000;
+		int trim = 1;
+		int scans = 10;
+		long seed = 42;
+		for(int i = 0; i + 1 < args.length; i += 2) {
+			String value = args[i + 1];
+			switch(args[i]) {
+			case "--books":
+				books = Integer.parseInt(value);
+				break;
+			case "--authors":
+				authors = Integer.parseInt(value);
+				break;
+			case "--lookups":
+				lookups = Integer.parseInt(value);
+				break;
+			case "--trim":
+				trim = Integer.parseInt(value);
+				break;
+			case "--scans":
+				scans = Integer.parseInt(value);
+				break;
+			case "--seed":
+				seed = Long.parseLong(value);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+		Random random = new Random(seed);
+		String[] titles = new String[books];
+		String[] authorNames = new String[authors];
+		for(int i = 0; i < authors; i++) {
+			authorNames[i] = "Author " + i;
+		}
+		int[] order = new int[books];
+		for(int i = 0; i < books; i++) {
+			titles[i] = "Book " + (i + 1);
+			order[i] = i;
+		}
+		for(int i = books - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int id = order[i];
+			order[i] = order[j];
+			order[j] = id;
+		}
+		long heapBefore = usedHeap();
+		long start = System.nanoTime();
+		StringIndex titleIndex = new StringIndex();
+		StringIndex authorIndex = new StringIndex();
+		for(int index : order) {
+			titleIndex.add(titles[index], index + 1);
+			authorIndex.add(authorNames[index % authors], index + 1);
+		}
+		long elapsed = System.nanoTime() - start;
+		long heap = usedHeap() - heapBefore;
+		System.out.printf("%d books, %d authors indexed in %.3f s, %.0f books/s, %.1f bytes/book%n",
+				books, authors, elapsed / 1e9, books * 1e9 / elapsed, (double) heap / books);
+
+		System.out.printf("%-14s %12s %8s %8s %8s %10s %10s%n", "lookup", "ops/s", "p50 ns", "p99 ns", "p99.9 ns", "max ns", "books/op");
+		long checksum = 0;
+		for(Lookup lookup : Lookup.values()) {
+			LatencyHistogram latencies = new LatencyHistogram();
+			long found = 0;
+			long total = 0;
+			//the first half of the lookups warms up the JIT and is not reported
+			for(int i = -lookups / 2; i < lookups; i++) {
+				int index = random.nextInt(books);
+				String title = titles[index];
+				String author = authorNames[index % authors];
+				long begin = System.nanoTime();
+				int[] ids;
+				switch(lookup) {
+				case TITLE:
+					ids = titleIndex.find(title);
+					break;
+				case AUTHOR:
+					ids = authorIndex.find(author);
+					break;
+				case TITLE_PREFIX:
+					ids = titleIndex.findPrefix(title.substring(0, Math.max(0, title.length() - trim)));
+					break;
+				default:
+					ids = authorIndex.findPrefix(author.substring(0, Math.max(0, author.length() - trim)));
+					break;
+				}
+				long took = System.nanoTime() - begin;
+				checksum += ids.length == 0 ? 0 : ids[0];
+				if(i >= 0) {
+					latencies.record(took);
+					total += took;
+					found += ids.length;
+				}
+			}
+			System.out.printf("%-14s %12.0f %8d %8d %8d %10d %10.1f%n", lookup.name().toLowerCase(), lookups * 1e9 / total,
+					latencies.percentile(50), latencies.percentile(99), latencies.percentile(99.9), latencies.getMax(), (double) found / lookups);
+		}
+
+		long scanTime = 0;
+		for(int i = 0; i < scans; i++) {
+			String title = titles[random.nextInt(books)];
+			long begin = System.nanoTime();
+			for(int j = 0; j < books; j++) {
+				if(titles[j].equals(title)) {
+					checksum += j;
+				}
+			}
+			scanTime += System.nanoTime() - begin;
+		}
+		if(scans > 0) {
+			System.out.printf("linear scan of all titles: %.0f ns per lookup%n", (double) scanTime / scans);
+		}
+		System.out.println("checksum " + checksum);
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for(int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
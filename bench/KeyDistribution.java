@@ -0,0 +1,91 @@
+import java.util.Random;
+
+/**
+ * Order in which a benchmark picks the books of a library of n books, as indexes from 0 to n - 1.
+ *
+ * SEQUENTIAL walks through the books in order of book ID and starts over at the end, RANDOM picks
+ * every book with the same probability and ZIPFIAN picks a few hot books most of the time, with the
+ * popularity of the book of rank k proportional to 1 / k^theta, 0.99 by default like in the YCSB
+ * benchmarks. The ranks are spread over the library, so the hot books are not all neighbours in the tree.
+ */
+public enum KeyDistribution {
+
+	SEQUENTIAL,
+	RANDOM,
+	ZIPFIAN;
+
+	//picks indexes of books, a sampler belongs to one thread
+	public interface Sampler {
+		int nextIndex();
+	}
+
+	public static final double DEFAULT_THETA = 0.99;
+
+	//a prime larger than any library, multiplying the rank by it shuffles the ranks over the library
+	private static final long SPREAD = 1_000_000_007L;
+
+	public Sampler sampler(int n, long seed) {
+		return this.sampler(n, seed, DEFAULT_THETA);
+	}
+
+	//the skew theta is only used by ZIPFIAN, larger values make the hot books hotter, it must be between 0 and 1
+	public Sampler sampler(int n, long seed, double theta) {
+		Random random = new Random(seed);
+		switch(this) {
+		case SEQUENTIAL:
+			return new Sampler() {
+				private int next;
+
+				@Override
+				public int nextIndex() {
+					int index = next;
+					next = next + 1 == n ? 0 : next + 1;
+					return index;
+				}
+			};
+		case RANDOM:
+			return () -> random.nextInt(n);
+		default:
+			Zipfian zipfian = new Zipfian(n, theta);
+			return () -> (int) ((zipfian.nextRank(random) * SPREAD) % n);
+		}
+	}
+
+	//the generator of Gray et al., "Quickly generating billion-record synthetic databases", with the ranks from 0 to n - 1
+	private static class Zipfian {
+
+		private final int n;
+		private final double theta;
+		private final double alpha;
+		private final double zetan;
+		private final double eta;
+
+		private Zipfian(int n, double theta) {
+			this.n = n;
+			this.theta = theta;
+			this.alpha = 1 / (1 - theta);
+			this.zetan = zeta(n, theta);
+			this.eta = (1 - Math.pow(2.0 / n, 1 - theta)) / (1 - zeta(2, theta) / zetan);
+		}
+
+		private long nextRank(Random random) {
+			double u = random.nextDouble();
+			double uz = u * zetan;
+			if(uz < 1) {
+				return 0;
+			}
+			if(uz < 1 + Math.pow(0.5, theta)) {
+				return Math.min(1, n - 1);
+			}
+			return Math.min(n - 1, (long) (n * Math.pow(eta * u - eta + 1, alpha)));
+		}
+
+		private static double zeta(int n, double theta) {
+			double sum = 0;
+			for(int i = 1; i <= n; i++) {
+				sum += 1 / Math.pow(i, theta);
+			}
+			return sum;
+		}
+	}
+}
@@ -0,0 +1,224 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Micro benchmark of the library commands on synthetic libraries.
+ *
+ * For every library size, key distribution and command the benchmark builds a library with the book
+ * IDs 2, 4, ..., 2n, runs the command on books picked by the {@link KeyDistribution} and reports the
+ * throughput, the latency percentiles of single calls and the bytes allocated per call. The calls are
+ * made in batches and the library is rebuilt before every batch outside of the measurement, so that
+ * inserts, deletes, borrows and returns always start from the same state instead of wearing the
+ * library down. The first batches warm up the JIT and are not reported. The pop command returns books
+ * whose waitlist starts full, which takes the patron with the highest priority off the reservation heap,
+ * until a book that is picked more than 20 times in a batch has an empty waitlist.
+ * The count and select commands measure the order statistics CountBooks and BookAt on a library that
+ * already tracks its subtrees.
+ *
+ * Usage: java LibraryBenchmark [--books 10000,100000,1000000] [--distributions sequential,random,zipfian]
+ * [--commands get,insert,delete,borrow,return,pop,closest,range,count,select] [--ops 1000000] [--warmup 200000]
+ * [--range 20] [--patrons 1000] [--seed 42]
+ */
+public class LibraryBenchmark {
+
+	private enum Operation {
+		GET, INSERT, DELETE, BORROW, RETURN, POP, CLOSEST, RANGE, COUNT, SELECT
+	}
+
+	private final int rangeWidth;
+	private final int patrons;
+	private final long seed;
+	private final OutputSink output = new OutputSink(OutputStream.nullOutputStream());
+	private final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	private RedBlackTree library;
+	private Utility utility;
+	//the ids of the books found by GET are summed up so that the JIT cannot drop the search
+	private long checksum;
+
+	private LibraryBenchmark(int rangeWidth, int patrons, long seed) {
+		this.rangeWidth = rangeWidth;
+		this.patrons = patrons;
+		this.seed = seed;
+	}
+
+	public static void main(String[] args) throws IOException {
+		int[] sizes = {10_000, 100_000, 1_000_000};
+		List<KeyDistribution> distributions = List.of(KeyDistribution.values());
+		List<Operation> operations = List.of(Operation.values());
+		long ops = 1_000_000;
+		long warmup = 200_000;
+		int rangeWidth = 20;
+		int patrons = 1000;
+		long seed = 42;
+		for(int i = 0; i + 1 < args.length; i += 2) {
+			String value = args[i + 1];
+			switch(args[i]) {
+			case "--books":
+				String[] parts = value.split(",");
+				sizes = new int[parts.length];
+				for(int j = 0; j < parts.length; j++) {
+					sizes[j] = Integer.parseInt(parts[j].trim());
+				}
+				break;
+			case "--distributions":
+				distributions = parseNames(value, KeyDistribution.class);
+				break;
+			case "--commands":
+				operations = parseNames(value, Operation.class);
+				break;
+			case "--ops":
+				ops = Long.parseLong(value);
+				break;
+			case "--warmup":
+				warmup = Long.parseLong(value);
+				break;
+			case "--range":
+				rangeWidth = Integer.parseInt(value);
+				break;
+			case "--patrons":
+				patrons = Integer.parseInt(value);
+				break;
+			case "--seed":
+				seed = Long.parseLong(value);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+		LibraryBenchmark benchmark = new LibraryBenchmark(rangeWidth, patrons, seed);
+		System.out.printf("%-9s %-10s %-8s %12s %8s %8s %8s %8s %10s %10s%n",
+				"books", "keys", "command", "ops/s", "p50 ns", "p90 ns", "p99 ns", "p99.9 ns", "max ns", "bytes/op");
+		for(int books : sizes) {
+			for(KeyDistribution distribution : distributions) {
+				for(Operation operation : operations) {
+					benchmark.run(books, distribution, operation, ops, warmup);
+				}
+			}
+		}
+		System.out.println("checksum " + benchmark.checksum);
+	}
+
+	private static <E extends Enum<E>> List<E> parseNames(String value, Class<E> type) {
+		List<E> names = new ArrayList<>();
+		for(String name : value.split(",")) {
+			names.add(Enum.valueOf(type, name.trim().toUpperCase()));
+		}
+		return names;
+	}
+
+	private void run(int books, KeyDistribution distribution, Operation operation, long ops, long warmup) throws IOException {
+		//a batch changes at most a tenth of the library before it is rebuilt
+		int batchSize = (int) Math.max(1, Math.min(ops, books / 10));
+		KeyDistribution.Sampler sampler = distribution.sampler(books, seed);
+		LatencyHistogram ignored = new LatencyHistogram();
+		for(long done = 0; done < warmup; done += batchSize) {
+			this.prepare(books, operation);
+			this.runBatch(operation, sampler, batchSize, ignored);
+		}
+		LatencyHistogram latencies = new LatencyHistogram();
+		long elapsed = 0;
+		long allocated = 0;
+		long thread = Thread.currentThread().getId();
+		for(long done = 0; done < ops; done += batchSize) {
+			int calls = (int) Math.min(batchSize, ops - done);
+			this.prepare(books, operation);
+			long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+			long start = System.nanoTime();
+			this.runBatch(operation, sampler, calls, latencies);
+			elapsed += System.nanoTime() - start;
+			allocated += threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+		}
+		long count = latencies.getCount();
+		System.out.printf("%-9d %-10s %-8s %12.0f %8d %8d %8d %8d %10d %10.1f%n",
+				books, distribution.name().toLowerCase(), operation.name().toLowerCase(),
+				count * 1e9 / elapsed, latencies.percentile(50), latencies.percentile(90), latencies.percentile(99),
+				latencies.percentile(99.9), latencies.getMax(), (double) allocated / count);
+	}
+
+	//builds the library with the book ids 2, 4, ..., 2n, for returns every book is borrowed by one of the patrons,
+	//for pops every book is borrowed and has a full waitlist
+	private void prepare(int books, Operation operation) throws IOException {
+		List<Book> batch = new ArrayList<>(books);
+		RedBlackTree template = new RedBlackTree();
+		for(int i = 0; i < books; i++) {
+			Book book = template.getBook(bookId(i), "Book" + i, "Author" + (i % 1000), "Yes");
+			if(operation == Operation.RETURN) {
+				book.setAvailabilityStatus("No");
+				book.setBorrowedBy(patron(i));
+			}
+			batch.add(book);
+		}
+		this.library = new RedBlackTree();
+		this.library.loadBooks(batch);
+		if(operation == Operation.COUNT || operation == Operation.SELECT) {
+			this.library.setSubtreeTracking(true);
+		}
+		this.utility = new Utility();
+		if(operation == Operation.POP) {
+			for(int i = 0; i < books; i++) {
+				for(int patron = 0; patron <= RedBlackTree.DEFAULT_RESERVATION_LIMIT; patron++) {
+					this.library.borrowBook(patron + 1, bookId(i), patron % 5, output, utility);
+				}
+			}
+			output.flush();
+		}
+	}
+
+	private void runBatch(Operation operation, KeyDistribution.Sampler sampler, int calls, LatencyHistogram latencies) throws IOException {
+		for(int i = 0; i < calls; i++) {
+			int index = sampler.nextIndex();
+			long start = System.nanoTime();
+			switch(operation) {
+			case GET:
+				Book book = library.getBookFromLibrary(library.getRoot(), bookId(index));
+				checksum += book == null ? 0 : book.getBookId();
+				break;
+			case INSERT:
+				//the odd id after the picked book is not in the library, a second pick inserts a second book with that id
+				library.insertBook(bookId(index) + 1, "New" + index, "Author", "Yes");
+				break;
+			case DELETE:
+				library.deleteBookFromLibrary(bookId(index), output, utility);
+				break;
+			case BORROW:
+				library.borrowBook(i % patrons, bookId(index), i % 5, output, utility);
+				break;
+			case RETURN:
+				library.returnBook(patron(index), bookId(index), output, utility);
+				break;
+			case POP:
+				//the book goes to the next patron of its waitlist, who returns it at the next pick
+				Book borrowed = library.getBookFromLibrary(library.getRoot(), bookId(index));
+				library.returnBook(borrowed.getBorrowedBy(), bookId(index), output, utility);
+				break;
+			case CLOSEST:
+				library.findClosestBooks(bookId(index) + 1, utility, output);
+				break;
+			case COUNT:
+				checksum += library.countInRange(bookId(index), bookId(index) + rangeWidth);
+				break;
+			case SELECT:
+				Book selected = library.select(index + 1);
+				checksum += selected == null ? 0 : selected.getBookId();
+				break;
+			default:
+				library.printBooks(bookId(index), bookId(index) + rangeWidth, utility, output);
+				break;
+			}
+			latencies.record(System.nanoTime() - start);
+		}
+		output.flush();
+	}
+
+	private static int bookId(int index) {
+		return 2 * (index + 1);
+	}
+
+	private int patron(int index) {
+		return index % patrons;
+	}
+}
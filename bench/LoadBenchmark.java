@@ -0,0 +1,133 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark of the bulk load of {@link RedBlackTree#loadBooks(List)} against adding the same books with
+ * one insertBook each.
+ *
+ * The load builds a library of n books from nothing, with the book IDs 2, 4, ..., 2n either sorted or
+ * in random order, which loadBooks has to sort first. The merge adds m new books, odd IDs at random
+ * between the books of a library of n books, for m a given percentage of n. The time of the bulk load
+ * includes creating the books with getBook, which insertBook does for every book as well. Every case
+ * runs --runs times on a new library and the last run is reported, in milliseconds and nanoseconds per
+ * added book, with the speedup of the bulk load over the inserts. A batch of less than a quarter of the
+ * library is inserted book by book by loadBooks, the path column shows whether the library was rebuilt,
+ * and the merges around a quarter show where the rebuild starts to pay off.
+ *
+ * Usage: java LoadBenchmark [--books 100000,1000000] [--merges 1,10,20,25,30,50,100] [--runs 3] [--seed 42]
+ */
+public class LoadBenchmark {
+
+	public static void main(String[] args) {
+		int[] sizes = {100_000, 1_000_000};
+		int[] merges = {1, 10, 20, 25, 30, 50, 100};
+		int runs = 3;
+		long seed = 42;
+		for(int i = 0; i + 1 < args.length; i += 2) {
+			String value = args[i + 1];
+			switch(args[i]) {
+			case "--books":
+				sizes = parseInts(value);
+				break;
+			case "--merges":
+				merges = parseInts(value);
+				break;
+			case "--runs":
+				runs = Integer.parseInt(value);
+				break;
+			case "--seed":
+				seed = Long.parseLong(value);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+		System.out.printf("%-10s %-13s %10s %-8s %10s %10s %10s %10s %8s%n",
+				"books", "case", "added", "path", "load ms", "insert ms", "load ns", "insert ns", "speedup");
+		for(int books : sizes) {
+			Random random = new Random(seed);
+			int[] sorted = new int[books];
+			for(int i = 0; i < books; i++) {
+				sorted[i] = 2 * (i + 1);
+			}
+			int[] shuffled = shuffled(sorted, random);
+			report(books, "load sorted", new int[0], sorted, runs);
+			report(books, "load random", new int[0], shuffled, runs);
+			for(int percent : merges) {
+				int added = (int) ((long) books * percent / 100);
+				int[] odd = new int[books];
+				for(int i = 0; i < books; i++) {
+					odd[i] = 2 * i + 1;
+				}
+				int[] batch = new int[added];
+				System.arraycopy(shuffled(odd, random), 0, batch, 0, added);
+				report(books, "merge " + percent + "%", shuffled, batch, runs);
+			}
+		}
+	}
+
+	private static int[] parseInts(String value) {
+		String[] parts = value.split(",");
+		int[] values = new int[parts.length];
+		for(int i = 0; i < parts.length; i++) {
+			values[i] = Integer.parseInt(parts[i].trim());
+		}
+		return values;
+	}
+
+	//adds the batch to a library of the existing books both ways and prints the times of the last runs
+	private static void report(int books, String name, int[] existing, int[] batch, int runs) {
+		long loaded = 0;
+		long inserted = 0;
+		for(int run = 0; run < runs; run++) {
+			loaded = measure(existing, batch, true);
+			inserted = measure(existing, batch, false);
+		}
+		//the rule of loadBooks, a batch of less than a quarter of the existing books is inserted one by one
+		String path = (long) batch.length * 4 < existing.length ? "insert" : "rebuild";
+		System.out.printf("%-10d %-13s %10d %-8s %10.1f %10.1f %10.0f %10.0f %8.1f%n", books, name, batch.length, path,
+				loaded / 1e6, inserted / 1e6, (double) loaded / batch.length, (double) inserted / batch.length,
+				(double) inserted / loaded);
+	}
+
+	//returns the nanoseconds it took to add the batch to a new library that holds the existing books
+	private static long measure(int[] existing, int[] batch, boolean bulk) {
+		RedBlackTree library = new RedBlackTree();
+		List<Book> books = new ArrayList<>(existing.length);
+		for(int bookId : existing) {
+			books.add(library.getBook(bookId, "Book", "Author", "Yes"));
+		}
+		library.loadBooks(books);
+		//the garbage of the setup is collected before, not during the measurement
+		System.gc();
+		long start = System.nanoTime();
+		if(bulk) {
+			List<Book> added = new ArrayList<>(batch.length);
+			for(int bookId : batch) {
+				added.add(library.getBook(bookId, "Book", "Author", "Yes"));
+			}
+			library.loadBooks(added);
+		} else {
+			for(int bookId : batch) {
+				library.insertBook(bookId, "Book", "Author", "Yes");
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+		if(library.getBookCount() != existing.length + batch.length) {
+			throw new IllegalStateException("The library has " + library.getBookCount() + " books instead of " + (existing.length + batch.length));
+		}
+		return elapsed;
+	}
+
+	private static int[] shuffled(int[] bookIds, Random random) {
+		int[] order = bookIds.clone();
+		for(int i = order.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int bookId = order[i];
+			order[i] = order[j];
+			order[j] = bookId;
+		}
+		return order;
+	}
+}
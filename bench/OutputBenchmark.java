@@ -0,0 +1,170 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark of the output of a PrintBooks heavy workload in lines per second, written through the
+ * {@link OutputSink} and the unbuffered ways it replaced.
+ *
+ * The library holds the books 2, 4, ..., 2n, every fourth book is borrowed and has three patrons on
+ * its waitlist. The benchmark writes PrintBooks of --scans random ranges of --range IDs into a file
+ * three ways: through an OutputSink on the file like gatorLibrary (sink), on the plain
+ * {@link FileOutputStream}, which makes a write call for every book and every line break (stream), and
+ * like the library before the sink, which also built every book with String.format (format). Every way
+ * closes its file as part of the measurement. The benchmark reports the lines per second and the
+ * megabytes per second of each way and checks that the three files are the same byte for byte.
+ *
+ * Usage: java OutputBenchmark [--books 100000] [--scans 20000] [--range 20] [--runs 3]
+ * [--directory <temporary directory>] [--seed 42]
+ */
+public class OutputBenchmark {
+
+	private enum Writer {
+		SINK, STREAM, FORMAT
+	}
+
+	public static void main(String[] args) throws IOException {
+		int books = 100_000;
+		int scans = 20_000;
+		int rangeWidth = 20;
+		int runs = 3;
+		Path parent = null;
+		long seed = 42;
+		for(int i = 0; i + 1 < args.length; i += 2) {
+			String value = args[i + 1];
+			switch(args[i]) {
+			case "--books":
+				books = Integer.parseInt(value);
+				break;
+			case "--scans":
+				scans = Integer.parseInt(value);
+				break;
+			case "--range":
+				rangeWidth = Integer.parseInt(value);
+				break;
+			case "--runs":
+				runs = Integer.parseInt(value);
+				break;
+			case "--directory":
+				parent = Paths.get(value);
+				break;
+			case "--seed":
+				seed = Long.parseLong(value);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+		RedBlackTree library = new RedBlackTree();
+		List<Book> catalogue = new ArrayList<>(books);
+		for(int i = 0; i < books; i++) {
+			catalogue.add(library.getBook(2 * (i + 1), "Book" + i, "Author" + (i % 1000), "Yes"));
+		}
+		library.loadBooks(catalogue);
+		Utility utility = new Utility();
+		OutputStream discard = OutputStream.nullOutputStream();
+		for(int i = 0; i < books; i += 4) {
+			for(int patron = 1; patron <= 4; patron++) {
+				library.borrowBook(patron, 2 * (i + 1), patron, discard, utility);
+			}
+		}
+		int[] starts = new int[scans];
+		Random random = new Random(seed);
+		for(int i = 0; i < scans; i++) {
+			starts[i] = 2 * (random.nextInt(books) + 1);
+		}
+		Path directory = parent == null ? Files.createTempDirectory("output") : Files.createTempDirectory(parent, "output");
+		try {
+			System.out.printf("%-7s %12s %10s %10s%n", "writer", "lines", "lines/s", "MB/s");
+			Path expected = null;
+			for(Writer writer : Writer.values()) {
+				Path file = directory.resolve(writer.name().toLowerCase() + ".txt");
+				//the earlier runs warm up the JIT, the last one is reported
+				long elapsed = 0;
+				for(int run = 0; run < runs; run++) {
+					long start = System.nanoTime();
+					write(library, utility, file.toFile(), writer, starts, rangeWidth);
+					elapsed = System.nanoTime() - start;
+				}
+				long lines = countLines(file);
+				System.out.printf("%-7s %12d %10.0f %10.1f%n", writer.name().toLowerCase(), lines,
+						lines * 1e9 / elapsed, Files.size(file) * 1e3 / elapsed);
+				if(expected == null) {
+					expected = file;
+				} else if(Files.mismatch(expected, file) != -1) {
+					throw new IllegalStateException("The output of " + writer.name().toLowerCase() + " differs from the sink");
+				}
+			}
+		} finally {
+			for(Writer writer : Writer.values()) {
+				Files.deleteIfExists(directory.resolve(writer.name().toLowerCase() + ".txt"));
+			}
+			Files.delete(directory);
+		}
+	}
+
+	private static void write(RedBlackTree library, Utility utility, File file, Writer writer, int[] starts, int rangeWidth) throws IOException {
+		OutputStream stream = new FileOutputStream(file);
+		try(OutputStream access = writer == Writer.SINK ? new OutputSink(stream) : stream) {
+			for(int start : starts) {
+				if(writer == Writer.FORMAT) {
+					printBooksWithFormat(library, start, start + rangeWidth, access);
+				} else {
+					library.printBooks(start, start + rangeWidth, utility, access);
+				}
+			}
+		}
+	}
+
+	//printBooks as it wrote before the sink: a string made with String.format and a write call for every book and line break
+	private static void printBooksWithFormat(RedBlackTree library, int start, int end, OutputStream access) throws IOException {
+		BookRangeCursor cursor = library.getBooksInRange(start, end);
+		if(!cursor.hasNext()) {
+			access.write(("No books found in library in the range of " + start + " to " + end).getBytes());
+			access.write("\n".getBytes());
+			return;
+		}
+		while(cursor.hasNext()) {
+			Book book = cursor.next();
+			StringBuilder reservations = new StringBuilder("[");
+			for(int i = 0; i < book.getReservationHeap().size(); i++) {
+				if(i > 0) {
+					reservations.append(", ");
+				}
+				reservations.append(book.getReservationHeap().getPatronId(i));
+			}
+			String borrowedByString = book.getBorrowedBy() == 0 ? "None" : String.valueOf(book.getBorrowedBy());
+			String bookString = String.format("BookID = %d\nTitle = \"%s\"\nAuthor = \"%s\"\nAvailability = \"%s\"\nBorrowedBy = %s\nReservations = %s",
+					book.getBookId(), book.getBookName(), book.getAuthorName(), book.getAvailabilityStatus(), borrowedByString, reservations.append(']'));
+			access.write(bookString.getBytes());
+			access.write("\n".getBytes());
+			if(cursor.hasNext()) {
+				access.write("\n".getBytes());
+			}
+		}
+	}
+
+	private static long countLines(Path file) throws IOException {
+		long lines = 0;
+		byte[] buffer = new byte[1 << 16];
+		try(InputStream in = Files.newInputStream(file)) {
+			int read;
+			while((read = in.read(buffer)) > 0) {
+				for(int i = 0; i < read; i++) {
+					if(buffer[i] == '\n') {
+						lines++;
+					}
+				}
+			}
+		}
+		return lines;
+	}
+}
@@ -0,0 +1,120 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Benchmark of the PrintBooks range scan, narrow and wide, against the full tree walk it replaced.
+ *
+ * The library holds the books 2, 4, ..., 2n. For every range width w the benchmark scans the ranges
+ * [s, s + w] from random starts s both ways for --millis milliseconds each: with the cursor of
+ * {@link RedBlackTree#getBooksInRange(int, int)}, which descends to the first book of the range and
+ * follows successors to its end, and with the walk the library used before, which visits every book,
+ * puts the ones in the range into a {@link TreeMap} and reads them back in order. It reports the scans
+ * per second and the microseconds per scan of both ways and the books each scan found. Formatting the
+ * books is the same both ways and is left out. The walk costs the same for every width, the cursor
+ * grows with the number of books in the range.
+ *
+ * Usage: java RangeBenchmark [--books 1000000] [--widths 2,200,20000,2000000] [--millis 2000]
+ * [--seed 42]
+ */
+public class RangeBenchmark {
+
+	public static void main(String[] args) {
+		int books = 1_000_000;
+		int[] widths = {2, 200, 20_000, 2_000_000};
+		long millis = 2000;
+		long seed = 42;
+		for(int i = 0; i + 1 < args.length; i += 2) {
+			String value = args[i + 1];
+			switch(args[i]) {
+			case "--books":
+				books = Integer.parseInt(value);
+				break;
+			case "--widths":
+				String[] parts = value.split(",");
+				widths = new int[parts.length];
+				for(int j = 0; j < parts.length; j++) {
+					widths[j] = Integer.parseInt(parts[j].trim());
+				}
+				break;
+			case "--millis":
+				millis = Long.parseLong(value);
+				break;
+			case "--seed":
+				seed = Long.parseLong(value);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+		RedBlackTree library = new RedBlackTree();
+		List<Book> catalogue = new ArrayList<>(books);
+		for(int i = 0; i < books; i++) {
+			catalogue.add(library.getBook(2 * (i + 1), "Book" + i, "Author" + (i % 1000), "Yes"));
+		}
+		library.loadBooks(catalogue);
+		System.out.printf("%-10s %10s %-7s %12s %12s %12s%n", "books", "width", "scan", "scans/s", "us/scan", "books/scan");
+		for(int width : widths) {
+			for(boolean cursor : new boolean[] {true, false}) {
+				//the first run warms up the JIT
+				run(library, books, width, cursor, millis / 4, seed);
+				long[] result = run(library, books, width, cursor, millis, seed);
+				System.out.printf("%-10d %10d %-7s %12.0f %12.1f %12.1f%n", books, width, cursor ? "cursor" : "walk",
+						result[0] * 1e9 / result[1], result[1] / 1e3 / result[0], (double) result[2] / result[0]);
+			}
+		}
+	}
+
+	//returns the number of scans, the nanoseconds they took and the books they found
+	private static long[] run(RedBlackTree library, int books, int width, boolean cursor, long millis, long seed) {
+		Random random = new Random(seed);
+		long found = 0;
+		long scans = 0;
+		long start = System.nanoTime();
+		long deadline = start + millis * 1_000_000;
+		long now;
+		do {
+			int first = 2 * (random.nextInt(books) + 1);
+			found += cursor ? scan(library, first, first + width) : walk(library, first, first + width);
+			scans++;
+			now = System.nanoTime();
+		} while(now < deadline);
+		return new long[] {scans, now - start, found};
+	}
+
+	private static int scan(RedBlackTree library, int start, int end) {
+		int found = 0;
+		BookRangeCursor cursor = library.getBooksInRange(start, end);
+		while(cursor.hasNext()) {
+			cursor.next();
+			found++;
+		}
+		return found;
+	}
+
+	//the range scan of the library before the cursor: every book is visited and the hits are sorted by the map
+	private static int walk(RedBlackTree library, int start, int end) {
+		TreeMap<Integer, Book> treeMap = new TreeMap<>();
+		collect(library.getRoot(), start, end, treeMap);
+		int found = 0;
+		for(Map.Entry<Integer, Book> entry : treeMap.entrySet()) {
+			if(entry.getValue() != null) {
+				found++;
+			}
+		}
+		return found;
+	}
+
+	private static void collect(Book book, int start, int end, TreeMap<Integer, Book> treeMap) {
+		if(book == null) {
+			return;
+		}
+		if(book.getBookId() >= start && book.getBookId() <= end) {
+			treeMap.put(book.getBookId(), book);
+		}
+		collect(book.left, start, end, treeMap);
+		collect(book.right, start, end, treeMap);
+	}
+}
@@ -0,0 +1,158 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Benchmark of how the PrintBook and FindClosestBook reads of a {@link ConcurrentLibrary} scale with
+ * the number of reader threads while another thread changes the tree.
+ *
+ * The library holds the books 2, 4, ..., 2n. For every thread count the readers run PrintBook on
+ * existing books and FindClosestBook on the odd IDs between them, picked by the {@link KeyDistribution},
+ * for --seconds seconds. With --writer true one more thread inserts and deletes odd book IDs in turn
+ * during the whole measurement, and with --borrowers k another k threads borrow and return the books
+ * the readers read, which takes the write mode of their stripes. The benchmark reports the reads per
+ * second of all readers and per reader, and the operations per second of the writer and the borrowers.
+ * Reads that scale are flat per reader as the thread count grows, up to the number of cores.
+ *
+ * Usage: java ReadScalingBenchmark [--threads 1,2,4,8,16,32] [--books 1000000] [--seconds 5]
+ * [--distribution random] [--writer true] [--borrowers 0] [--seed 42]
+ */
+public class ReadScalingBenchmark {
+
+	public static void main(String[] args) throws InterruptedException {
+		int[] threadCounts = {1, 2, 4, 8, 16, 32};
+		int books = 1_000_000;
+		double seconds = 5;
+		KeyDistribution distribution = KeyDistribution.RANDOM;
+		boolean writer = true;
+		int borrowers = 0;
+		long seed = 42;
+		for(int i = 0; i + 1 < args.length; i += 2) {
+			String value = args[i + 1];
+			switch(args[i]) {
+			case "--threads":
+				String[] parts = value.split(",");
+				threadCounts = new int[parts.length];
+				for(int j = 0; j < parts.length; j++) {
+					threadCounts[j] = Integer.parseInt(parts[j].trim());
+				}
+				break;
+			case "--books":
+				books = Integer.parseInt(value);
+				break;
+			case "--seconds":
+				seconds = Double.parseDouble(value);
+				break;
+			case "--distribution":
+				distribution = KeyDistribution.valueOf(value.trim().toUpperCase());
+				break;
+			case "--writer":
+				writer = Boolean.parseBoolean(value);
+				break;
+			case "--borrowers":
+				borrowers = Integer.parseInt(value);
+				break;
+			case "--seed":
+				seed = Long.parseLong(value);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+		ConcurrentLibrary library = new ConcurrentLibrary();
+		for(int i = 0; i < books; i++) {
+			library.insertBook(bookId(i), "Book" + i, "Author" + (i % 1000), "Yes");
+		}
+		System.out.printf("%8s %14s %14s %12s %14s%n", "readers", "reads/s", "reads/s/thread", "writes/s", "borrows/s");
+		for(int readers : threadCounts) {
+			run(library, books, readers, writer, borrowers, distribution, seconds, seed);
+		}
+	}
+
+	private static void run(ConcurrentLibrary library, int books, int readers, boolean writer, int borrowers,
+			KeyDistribution distribution, double seconds, long seed) throws InterruptedException {
+		AtomicBoolean running = new AtomicBoolean(true);
+		LongAdder reads = new LongAdder();
+		LongAdder writes = new LongAdder();
+		LongAdder borrows = new LongAdder();
+		int threadCount = readers + borrowers + (writer ? 1 : 0);
+		CountDownLatch ready = new CountDownLatch(threadCount);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Thread> threads = new ArrayList<>();
+		for(int t = 0; t < readers; t++) {
+			KeyDistribution.Sampler sampler = distribution.sampler(books, seed + t);
+			threads.add(new Thread(() -> loop(ready, start, running, reads, count -> {
+				int index = sampler.nextIndex();
+				if((count & 1) == 0) {
+					library.printBook(bookId(index), OutputStream.nullOutputStream());
+				} else {
+					library.findClosestBooks(bookId(index) + 1, OutputStream.nullOutputStream());
+				}
+			})));
+		}
+		for(int t = 0; t < borrowers; t++) {
+			KeyDistribution.Sampler sampler = distribution.sampler(books, seed + readers + t);
+			int patronId = t + 1;
+			threads.add(new Thread(() -> loop(ready, start, running, borrows, count -> {
+				int bookId = bookId(sampler.nextIndex());
+				library.borrowBook(patronId, bookId, 1, OutputStream.nullOutputStream());
+				library.returnBook(patronId, bookId, OutputStream.nullOutputStream());
+			})));
+		}
+		if(writer) {
+			Random random = new Random(seed - 1);
+			threads.add(new Thread(() -> loop(ready, start, running, writes, count -> {
+				//an odd id between the books, inserted and deleted again by the next operation
+				int bookId = bookId(random.nextInt(books)) + 1;
+				library.insertBook(bookId, "New", "Author", "Yes");
+				library.deleteBookFromLibrary(bookId, OutputStream.nullOutputStream());
+			})));
+		}
+		for(Thread thread : threads) {
+			thread.start();
+		}
+		ready.await();
+		long begin = System.nanoTime();
+		start.countDown();
+		Thread.sleep((long) (seconds * 1000));
+		running.set(false);
+		long elapsed = System.nanoTime() - begin;
+		for(Thread thread : threads) {
+			thread.join();
+		}
+		double read = reads.sum() * 1e9 / elapsed;
+		System.out.printf("%8d %14.0f %14.0f %12.0f %14.0f%n", readers, read, read / readers,
+				writes.sum() * 2e9 / elapsed, borrows.sum() * 2e9 / elapsed);
+	}
+
+	private interface Operation {
+		void run(long count) throws IOException;
+	}
+
+	//runs the operation until the measurement ends and adds the number of runs to the counter
+	private static void loop(CountDownLatch ready, CountDownLatch start, AtomicBoolean running, LongAdder counter, Operation operation) {
+		ready.countDown();
+		try {
+			start.await();
+			long count = 0;
+			while(running.get()) {
+				operation.run(count++);
+			}
+			counter.add(count);
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static int bookId(int index) {
+		return 2 * (index + 1);
+	}
+}
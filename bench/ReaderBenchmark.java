@@ -0,0 +1,158 @@
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Benchmark of the {@link MappedCommandReader} against the BufferedReader that gatorLibrary used to
+ * read command files with, on a large command file.
+ *
+ * Without --file the benchmark first writes a synthetic command file of --megabytes megabytes into the
+ * temporary directory and deletes it at the end. The file has InsertBook, BorrowBook, ReturnBook,
+ * PrintBook, PrintBooks, FindClosestBook and DeleteBook commands on random books and is only read,
+ * never executed, so the commands do not have to make sense for a library. Every reader reads the
+ * whole file --runs times, once with only the lines and once with every line parsed by the
+ * {@link CommandParser}, and the last run is reported: megabytes and lines per second, and the bytes
+ * allocated per line. The file was just written or read, so it is in the page cache and the results
+ * show the cost of decoding and splitting the lines, not of the disk.
+ *
+ * Usage: java ReaderBenchmark [--file <synthetic file>] [--megabytes 1024] [--runs 2] [--seed 42]
+ */
+public class ReaderBenchmark {
+
+	private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	//the lengths of the lines are summed up so that the JIT cannot drop the reading
+	private static long checksum;
+
+	public static void main(String[] args) throws IOException {
+		Path file = null;
+		long megabytes = 1024;
+		int runs = 2;
+		long seed = 42;
+		for(int i = 0; i + 1 < args.length; i += 2) {
+			String value = args[i + 1];
+			switch(args[i]) {
+			case "--file":
+				file = Paths.get(value);
+				break;
+			case "--megabytes":
+				megabytes = Long.parseLong(value);
+				break;
+			case "--runs":
+				runs = Integer.parseInt(value);
+				break;
+			case "--seed":
+				seed = Long.parseLong(value);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+		boolean synthetic = file == null;
+		if(synthetic) {
+			file = Files.createTempFile("commands", ".txt");
+			generate(file, megabytes << 20, seed);
+		}
+		try {
+			long size = Files.size(file);
+			System.out.printf("%-9s %-6s %12s %10s %12s %10s%n", "reader", "parse", "lines", "MB/s", "lines/s", "bytes/line");
+			for(boolean parse : new boolean[] {false, true}) {
+				for(boolean mapped : new boolean[] {true, false}) {
+					long lines = 0;
+					long elapsed = 0;
+					long allocated = 0;
+					long thread = Thread.currentThread().getId();
+					for(int run = 0; run < runs; run++) {
+						long allocatedBefore = THREADS.getThreadAllocatedBytes(thread);
+						long start = System.nanoTime();
+						lines = mapped ? readMapped(file, parse) : readBuffered(file, parse);
+						elapsed = System.nanoTime() - start;
+						allocated = THREADS.getThreadAllocatedBytes(thread) - allocatedBefore;
+					}
+					System.out.printf("%-9s %-6s %12d %10.0f %12.0f %10.1f%n", mapped ? "mapped" : "buffered", parse,
+							lines, size * 1e9 / elapsed / (1 << 20), lines * 1e9 / elapsed, (double) allocated / lines);
+				}
+			}
+			System.out.println("checksum " + checksum);
+		} finally {
+			if(synthetic) {
+				Files.delete(file);
+			}
+		}
+	}
+
+	private static long readMapped(Path file, boolean parse) throws IOException {
+		CommandParser parser = new CommandParser();
+		long lines = 0;
+		try(MappedCommandReader reader = new MappedCommandReader(file.toString())) {
+			CharSequence line;
+			while((line = reader.nextLine()) != null) {
+				checksum += parse ? parser.parse(line).getType().ordinal() : line.length();
+				lines++;
+			}
+		}
+		return lines;
+	}
+
+	//the reader of gatorLibrary before the mapped reader
+	private static long readBuffered(Path file, boolean parse) throws IOException {
+		CommandParser parser = new CommandParser();
+		long lines = 0;
+		try(BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file.toFile())))) {
+			String line;
+			while((line = reader.readLine()) != null) {
+				checksum += parse ? parser.parse(line).getType().ordinal() : line.length();
+				lines++;
+			}
+		}
+		return lines;
+	}
+
+	private static void generate(Path file, long bytes, long seed) throws IOException {
+		Random random = new Random(seed);
+		try(OutputSink out = new OutputSink(new FileOutputStream(file.toFile()))) {
+			long written = 0;
+			StringBuilder line = new StringBuilder();
+			while(written < bytes) {
+				line.setLength(0);
+				int bookId = 1 + random.nextInt(1_000_000);
+				int patronId = 1 + random.nextInt(10_000);
+				switch(random.nextInt(7)) {
+				case 0:
+					line.append("InsertBook(").append(bookId).append(", \"Book ").append(bookId).append("\", \"Author ")
+							.append(bookId % 1000).append("\", \"Yes\")");
+					break;
+				case 1:
+					line.append("BorrowBook(").append(patronId).append(", ").append(bookId).append(", ").append(1 + random.nextInt(5)).append(')');
+					break;
+				case 2:
+					line.append("ReturnBook(").append(patronId).append(", ").append(bookId).append(')');
+					break;
+				case 3:
+					line.append("PrintBook(").append(bookId).append(')');
+					break;
+				case 4:
+					line.append("PrintBooks(").append(bookId).append(", ").append(bookId + 20).append(')');
+					break;
+				case 5:
+					line.append("FindClosestBook(").append(bookId).append(')');
+					break;
+				default:
+					line.append("DeleteBook(").append(bookId).append(')');
+					break;
+				}
+				line.append('\n');
+				out.append(line);
+				written += line.length();
+			}
+			out.append("Quit()\n");
+		}
+	}
+}
@@ -0,0 +1,123 @@
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+/**
+ * Replays a command file end to end and reports how fast the library processed it.
+ *
+ * The commands are read with the {@link MappedCommandReader} and {@link CommandParser} and executed
+ * by the {@link CommandExecutor} like in gatorLibrary, writing the messages to an {@link OutputSink}.
+ * The harness reports the commands per second of the whole replay including parsing and output, the
+ * latency percentiles of every command type, and the peak heap usage of the JVM during the replay.
+ * The replay stops at Quit() like gatorLibrary, but does not exit the JVM.
+ *
+ * Usage: java ReplayBenchmark file [--output file] [--runs 1] [--metrics true] [--tracking true]
+ * Without --output the messages are written to a sink that drops them. With more than one run the
+ * earlier runs warm up the JIT and only the last run is reported. With --metrics true the library is
+ * instrumented with {@link LibraryMetrics} as with gatorLibrary -DgatorLibrary.metrics, and with
+ * --tracking true it keeps its subtree sizes and heights from the start as with
+ * -DgatorLibrary.subtreeTracking=true, so that the commands per second with and without them show the
+ * cost of each.
+ */
+public class ReplayBenchmark {
+
+	public static void main(String[] args) throws IOException {
+		if(args.length == 0) {
+			System.out.println("Please provide the input file name");
+			return;
+		}
+		String outputFile = null;
+		int runs = 1;
+		boolean instrumented = false;
+		boolean tracking = false;
+		for(int i = 1; i + 1 < args.length; i += 2) {
+			switch(args[i]) {
+			case "--output":
+				outputFile = args[i + 1];
+				break;
+			case "--runs":
+				runs = Integer.parseInt(args[i + 1]);
+				break;
+			case "--metrics":
+				instrumented = Boolean.parseBoolean(args[i + 1]);
+				break;
+			case "--tracking":
+				tracking = Boolean.parseBoolean(args[i + 1]);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+		for(int run = 1; run < runs; run++) {
+			replay(args[0], OutputStream.nullOutputStream(), new LatencyHistogram[Command.Type.values().length], instrumented ? new LibraryMetrics() : null, tracking);
+		}
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			pool.resetPeakUsage();
+		}
+		LatencyHistogram[] latencies = new LatencyHistogram[Command.Type.values().length];
+		long start = System.nanoTime();
+		long commands;
+		try(OutputStream out = outputFile == null ? OutputStream.nullOutputStream() : new FileOutputStream(outputFile)) {
+			commands = replay(args[0], out, latencies, instrumented ? new LibraryMetrics() : null, tracking);
+		}
+		long elapsed = System.nanoTime() - start;
+		long peakHeap = 0;
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if(pool.getType() == MemoryType.HEAP) {
+				peakHeap += pool.getPeakUsage().getUsed();
+			}
+		}
+		System.out.printf("%d commands in %.3f s, %.0f commands/s, peak heap %.1f MB%n",
+				commands, elapsed / 1e9, commands * 1e9 / elapsed, peakHeap / 1e6);
+		System.out.printf("%-18s %10s %8s %8s %8s %8s %8s %10s%n",
+				"command", "count", "mean ns", "p50 ns", "p90 ns", "p99 ns", "p99.9 ns", "max ns");
+		for(Command.Type type : Command.Type.values()) {
+			LatencyHistogram histogram = latencies[type.ordinal()];
+			if(histogram == null) {
+				continue;
+			}
+			System.out.printf("%-18s %10d %8.0f %8d %8d %8d %8d %10d%n",
+					type.name().toLowerCase(), histogram.getCount(), histogram.getMean(), histogram.percentile(50),
+					histogram.percentile(90), histogram.percentile(99), histogram.percentile(99.9), histogram.getMax());
+		}
+	}
+
+	//executes the commands of the file and records the time of every command in the histogram of its type, returns the number of commands
+	private static long replay(String inputFile, OutputStream out, LatencyHistogram[] latencies, LibraryMetrics metrics, boolean tracking) throws IOException {
+		long commands = 0;
+		Utility utility = new Utility();
+		RedBlackTree library = new RedBlackTree();
+		library.setMetrics(metrics);
+		library.setSubtreeTracking(tracking);
+		CommandParser parser = new CommandParser();
+		try(MappedCommandReader reader = new MappedCommandReader(inputFile); OutputSink access = new OutputSink(out)) {
+			CharSequence input;
+			while((input = reader.nextLine()) != null) {
+				Command command = parser.parse(input);
+				if(command == null) {
+					continue;
+				}
+				commands++;
+				long start = System.nanoTime();
+				boolean quit = CommandExecutor.execute(command, library, utility, access);
+				long elapsed = System.nanoTime() - start;
+				LatencyHistogram histogram = latencies[command.getType().ordinal()];
+				if(histogram == null) {
+					histogram = new LatencyHistogram();
+					latencies[command.getType().ordinal()] = histogram;
+				}
+				histogram.record(elapsed);
+				if(metrics != null) {
+					metrics.recordLatency(command.getType(), elapsed);
+				}
+				if(quit) {
+					break;
+				}
+			}
+		}
+		return commands;
+	}
+}
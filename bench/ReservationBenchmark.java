@@ -0,0 +1,248 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * Benchmark of the {@link ReservationHeap} against the list of Reservation objects it replaced, in
+ * latency, bytes allocated per operation and heap footprint.
+ *
+ * The benchmark fills the waitlists of --books books with --depth reservations each, then runs --ops
+ * operations on random books. Every operation hands the book to the first patron of its waitlist and
+ * adds a new patron at the end, after checking that the patron does not wait for the book already, so
+ * the waitlists stay at the same length like those of bestsellers. The primitive way is the
+ * ReservationHeap of the library; the object way is the heap the library used before, an ArrayList of
+ * Reservation objects with a boxed time stamp, whose patrons were collected into a list for the check
+ * and which was fixed with a recursive heapify after a removal. The benchmark reports the bytes per
+ * waitlist after a garbage collection, the nanoseconds per operation, the latency percentiles of
+ * single operations and the bytes allocated per operation.
+ *
+ * Usage: java ReservationBenchmark [--books 100000] [--depth 20] [--ops 5000000] [--warmup 1000000]
+ * [--seed 42]
+ */
+public class ReservationBenchmark {
+
+	private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	//the patrons handed a book are summed up so that the JIT cannot drop the removal
+	private static long checksum;
+
+	public static void main(String[] args) {
+		int books = 100_000;
+		int depth = 20;
+		int ops = 5_000_000;
+		int warmup = 1_000_000;
+		long seed = 42;
+		for(int i = 0; i + 1 < args.length; i += 2) {
+			String value = args[i + 1];
+			switch(args[i]) {
+			case "--books":
+				books = Integer.parseInt(value);
+				break;
+			case "--depth":
+				depth = Integer.parseInt(value);
+				break;
+			case "--ops":
+				ops = Integer.parseInt(value);
+				break;
+			case "--warmup":
+				warmup = Integer.parseInt(value);
+				break;
+			case "--seed":
+				seed = Long.parseLong(value);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+		System.out.printf("%-10s %12s %10s %8s %8s %8s %10s%n", "heap", "bytes/list", "ns/op", "p50 ns", "p99 ns", "max ns", "bytes/op");
+		for(boolean primitive : new boolean[] {true, false}) {
+			long before = usedHeap();
+			Waitlists waitlists = primitive ? new PrimitiveWaitlists(books) : new ObjectWaitlists(books);
+			Random random = new Random(seed);
+			for(int book = 0; book < books; book++) {
+				for(int i = 0; i < depth; i++) {
+					waitlists.reserve(book, 1 + random.nextInt(5));
+				}
+			}
+			long footprint = usedHeap() - before;
+			run(waitlists, books, warmup, random, new LatencyHistogram());
+			LatencyHistogram latencies = new LatencyHistogram();
+			long thread = Thread.currentThread().getId();
+			long allocatedBefore = THREADS.getThreadAllocatedBytes(thread);
+			long start = System.nanoTime();
+			run(waitlists, books, ops, random, latencies);
+			long elapsed = System.nanoTime() - start;
+			long allocated = THREADS.getThreadAllocatedBytes(thread) - allocatedBefore;
+			System.out.printf("%-10s %12.0f %10.1f %8d %8d %8d %10.1f%n", primitive ? "primitive" : "object",
+					(double) footprint / books, (double) elapsed / ops, latencies.percentile(50), latencies.percentile(99),
+					latencies.getMax(), (double) allocated / ops);
+		}
+		System.out.println("checksum " + checksum);
+	}
+
+	private static void run(Waitlists waitlists, int books, int ops, Random random, LatencyHistogram latencies) {
+		for(int i = 0; i < ops; i++) {
+			int book = random.nextInt(books);
+			int priority = 1 + random.nextInt(5);
+			long start = System.nanoTime();
+			checksum += waitlists.handOver(book);
+			waitlists.reserve(book, priority);
+			latencies.record(System.nanoTime() - start);
+		}
+	}
+
+	//the heap the usage of the benchmark is measured after, once the garbage collector settled
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for(int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private abstract static class Waitlists {
+
+		//every reservation gets a new patron and the next time stamp
+		int nextPatron;
+		long timeStamp;
+
+		//adds a new patron to the waitlist of the book, unless the patron waits for it already
+		abstract void reserve(int book, int priority);
+
+		//removes the first patron of the waitlist of the book and returns it
+		abstract int handOver(int book);
+	}
+
+	private static class PrimitiveWaitlists extends Waitlists {
+
+		private final ReservationHeap[] heaps;
+
+		PrimitiveWaitlists(int books) {
+			heaps = new ReservationHeap[books];
+			for(int i = 0; i < books; i++) {
+				heaps[i] = new ReservationHeap();
+			}
+		}
+
+		@Override
+		void reserve(int book, int priority) {
+			int patronId = ++nextPatron;
+			if(!heaps[book].contains(patronId)) {
+				heaps[book].insert(patronId, priority, ++timeStamp);
+			}
+		}
+
+		@Override
+		int handOver(int book) {
+			return heaps[book].poll();
+		}
+	}
+
+	//the reservations of the library before the ReservationHeap
+	private static class ObjectWaitlists extends Waitlists {
+
+		private final List<List<Reservation>> heaps;
+
+		ObjectWaitlists(int books) {
+			heaps = new ArrayList<>(books);
+			for(int i = 0; i < books; i++) {
+				heaps.add(new ArrayList<>());
+			}
+		}
+
+		@Override
+		void reserve(int book, int priority) {
+			int patronId = ++nextPatron;
+			List<Reservation> reservationHeap = heaps.get(book);
+			List<Integer> patronIds = reservationHeap.stream().map(Reservation::getPatronId).collect(Collectors.toList());
+			if(patronIds.contains(patronId)) {
+				return;
+			}
+			Reservation reservation = new Reservation(patronId, priority, ++timeStamp);
+			reservationHeap.add(reservation);
+			int currentIndex = reservationHeap.size() - 1;
+			while(currentIndex > 0) {
+				int parentIndex = (currentIndex - 1) / 2;
+				if(compare(reservation, reservationHeap.get(parentIndex)) >= 0) {
+					break;
+				}
+				reservationHeap.set(currentIndex, reservationHeap.get(parentIndex));
+				reservationHeap.set(parentIndex, reservation);
+				currentIndex = parentIndex;
+			}
+		}
+
+		@Override
+		int handOver(int book) {
+			List<Reservation> reservationHeap = heaps.get(book);
+			int patronId = reservationHeap.get(0).getPatronId();
+			reservationHeap.set(0, reservationHeap.get(reservationHeap.size() - 1));
+			reservationHeap.remove(reservationHeap.size() - 1);
+			heapify(reservationHeap, reservationHeap.size(), 0);
+			return patronId;
+		}
+
+		private static int compare(Reservation child, Reservation parent) {
+			if(child.getPriorityNumber() < parent.getPriorityNumber()) {
+				return -1;
+			} else if(child.getPriorityNumber() > parent.getPriorityNumber()) {
+				return 1;
+			}
+			return Long.compare(child.getTimeOfReservation(), parent.getTimeOfReservation());
+		}
+
+		private static void heapify(List<Reservation> reservationHeap, int length, int i) {
+			int smallest = i;
+			int left = (2 * i) + 1;
+			int right = (2 * i) + 2;
+			if(left < length) {
+				if((reservationHeap.get(left).getPriorityNumber() == reservationHeap.get(smallest).getPriorityNumber()
+						&& reservationHeap.get(left).getTimeOfReservation() < reservationHeap.get(smallest).getTimeOfReservation())
+						|| reservationHeap.get(left).getPriorityNumber() < reservationHeap.get(smallest).getPriorityNumber()) {
+					smallest = left;
+				}
+			}
+			if(right < length) {
+				if((reservationHeap.get(right).getPriorityNumber() == reservationHeap.get(smallest).getPriorityNumber()
+						&& reservationHeap.get(right).getTimeOfReservation() < reservationHeap.get(smallest).getTimeOfReservation())
+						|| reservationHeap.get(right).getPriorityNumber() < reservationHeap.get(smallest).getPriorityNumber()) {
+					smallest = right;
+				}
+			}
+			if(smallest != i) {
+				Reservation temp = reservationHeap.get(smallest);
+				reservationHeap.set(smallest, reservationHeap.get(i));
+				reservationHeap.set(i, temp);
+				heapify(reservationHeap, length, smallest);
+			}
+		}
+	}
+
+	//the reservation object of the library before the ReservationHeap, with its boxed time stamp
+	private static class Reservation {
+
+		private final int patronId;
+		private final int priorityNumber;
+		private final Long timeOfReservation;
+
+		Reservation(int patronId, int priorityNumber, Long timeOfReservation) {
+			this.patronId = patronId;
+			this.priorityNumber = priorityNumber;
+			this.timeOfReservation = timeOfReservation;
+		}
+
+		int getPatronId() {
+			return patronId;
+		}
+
+		int getPriorityNumber() {
+			return priorityNumber;
+		}
+
+		Long getTimeOfReservation() {
+			return timeOfReservation;
+		}
+	}
+}
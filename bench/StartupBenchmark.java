@@ -0,0 +1,125 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Benchmark of the startup of a library from a {@link LibrarySnapshot} against replaying its command
+ * file.
+ *
+ * The benchmark replays the command file like gatorLibrary, reading it with the
+ * {@link MappedCommandReader} and executing every command up to Quit() with the {@link CommandExecutor},
+ * and writes the resulting library to a snapshot. Then it loads the library from the snapshot and
+ * checks that it is the same as the replayed one: the same book count, color flip count and last
+ * reservation time stamp, and the same text for PrintBooks over all books. Every step runs --runs
+ * times and the last run is reported, so the command file and the snapshot are in the page cache. The
+ * messages of the replay go to a sink that drops them. Command files are written with the
+ * {@link WorkloadGenerator}, a file whose InsertBook commands add a million books makes a library of
+ * that size.
+ *
+ * Usage: java StartupBenchmark file [--snapshot <file next to the command file>] [--runs 3]
+ */
+public class StartupBenchmark {
+
+	public static void main(String[] args) throws IOException {
+		if(args.length == 0) {
+			System.out.println("Please provide the input file name");
+			return;
+		}
+		String snapshot = args[0] + ".snapshot";
+		int runs = 3;
+		for(int i = 1; i + 1 < args.length; i += 2) {
+			switch(args[i]) {
+			case "--snapshot":
+				snapshot = args[i + 1];
+				break;
+			case "--runs":
+				runs = Integer.parseInt(args[i + 1]);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+		long replayed = 0;
+		long written = 0;
+		long loaded = 0;
+		long commands = 0;
+		RedBlackTree library = null;
+		Utility utility = null;
+		RedBlackTree restored = null;
+		Utility restoredUtility = null;
+		try {
+			for(int run = 0; run < runs; run++) {
+				//the libraries of the last run are dropped before the next one starts
+				library = null;
+				restored = null;
+				utility = new Utility();
+				//the garbage of the earlier steps is collected before every step, not during it
+				System.gc();
+				long start = System.nanoTime();
+				library = new RedBlackTree();
+				commands = replay(args[0], library, utility);
+				replayed = System.nanoTime() - start;
+
+				System.gc();
+				start = System.nanoTime();
+				LibrarySnapshot.write(library, utility, snapshot);
+				written = System.nanoTime() - start;
+
+				restoredUtility = new Utility();
+				System.gc();
+				start = System.nanoTime();
+				restored = LibrarySnapshot.load(snapshot, restoredUtility);
+				loaded = System.nanoTime() - start;
+			}
+			check(library.getBookCount() == restored.getBookCount(), "book count");
+			check(library.colorFlipCount == restored.colorFlipCount, "color flip count");
+			check(utility.getLastTimestamp() == restoredUtility.getLastTimestamp(), "last reservation time stamp");
+			check(checksum(library) == checksum(restored), "books");
+			System.out.printf("%d commands, %d books, snapshot of %.1f MB%n", commands, library.getBookCount(), new File(snapshot).length() / 1e6);
+			System.out.printf("%-9s %10s%n", "step", "ms");
+			System.out.printf("%-9s %10.1f%n", "replay", replayed / 1e6);
+			System.out.printf("%-9s %10.1f%n", "write", written / 1e6);
+			System.out.printf("%-9s %10.1f%n", "load", loaded / 1e6);
+			System.out.printf("load is %.1f times faster than replay%n", (double) replayed / loaded);
+		} finally {
+			new File(snapshot).delete();
+		}
+	}
+
+	//executes the commands of the file up to Quit() like gatorLibrary, returns the number of commands
+	private static long replay(String inputFile, RedBlackTree library, Utility utility) throws IOException {
+		long commands = 0;
+		CommandParser parser = new CommandParser();
+		try(MappedCommandReader reader = new MappedCommandReader(inputFile); OutputSink access = new OutputSink(OutputStream.nullOutputStream())) {
+			CharSequence input;
+			while((input = reader.nextLine()) != null) {
+				Command command = parser.parse(input);
+				if(command == null) {
+					continue;
+				}
+				commands++;
+				if(CommandExecutor.execute(command, library, utility, access)) {
+					break;
+				}
+			}
+		}
+		return commands;
+	}
+
+	//the checksum of the text PrintBooks writes for all books of the library
+	private static long checksum(RedBlackTree library) throws IOException {
+		CRC32 crc = new CRC32();
+		try(OutputSink access = new OutputSink(new CheckedOutputStream(OutputStream.nullOutputStream(), crc))) {
+			library.printBooks(Integer.MIN_VALUE, Integer.MAX_VALUE, new Utility(), access);
+		}
+		return crc.getValue();
+	}
+
+	private static void check(boolean same, String what) {
+		if(!same) {
+			throw new IllegalStateException("The " + what + " of the loaded library differs from the replayed one");
+		}
+	}
+}
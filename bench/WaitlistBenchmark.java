@@ -0,0 +1,147 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark of BorrowBook, ReturnBook and CancelReservation on bestsellers as their waitlists grow
+ * from the 20 reservations of the original library to 100k.
+ *
+ * For every waitlist length d the benchmark builds a library of --books books, each borrowed and with
+ * a reservation limit of its own of d, and fills every waitlist with d patrons of random priority.
+ * Then it runs --ops rounds on random books, each of them a ReturnBook, which hands the book to the
+ * first patron of the waitlist, a BorrowBook of a new patron, a CancelReservation of a random waiting
+ * patron and a BorrowBook of that patron again, so the waitlists stay at length d. The benchmark reports
+ * the latency percentiles of every command, which should only grow with log d, and the memory per
+ * reservation after a garbage collection. The messages go to a sink that drops them.
+ *
+ * Usage: java WaitlistBenchmark [--lengths 20,200,2000,20000,100000] [--books 10] [--ops 200000]
+ * [--warmup 50000] [--seed 42]
+ */
+public class WaitlistBenchmark {
+
+	private static final String[] COMMANDS = {"borrow", "return", "cancel"};
+
+	public static void main(String[] args) throws IOException {
+		int[] lengths = {20, 200, 2000, 20_000, 100_000};
+		int books = 10;
+		int ops = 200_000;
+		int warmup = 50_000;
+		long seed = 42;
+		for(int i = 0; i + 1 < args.length; i += 2) {
+			String value = args[i + 1];
+			switch(args[i]) {
+			case "--lengths":
+				String[] parts = value.split(",");
+				lengths = new int[parts.length];
+				for(int j = 0; j < parts.length; j++) {
+					lengths[j] = Integer.parseInt(parts[j].trim());
+				}
+				break;
+			case "--books":
+				books = Integer.parseInt(value);
+				break;
+			case "--ops":
+				ops = Integer.parseInt(value);
+				break;
+			case "--warmup":
+				warmup = Integer.parseInt(value);
+				break;
+			case "--seed":
+				seed = Long.parseLong(value);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+		OutputSink output = new OutputSink(OutputStream.nullOutputStream());
+		System.out.printf("%-8s %-7s %8s %8s %8s %8s %14s%n", "length", "command", "p50 ns", "p90 ns", "p99 ns", "max ns", "bytes/reserv.");
+		for(int length : lengths) {
+			long before = usedHeap();
+			RedBlackTree library = new RedBlackTree();
+			List<Book> catalogue = new ArrayList<>(books);
+			for(int i = 0; i < books; i++) {
+				Book book = library.getBook(2 * (i + 1), "Book" + i, "Author" + i, "Yes");
+				book.setReservationLimit(length);
+				catalogue.add(book);
+			}
+			library.loadBooks(catalogue);
+			Utility utility = new Utility();
+			Random random = new Random(seed);
+			int patronId = 0;
+			for(int i = 0; i < books; i++) {
+				//the first patron borrows the book, the others wait for it
+				for(int j = 0; j <= length; j++) {
+					library.borrowBook(++patronId, 2 * (i + 1), 1 + random.nextInt(5), output, utility);
+				}
+			}
+			long footprint = usedHeap() - before;
+			Round round = new Round(library, utility, output, books, patronId, random);
+			round.run(warmup, new LatencyHistogram[] {new LatencyHistogram(), new LatencyHistogram(), new LatencyHistogram()});
+			LatencyHistogram[] latencies = {new LatencyHistogram(), new LatencyHistogram(), new LatencyHistogram()};
+			round.run(ops, latencies);
+			for(int command = 0; command < COMMANDS.length; command++) {
+				LatencyHistogram histogram = latencies[command];
+				System.out.printf("%-8d %-7s %8d %8d %8d %8d %14s%n", length, COMMANDS[command], histogram.percentile(50),
+						histogram.percentile(90), histogram.percentile(99), histogram.getMax(),
+						command == 0 ? String.format("%.1f", (double) footprint / ((long) books * length)) : "");
+			}
+			output.flush();
+		}
+	}
+
+	//the heap in use after the garbage collector ran a few times, so that it settled
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for(int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static class Round {
+
+		private final RedBlackTree library;
+		private final Utility utility;
+		private final OutputSink output;
+		private final int books;
+		private final Random random;
+		private int nextPatron;
+
+		Round(RedBlackTree library, Utility utility, OutputSink output, int books, int lastPatron, Random random) {
+			this.library = library;
+			this.utility = utility;
+			this.output = output;
+			this.books = books;
+			this.nextPatron = lastPatron;
+			this.random = random;
+		}
+
+		//runs the rounds and records the latencies of borrows, returns and cancels in this order
+		void run(int rounds, LatencyHistogram[] latencies) throws IOException {
+			for(int i = 0; i < rounds; i++) {
+				int bookId = 2 * (random.nextInt(books) + 1);
+				Book book = library.getBookFromLibrary(library.getRoot(), bookId);
+				int borrower = book.getBorrowedBy();
+				long start = System.nanoTime();
+				library.returnBook(borrower, bookId, output, utility);
+				latencies[1].record(System.nanoTime() - start);
+
+				start = System.nanoTime();
+				library.borrowBook(++nextPatron, bookId, 1 + random.nextInt(5), output, utility);
+				latencies[0].record(System.nanoTime() - start);
+
+				ReservationHeap waitlist = book.getReservationHeap();
+				int waiting = waitlist.getPatronId(random.nextInt(waitlist.size()));
+				start = System.nanoTime();
+				library.cancelReservation(waiting, bookId, output, utility);
+				latencies[2].record(System.nanoTime() - start);
+
+				start = System.nanoTime();
+				library.borrowBook(waiting, bookId, 1 + random.nextInt(5), output, utility);
+				latencies[0].record(System.nanoTime() - start);
+			}
+		}
+	}
+}
@@ -0,0 +1,206 @@
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Writes a synthetic command file in the syntax that gatorLibrary reads.
+ *
+ * The file starts with InsertBook commands for a catalogue of books with the IDs 1 to n in random
+ * order, followed by a mix of commands whose shares are set with --mix, and ends with Quit(). The
+ * books of the commands are picked with a {@link KeyDistribution}, so a Zipfian skew makes a few
+ * books hot. The generator applies every command to a library of its own while it writes, so that
+ * most ReturnBook commands name the patron that really has the book and InsertBook adds books that
+ * were deleted before instead of duplicates; every other command may also name a missing book, just
+ * like a real command file.
+ *
+ * Usage: java WorkloadGenerator file [--commands 1000000] [--books 100000] [--patrons 10000]
+ * [--mix insert:2,delete:1,borrow:40,return:30,print:10,range:5,closest:10,flip:2] [--keys zipfian]
+ * [--skew 0.99] [--priorities 5] [--priority-keys random] [--range 20] [--seed 42]
+ */
+public class WorkloadGenerator {
+
+	private enum Kind {
+		INSERT, DELETE, BORROW, RETURN, PRINT, RANGE, CLOSEST, FLIP
+	}
+
+	private final int books;
+	private final int patrons;
+	private final int rangeWidth;
+	private final int[] weights = new int[Kind.values().length];
+	private final Random random;
+	private final KeyDistribution.Sampler bookSampler;
+	private final KeyDistribution.Sampler prioritySampler;
+	//the library the commands are applied to, so that the generator knows who has which book
+	private final RedBlackTree library = new RedBlackTree();
+	private final Utility utility = new Utility();
+	private final OutputStream discard = OutputStream.nullOutputStream();
+	private final List<Integer> deleted = new ArrayList<>();
+
+	private WorkloadGenerator(int books, int patrons, int priorities, int rangeWidth, String mix,
+			KeyDistribution keys, double skew, KeyDistribution priorityKeys, long seed) {
+		this.books = books;
+		this.patrons = patrons;
+		this.rangeWidth = rangeWidth;
+		this.random = new Random(seed);
+		this.bookSampler = keys.sampler(books, seed + 1, skew);
+		//with a zipfian distribution a few priorities are much more common than the others
+		this.prioritySampler = priorityKeys.sampler(priorities, seed + 2, skew);
+		for(String part : mix.split(",")) {
+			String[] entry = part.split(":");
+			weights[Kind.valueOf(entry[0].trim().toUpperCase()).ordinal()] = Integer.parseInt(entry[1].trim());
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if(args.length == 0) {
+			System.out.println("Please provide the name of the command file to write");
+			return;
+		}
+		long commands = 1_000_000;
+		int books = 100_000;
+		int patrons = 10_000;
+		int priorities = 5;
+		int rangeWidth = 20;
+		String mix = "insert:2,delete:1,borrow:40,return:30,print:10,range:5,closest:10,flip:2";
+		KeyDistribution keys = KeyDistribution.ZIPFIAN;
+		KeyDistribution priorityKeys = KeyDistribution.RANDOM;
+		double skew = KeyDistribution.DEFAULT_THETA;
+		long seed = 42;
+		for(int i = 1; i + 1 < args.length; i += 2) {
+			String value = args[i + 1];
+			switch(args[i]) {
+			case "--commands":
+				commands = Long.parseLong(value);
+				break;
+			case "--books":
+				books = Integer.parseInt(value);
+				break;
+			case "--patrons":
+				patrons = Integer.parseInt(value);
+				break;
+			case "--mix":
+				mix = value;
+				break;
+			case "--keys":
+				keys = KeyDistribution.valueOf(value.toUpperCase());
+				break;
+			case "--skew":
+				skew = Double.parseDouble(value);
+				break;
+			case "--priorities":
+				priorities = Integer.parseInt(value);
+				break;
+			case "--priority-keys":
+				priorityKeys = KeyDistribution.valueOf(value.toUpperCase());
+				break;
+			case "--range":
+				rangeWidth = Integer.parseInt(value);
+				break;
+			case "--seed":
+				seed = Long.parseLong(value);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+		WorkloadGenerator generator = new WorkloadGenerator(books, patrons, priorities, rangeWidth, mix, keys, skew, priorityKeys, seed);
+		try(OutputSink out = new OutputSink(new FileOutputStream(args[0]))) {
+			generator.write(commands, out);
+		}
+	}
+
+	private void write(long commands, OutputSink out) throws IOException {
+		int total = 0;
+		for(int weight : weights) {
+			total += weight;
+		}
+		if(total <= 0) {
+			throw new IllegalArgumentException("The command mix must have a positive weight");
+		}
+		//the catalogue is inserted in random order, so that the first commands already see a balanced mix of rotations
+		int[] catalogue = new int[books];
+		for(int i = 0; i < books; i++) {
+			catalogue[i] = i + 1;
+		}
+		for(int i = books - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int id = catalogue[i];
+			catalogue[i] = catalogue[j];
+			catalogue[j] = id;
+		}
+		for(int id : catalogue) {
+			this.insert(id, out);
+		}
+		for(long i = 0; i < commands; i++) {
+			int pick = random.nextInt(total);
+			int kind = 0;
+			while(pick >= weights[kind]) {
+				pick -= weights[kind];
+				kind++;
+			}
+			this.writeCommand(Kind.values()[kind], out);
+		}
+		out.append("Quit()\n");
+	}
+
+	private void writeCommand(Kind kind, OutputSink out) throws IOException {
+		int bookId = bookSampler.nextIndex() + 1;
+		switch(kind) {
+		case INSERT:
+			//books that were deleted come back, while the whole catalogue is in the library a PrintBook is written instead
+			if(deleted.isEmpty()) {
+				this.writeCommand(Kind.PRINT, out);
+				return;
+			}
+			int last = deleted.size() - 1;
+			int index = random.nextInt(deleted.size());
+			bookId = deleted.get(index);
+			deleted.set(index, deleted.get(last));
+			deleted.remove(last);
+			this.insert(bookId, out);
+			break;
+		case DELETE:
+			if(library.getBookFromLibrary(library.getRoot(), bookId) != null) {
+				deleted.add(bookId);
+			}
+			library.deleteBookFromLibrary(bookId, discard, utility);
+			out.append("DeleteBook(").append(bookId).append(")\n");
+			break;
+		case BORROW:
+			int patronId = random.nextInt(patrons) + 1;
+			int priority = prioritySampler.nextIndex() + 1;
+			library.borrowBook(patronId, bookId, priority, discard, utility);
+			out.append("BorrowBook(").append(patronId).append(", ").append(bookId).append(", ").append(priority).append(")\n");
+			break;
+		case RETURN:
+			Book book = library.getBookFromLibrary(library.getRoot(), bookId);
+			//a book that nobody has is returned by a random patron, which the library rejects
+			int returningPatron = book != null && book.getAvailabilityStatus().equalsIgnoreCase("no") ? book.getBorrowedBy() : random.nextInt(patrons) + 1;
+			library.returnBook(returningPatron, bookId, discard, utility);
+			out.append("ReturnBook(").append(returningPatron).append(", ").append(bookId).append(")\n");
+			break;
+		case PRINT:
+			out.append("PrintBook(").append(bookId).append(")\n");
+			break;
+		case RANGE:
+			out.append("PrintBooks(").append(bookId).append(", ").append(bookId + rangeWidth).append(")\n");
+			break;
+		case CLOSEST:
+			out.append("FindClosestBook(").append(bookId).append(")\n");
+			break;
+		default:
+			out.append("ColorFlipCount()\n");
+			break;
+		}
+	}
+
+	private void insert(int bookId, OutputSink out) throws IOException {
+		String bookName = "Book " + bookId;
+		String authorName = "Author " + (bookId % 1000);
+		library.insertBook(bookId, bookName, authorName, "Yes");
+		out.append("InsertBook(").append(bookId).append(", \"").append(bookName).append("\", \"").append(authorName).append("\", \"Yes\")\n");
+	}
+}
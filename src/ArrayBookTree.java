@@ -0,0 +1,131 @@
+import java.util.Arrays;
+
+/**
+ * Red-black tree of books whose nodes are slots in parallel arrays instead of objects.
+ *
+ * A node is an index: its book id, left and right child are at that index of int arrays, and the
+ * parent index shares one int with the color, which is kept in the sign bit because indexes are never
+ * negative. The book name, author and availability are in parallel arrays as well. A book costs no node
+ * object, no object header and no references besides its strings, and the fields read while searching
+ * and rotating are next to the fields of the neighbouring nodes in memory.
+ *
+ * The algorithms, the nil node and the free list of deleted slots are those of {@link IndexedBookTree},
+ * shared with {@link OffHeapBookTree}.
+ */
+public class ArrayBookTree extends IndexedBookTree {
+
+	private static final int RED_BIT = Integer.MIN_VALUE;
+	private static final int INITIAL_CAPACITY = 16;
+
+	private int[] keys = new int[INITIAL_CAPACITY];
+	private int[] left = new int[INITIAL_CAPACITY];
+	private int[] right = new int[INITIAL_CAPACITY];
+	//parent index in the low 31 bits, RED_BIT in the sign bit
+	private int[] parentAndColor = new int[INITIAL_CAPACITY];
+	private String[] bookNames = new String[INITIAL_CAPACITY];
+	private String[] authorNames = new String[INITIAL_CAPACITY];
+	private String[] availabilityStatuses = new String[INITIAL_CAPACITY];
+	//number of slots ever handed out, including the nil node in slot 0, which the zeroed arrays already make black
+	private int slots = 1;
+
+	//returns the number of node slots the arrays have room for
+	public int capacity() {
+		return keys.length;
+	}
+
+	//takes the next new slot, the arrays grow by half when they are full
+	@Override
+	int newNode() {
+		if(slots == keys.length) {
+			int capacity = slots + (slots >> 1);
+			keys = Arrays.copyOf(keys, capacity);
+			left = Arrays.copyOf(left, capacity);
+			right = Arrays.copyOf(right, capacity);
+			parentAndColor = Arrays.copyOf(parentAndColor, capacity);
+			bookNames = Arrays.copyOf(bookNames, capacity);
+			authorNames = Arrays.copyOf(authorNames, capacity);
+			availabilityStatuses = Arrays.copyOf(availabilityStatuses, capacity);
+		}
+		return slots++;
+	}
+
+	//the strings of a free slot are dropped for the garbage collector
+	@Override
+	void release(int node) {
+		bookNames[node] = null;
+		authorNames[node] = null;
+		availabilityStatuses[node] = null;
+	}
+
+	@Override
+	void setStrings(int node, String bookName, String authorName, String availabilityStatus) {
+		bookNames[node] = bookName;
+		authorNames[node] = authorName;
+		availabilityStatuses[node] = availabilityStatus;
+	}
+
+	@Override
+	String bookName(int node) {
+		return bookNames[node];
+	}
+
+	@Override
+	String authorName(int node) {
+		return authorNames[node];
+	}
+
+	@Override
+	String availabilityStatus(int node) {
+		return availabilityStatuses[node];
+	}
+
+	@Override
+	int key(int node) {
+		return keys[node];
+	}
+
+	@Override
+	int left(int node) {
+		return left[node];
+	}
+
+	@Override
+	int right(int node) {
+		return right[node];
+	}
+
+	@Override
+	int parent(int node) {
+		return parentAndColor[node] & Integer.MAX_VALUE;
+	}
+
+	@Override
+	int color(int node) {
+		return parentAndColor[node] >>> 31;
+	}
+
+	@Override
+	void setKey(int node, int key) {
+		keys[node] = key;
+	}
+
+	@Override
+	void setLeft(int node, int child) {
+		left[node] = child;
+	}
+
+	@Override
+	void setRight(int node, int child) {
+		right[node] = child;
+	}
+
+	@Override
+	void setParent(int node, int parent) {
+		parentAndColor[node] = (parentAndColor[node] & RED_BIT) | parent;
+	}
+
+	@Override
+	void setColor(int node, int color) {
+		parentAndColor[node] = (parentAndColor[node] & Integer.MAX_VALUE) | (color << 31);
+	}
+}
@@ -1,5 +1,5 @@
-import java.util.List;
-import java.util.stream.Collectors;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 
 public class Book {
 
@@ -8,11 +8,20 @@ public class Book {
 	private String authorName;
 	private String availabilityStatus;
 	private int borrowedBy;
-	private List<Reservation> reservationHeap;
+	private ReservationHeap reservationHeap;
+	//number of reservations allowed for this book, 0 means the limit of the library applies
+	private int reservationLimit;
 	Book left;
 	Book right;
 	int color;
 	Book parent;
+	//color of the book when the insert or delete with the number colorOperation started, used for the color flip count
+	int colorAtOperationStart;
+	int colorOperation;
+	//number of books in the subtree of this book and the number of books on its longest downward path,
+	//only kept up to date while the tree tracks its subtrees
+	int size;
+	int height;
 	
 	public Book() {
 	}
@@ -28,9 +37,82 @@ public class Book {
 	//this tostring() method will help us to create the string by the book so we can write it into file
 	@Override
 	public String toString() {
-	    String borrowedByString = borrowedBy == 0 ? "None" : String.valueOf(borrowedBy);
-	    return String.format("BookID = %d\nTitle = \"%s\"\nAuthor = \"%s\"\nAvailability = \"%s\"\nBorrowedBy = %s\nReservations = %s",
-	            bookId, bookName, authorName, availabilityStatus, borrowedByString, reservationHeap.stream().map(Reservation::getPatronId).collect(Collectors.toList()).toString());
+		StringBuilder builder = new StringBuilder();
+		try {
+			this.writeTo(builder);
+		} catch(IOException e) {
+			//a StringBuilder never throws, the exception only comes from the Appendable interface
+			throw new UncheckedIOException(e);
+		}
+		return builder.toString();
+	}
+
+	//writes the text of the book, the only place that knows its format, an OutputSink gets the fields straight into its buffer
+	public void writeTo(Appendable out) throws IOException {
+		out.append("BookID = ");
+		appendInt(out, bookId);
+		out.append("\nTitle = \"").append(bookName)
+				.append("\"\nAuthor = \"").append(authorName)
+				.append("\"\nAvailability = \"").append(availabilityStatus)
+				.append("\"\nBorrowedBy = ");
+		if(borrowedBy == 0) {
+			out.append("None");
+		} else {
+			appendInt(out, borrowedBy);
+		}
+		out.append("\nReservations = [");
+		for(int i = 0; i < this.getReservationCount(); i++) {
+			if(i > 0) {
+				out.append(", ");
+			}
+			appendInt(out, reservationHeap.getPatronId(i));
+		}
+		out.append(']');
+	}
+
+	//the sink and the builder append the digits of an int without creating a string for them
+	private static void appendInt(Appendable out, int value) throws IOException {
+		if(out instanceof OutputSink) {
+			((OutputSink) out).append(value);
+		} else if(out instanceof StringBuilder) {
+			((StringBuilder) out).append(value);
+		} else {
+			out.append(Integer.toString(value));
+		}
+	}
+
+	/**
+	 * Changes the color of the book and tells how the color flip count changes.
+	 *
+	 * The first change within an operation remembers the color the book had at its start. The book
+	 * counts as one flip while its color differs from that color, so the result is 1 when the change
+	 * makes the color differ, -1 when it restores the starting color and 0 otherwise.
+	 *
+	 * @param color     The new color, 1 for red and 0 for black.
+	 * @param operation The number of the insert or delete that changes the color.
+	 * @return          The change of the color flip count.
+	 */
+	int setColor(int color, int operation) {
+		if(colorOperation != operation) {
+			colorOperation = operation;
+			colorAtOperationStart = this.color;
+		}
+		int before = this.color != colorAtOperationStart ? 1 : 0;
+		this.color = color;
+		return (color != colorAtOperationStart ? 1 : 0) - before;
+	}
+
+	//the color the book had when the given operation started
+	int getColorAtStartOf(int operation) {
+		return colorOperation == operation ? colorAtOperationStart : color;
+	}
+
+	//used when this node takes over the id of another book, its color is then compared with the starting color of that book
+	int inheritColorHistory(Book from, int operation) {
+		int before = colorOperation == operation && color != colorAtOperationStart ? 1 : 0;
+		colorAtOperationStart = from.getColorAtStartOf(operation);
+		colorOperation = operation;
+		return (color != colorAtOperationStart ? 1 : 0) - before;
 	}
 
 	public String getBookName() {
@@ -69,11 +151,24 @@ public class Book {
 		this.borrowedBy = borrowedBy;
 	}
 
-	public List<Reservation> getReservationHeap() {
+	public int getReservationLimit() {
+		return reservationLimit;
+	}
+
+	public void setReservationLimit(int reservationLimit) {
+		this.reservationLimit = reservationLimit;
+	}
+
+	public ReservationHeap getReservationHeap() {
 		return reservationHeap;
 	}
 
-	public void setReservationHeap(List<Reservation> reservationHeap) {
+	public void setReservationHeap(ReservationHeap reservationHeap) {
 		this.reservationHeap = reservationHeap;
 	}
+
+	//the number of reservations, a copy of a book without a reservation heap has none
+	public int getReservationCount() {
+		return reservationHeap == null ? 0 : reservationHeap.size();
+	}
 }
@@ -0,0 +1,36 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Cursor over the books of the library whose IDs fall in a closed range [start, end].
+ *
+ * The cursor starts at the first book with an ID greater than or equal to the start of the
+ * range and then walks the in-order successors using the parent links of the tree, so the
+ * books are returned in increasing order of book ID without any recursion or intermediate
+ * collection. Only the subtrees that overlap the range are ever visited.
+ */
+public class BookRangeCursor implements Iterator<Book> {
+
+	private Book next;
+	private final int end;
+
+	public BookRangeCursor(Book first, int end) {
+		this.next = first;
+		this.end = end;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return next != null && next.getBookId() <= end;
+	}
+
+	@Override
+	public Book next() {
+		if(!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		Book current = next;
+		next = RedBlackTree.getSuccessor(current);
+		return current;
+	}
+}
@@ -0,0 +1,191 @@
+/**
+ * A single parsed line of the library command language.
+ *
+ * The type tells which of the fields are set: InsertBook uses the book id, name, author and
+ * availability, PrintBook, DeleteBook and FindClosestBook only the book id, PrintBooks the start
+ * and end of the range, BorrowBook the patron id, book id and priority, and ReturnBook the patron
+ * id and book id. CountBooks uses the start and end of the range and BookAt the position of the
+ * book. FindByAuthor uses the author name and FindByTitle the book name, a trailing '*' in them asks
+ * for every name that starts with the rest. PrintPatron uses the patron id and CancelReservation the
+ * patron id and book id. ColorFlipCount, Validate and Quit carry no arguments.
+ */
+public class Command {
+
+	public enum Type {
+		INSERT_BOOK,
+		PRINT_BOOK,
+		PRINT_BOOKS,
+		BORROW_BOOK,
+		RETURN_BOOK,
+		DELETE_BOOK,
+		FIND_CLOSEST_BOOK,
+		COUNT_BOOKS,
+		BOOK_AT,
+		FIND_BY_AUTHOR,
+		FIND_BY_TITLE,
+		PRINT_PATRON,
+		CANCEL_RESERVATION,
+		COLOR_FLIP_COUNT,
+		VALIDATE,
+		QUIT
+	}
+
+	//the commands without arguments are shared, they carry no state
+	private static final Command COLOR_FLIP_COUNT = new Command(Type.COLOR_FLIP_COUNT);
+	private static final Command VALIDATE = new Command(Type.VALIDATE);
+	private static final Command QUIT = new Command(Type.QUIT);
+
+	private final Type type;
+	private int bookId;
+	private int patronId;
+	private int patronPriority;
+	private int start;
+	private int end;
+	private int position;
+	private String bookName;
+	private String authorName;
+	private String availabilityStatus;
+
+	private Command(Type type) {
+		this.type = type;
+	}
+
+	public static Command insertBook(int bookId, String bookName, String authorName, String availabilityStatus) {
+		Command command = new Command(Type.INSERT_BOOK);
+		command.bookId = bookId;
+		command.bookName = bookName;
+		command.authorName = authorName;
+		command.availabilityStatus = availabilityStatus;
+		return command;
+	}
+
+	public static Command printBook(int bookId) {
+		Command command = new Command(Type.PRINT_BOOK);
+		command.bookId = bookId;
+		return command;
+	}
+
+	public static Command printBooks(int start, int end) {
+		Command command = new Command(Type.PRINT_BOOKS);
+		command.start = start;
+		command.end = end;
+		return command;
+	}
+
+	public static Command borrowBook(int patronId, int bookId, int patronPriority) {
+		Command command = new Command(Type.BORROW_BOOK);
+		command.patronId = patronId;
+		command.bookId = bookId;
+		command.patronPriority = patronPriority;
+		return command;
+	}
+
+	public static Command returnBook(int patronId, int bookId) {
+		Command command = new Command(Type.RETURN_BOOK);
+		command.patronId = patronId;
+		command.bookId = bookId;
+		return command;
+	}
+
+	public static Command deleteBook(int bookId) {
+		Command command = new Command(Type.DELETE_BOOK);
+		command.bookId = bookId;
+		return command;
+	}
+
+	public static Command findClosestBook(int bookId) {
+		Command command = new Command(Type.FIND_CLOSEST_BOOK);
+		command.bookId = bookId;
+		return command;
+	}
+
+	public static Command countBooks(int start, int end) {
+		Command command = new Command(Type.COUNT_BOOKS);
+		command.start = start;
+		command.end = end;
+		return command;
+	}
+
+	public static Command bookAt(int position) {
+		Command command = new Command(Type.BOOK_AT);
+		command.position = position;
+		return command;
+	}
+
+	public static Command findByAuthor(String authorName) {
+		Command command = new Command(Type.FIND_BY_AUTHOR);
+		command.authorName = authorName;
+		return command;
+	}
+
+	public static Command findByTitle(String bookName) {
+		Command command = new Command(Type.FIND_BY_TITLE);
+		command.bookName = bookName;
+		return command;
+	}
+
+	public static Command printPatron(int patronId) {
+		Command command = new Command(Type.PRINT_PATRON);
+		command.patronId = patronId;
+		return command;
+	}
+
+	public static Command cancelReservation(int patronId, int bookId) {
+		Command command = new Command(Type.CANCEL_RESERVATION);
+		command.patronId = patronId;
+		command.bookId = bookId;
+		return command;
+	}
+
+	public static Command colorFlipCount() {
+		return COLOR_FLIP_COUNT;
+	}
+
+	public static Command validate() {
+		return VALIDATE;
+	}
+
+	public static Command quit() {
+		return QUIT;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public int getBookId() {
+		return bookId;
+	}
+
+	public int getPatronId() {
+		return patronId;
+	}
+
+	public int getPatronPriority() {
+		return patronPriority;
+	}
+
+	public int getStart() {
+		return start;
+	}
+
+	public int getEnd() {
+		return end;
+	}
+
+	public int getPosition() {
+		return position;
+	}
+
+	public String getBookName() {
+		return bookName;
+	}
+
+	public String getAuthorName() {
+		return authorName;
+	}
+
+	public String getAvailabilityStatus() {
+		return availabilityStatus;
+	}
+}
@@ -0,0 +1,133 @@
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Executes parsed commands on a library and writes their messages, the one place that knows which
+ * library call and which output every command of the input language stands for.
+ *
+ * gatorLibrary, the {@link DurableLibrary} replay and the replay benchmark all run their commands
+ * through {@link #execute(Command, RedBlackTree, Utility, OutputStream)}, so a command added to the
+ * language behaves the same in each of them. The commands are executed one at a time, so the first
+ * CountBooks or BookAt turns on the subtree tracking of the library they need, the first FindByAuthor
+ * or FindByTitle its secondary indexes and the first PrintPatron its patron index, the queries of the
+ * library itself never change it.
+ */
+public class CommandExecutor {
+
+	private CommandExecutor() {
+	}
+
+	/**
+	 * Executes one command on the library and writes its messages followed by the blank line that
+	 * separates the output of two commands. Quit() writes the termination message, the caller decides
+	 * how to end.
+	 *
+	 * @param command The command to execute.
+	 * @param library The library the command works on.
+	 * @param utility The utility that writes the messages and hands out the reservation time stamps.
+	 * @param access  The output for the messages of the command.
+	 * @return        True if the command was Quit().
+	 * @throws IOException If the output cannot be written.
+	 */
+	public static boolean execute(Command command, RedBlackTree library, Utility utility, OutputStream access) throws IOException {
+		switch(command.getType()) {
+		case INSERT_BOOK:
+			//this method responsible for inserting the book into library
+			library.insertBook(command.getBookId(), command.getBookName(), command.getAuthorName(), command.getAvailabilityStatus());
+			break;
+		case PRINT_BOOKS:
+			//this method is responsible for printing the books from range x to y
+			library.printBooks(command.getStart(), command.getEnd(), utility, access);
+			utility.addNewLine(access);
+			break;
+		case PRINT_BOOK:
+			//this method will search the library and get the book if present
+			Book book = library.getBookFromLibrary(library.getRoot(), command.getBookId());
+			if(book == null) {
+				utility.write("Book " + command.getBookId() + " not found in the library", access);
+			} else {
+				//if book is present then will write the book data into file
+				utility.writeTheBookData(book, access);
+			}
+			//this is lines separator makes sire that there is space after each write operation
+			utility.addNewLine(access);
+			break;
+		case BORROW_BOOK:
+			//this method will check the book exists in library and if it is not allocated to anyone then will lend the book,
+			//if it is already borrowed the will add the Patron to the reservation list based on the priority if tow patrons
+			//have same priority then will break the tie based on the unique time stamp(first come first serve)
+			library.borrowBook(command.getPatronId(), command.getBookId(), command.getPatronPriority(), access, utility);
+			utility.addNewLine(access);
+			break;
+		case RETURN_BOOK:
+			//this method makes that patron returns the book and allocated the book to the patron in reservation list
+			library.returnBook(command.getPatronId(), command.getBookId(), access, utility);
+			utility.addNewLine(access);
+			break;
+		case DELETE_BOOK:
+			//this method makes sure that book is removed from the library and remove the patrons from the list as book is no longer available
+			library.deleteBookFromLibrary(command.getBookId(), access, utility);
+			utility.addNewLine(access);
+			break;
+		case FIND_CLOSEST_BOOK:
+			//this method finds the closest book in the library if exact book is found then will write the data else will get the closest book and
+			//if there are two books closest to the book we are searching for then we will write both
+			library.findClosestBooks(command.getBookId(), utility, access);
+			utility.addNewLine(access);
+			break;
+		case COUNT_BOOKS:
+			//counts the books in the range x to y from the subtree sizes, without visiting the books
+			library.setSubtreeTracking(true);
+			utility.write("Books between " + command.getStart() + " and " + command.getEnd() + ": "
+					+ library.countInRange(command.getStart(), command.getEnd()) + "\n", access);
+			break;
+		case BOOK_AT:
+			//writes the k-th book in order of book id, counted from 1
+			library.setSubtreeTracking(true);
+			Book bookAt = library.select(command.getPosition());
+			if(bookAt == null) {
+				utility.write("No book at position " + command.getPosition() + " in the library", access);
+			} else {
+				utility.writeTheBookData(bookAt, access);
+			}
+			utility.addNewLine(access);
+			break;
+		case FIND_BY_AUTHOR:
+			//writes the books of the author from the author index, a name ending in * matches every author starting with it
+			library.setSecondaryIndexes(true);
+			library.printBooksByAuthor(command.getAuthorName(), utility, access);
+			utility.addNewLine(access);
+			break;
+		case FIND_BY_TITLE:
+			//writes the books with the title from the title index, a title ending in * matches every title starting with it
+			library.setSecondaryIndexes(true);
+			library.printBooksByTitle(command.getBookName(), utility, access);
+			utility.addNewLine(access);
+			break;
+		case PRINT_PATRON:
+			//writes the books the patron has borrowed and reserved from the patron index
+			library.setPatronIndex(true);
+			library.printPatron(command.getPatronId(), utility, access);
+			utility.addNewLine(access);
+			break;
+		case CANCEL_RESERVATION:
+			//takes the patron out of the reservation list of the book
+			library.cancelReservation(command.getPatronId(), command.getBookId(), access, utility);
+			utility.addNewLine(access);
+			break;
+		case COLOR_FLIP_COUNT:
+			//here will keep of track of the color change of books in the library
+			utility.write("Color Flip Count: " + library.colorFlipCount + "\n", access);
+			break;
+		case VALIDATE:
+			//checks the red black rules, the links and the height of the whole tree and writes what is wrong with it
+			utility.write(library.validate().toString(), access);
+			utility.addNewLine(access);
+			break;
+		case QUIT:
+			access.write("Program Terminated!!".getBytes());
+			return true;
+		}
+		return false;
+	}
+}
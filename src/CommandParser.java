@@ -0,0 +1,229 @@
+/**
+ * Single pass parser for the lines of the library command language.
+ *
+ * The parser walks the characters of a line once, without regular expressions, and accepts exactly
+ * the syntax the input files use: the command name directly followed by '(', numbers as plain
+ * digits, optional whitespace after each comma and the string arguments of InsertBook in double
+ * quotes. Anything after the closing ')' is ignored. A parser instance keeps its position between
+ * calls, so it must not be shared between threads.
+ */
+public class CommandParser {
+
+	private CharSequence line;
+	private int pos;
+	//the digits of the first number of the line that does not fit into an int, null if all of them fit
+	private String overflow;
+
+	/**
+	 * Parses one line of input into a command.
+	 *
+	 * A number that does not fit into an int only fails the line if the line is otherwise a well formed
+	 * command, like the regular expressions and Integer.parseInt did before, a malformed line with a
+	 * large number is skipped like any other malformed line.
+	 *
+	 * @param line The line to parse, without the line terminator.
+	 * @return     The parsed command, or null if the line is not a command or its arguments are malformed.
+	 * @throws NumberFormatException If the line is a command but one of its numbers does not fit into an int.
+	 */
+	public Command parse(CharSequence line) {
+		this.line = line;
+		this.pos = 0;
+		this.overflow = null;
+		Command command = this.command();
+		if(command != null && overflow != null) {
+			throw new NumberFormatException("For input string: \"" + overflow + "\"");
+		}
+		return command;
+	}
+
+	private Command command() {
+		if(literal("InsertBook(")) {
+			int bookId = number();
+			if(bookId < 0 || !separator()) {
+				return null;
+			}
+			String bookName = quoted();
+			if(bookName == null || !separator()) {
+				return null;
+			}
+			String authorName = quoted();
+			if(authorName == null || !separator()) {
+				return null;
+			}
+			String availabilityStatus = quoted();
+			if(availabilityStatus == null || !literal(")")) {
+				return null;
+			}
+			return Command.insertBook(bookId, bookName, authorName, availabilityStatus);
+		}
+		if(literal("PrintBooks(")) {
+			int start = number();
+			if(start < 0 || !separator()) {
+				return null;
+			}
+			int end = number();
+			if(end < 0 || !literal(")")) {
+				return null;
+			}
+			return Command.printBooks(start, end);
+		}
+		if(literal("PrintBook(")) {
+			int bookId = number();
+			return bookId < 0 || !literal(")") ? null : Command.printBook(bookId);
+		}
+		if(literal("BorrowBook(")) {
+			int patronId = number();
+			if(patronId < 0 || !separator()) {
+				return null;
+			}
+			int bookId = number();
+			if(bookId < 0 || !separator()) {
+				return null;
+			}
+			int patronPriority = number();
+			if(patronPriority < 0 || !literal(")")) {
+				return null;
+			}
+			return Command.borrowBook(patronId, bookId, patronPriority);
+		}
+		if(literal("ReturnBook(")) {
+			int patronId = number();
+			if(patronId < 0 || !separator()) {
+				return null;
+			}
+			int bookId = number();
+			if(bookId < 0 || !literal(")")) {
+				return null;
+			}
+			return Command.returnBook(patronId, bookId);
+		}
+		if(literal("DeleteBook(")) {
+			int bookId = number();
+			return bookId < 0 || !literal(")") ? null : Command.deleteBook(bookId);
+		}
+		if(literal("FindClosestBook(")) {
+			int bookId = number();
+			return bookId < 0 || !literal(")") ? null : Command.findClosestBook(bookId);
+		}
+		if(literal("CountBooks(")) {
+			int start = number();
+			if(start < 0 || !separator()) {
+				return null;
+			}
+			int end = number();
+			if(end < 0 || !literal(")")) {
+				return null;
+			}
+			return Command.countBooks(start, end);
+		}
+		if(literal("BookAt(")) {
+			int position = number();
+			return position < 0 || !literal(")") ? null : Command.bookAt(position);
+		}
+		if(literal("FindByAuthor(")) {
+			String authorName = quoted();
+			return authorName == null || !literal(")") ? null : Command.findByAuthor(authorName);
+		}
+		if(literal("FindByTitle(")) {
+			String bookName = quoted();
+			return bookName == null || !literal(")") ? null : Command.findByTitle(bookName);
+		}
+		if(literal("PrintPatron(")) {
+			int patronId = number();
+			return patronId < 0 || !literal(")") ? null : Command.printPatron(patronId);
+		}
+		if(literal("CancelReservation(")) {
+			int patronId = number();
+			if(patronId < 0 || !separator()) {
+				return null;
+			}
+			int bookId = number();
+			if(bookId < 0 || !literal(")")) {
+				return null;
+			}
+			return Command.cancelReservation(patronId, bookId);
+		}
+		//the commands without arguments must match the whole line
+		if(literal("ColorFlipCount()") && pos == line.length()) {
+			return Command.colorFlipCount();
+		}
+		if(literal("Validate()") && pos == line.length()) {
+			return Command.validate();
+		}
+		if(literal("Quit()") && pos == line.length()) {
+			return Command.quit();
+		}
+		return null;
+	}
+
+	//consumes the given text if the line continues with it
+	private boolean literal(String text) {
+		int length = text.length();
+		if(pos + length > line.length()) {
+			return false;
+		}
+		for(int i = 0; i < length; i++) {
+			if(line.charAt(pos + i) != text.charAt(i)) {
+				return false;
+			}
+		}
+		pos += length;
+		return true;
+	}
+
+	//consumes a comma and the whitespace that follows it
+	private boolean separator() {
+		if(!literal(",")) {
+			return false;
+		}
+		while(pos < line.length() && isWhitespace(line.charAt(pos))) {
+			pos++;
+		}
+		return true;
+	}
+
+	//returns the value of the digits at the current position, or -1 if there is no digit, a value that does not fit is recorded as overflow
+	private int number() {
+		int begin = pos;
+		int value = 0;
+		boolean fits = true;
+		while(pos < line.length()) {
+			char c = line.charAt(pos);
+			if(c < '0' || c > '9') {
+				break;
+			}
+			int digit = c - '0';
+			if(value > (Integer.MAX_VALUE - digit) / 10) {
+				fits = false;
+			}
+			value = fits ? value * 10 + digit : 0;
+			pos++;
+		}
+		if(!fits && overflow == null) {
+			overflow = line.subSequence(begin, pos).toString();
+		}
+		return pos == begin ? -1 : value;
+	}
+
+	//returns the non empty text between double quotes at the current position, or null if there is none
+	private String quoted() {
+		if(!literal("\"")) {
+			return null;
+		}
+		int begin = pos;
+		while(pos < line.length() && line.charAt(pos) != '"') {
+			pos++;
+		}
+		if(pos == begin || pos == line.length()) {
+			return null;
+		}
+		String text = line.subSequence(begin, pos).toString();
+		pos++;
+		return text;
+	}
+
+	//the same characters as \s in a regular expression
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+}
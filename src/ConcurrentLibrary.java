@@ -0,0 +1,296 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ConcurrentModificationException;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Thread-safe facade over a {@link RedBlackTree} library.
+ *
+ * Structural changes of the tree (InsertBook and DeleteBook) take the write mode of a tree-level
+ * {@link StampedLock}, so they also own the color flip bookkeeping of the tree exclusively. BorrowBook
+ * and ReturnBook take the read mode, which keeps the shape of the tree stable while they run, and then
+ * the write mode of the stripe of their book, a StampedLock as well, so borrows and returns on books in
+ * different stripes proceed in parallel. PrintBooks reads each book under the read mode of its stripe.
+ *
+ * PrintBook and FindClosestBook take no lock at all on their fast path: they remember the stamps of
+ * the tree lock and of the stripes of the books they find, walk the tree and format the books into a
+ * private buffer, and only publish the buffer if none of the stamps was invalidated by a writer in the
+ * meantime. Readers therefore do not block each other, nor borrows, returns or structural changes. On a
+ * conflict they repeat the lookup under the read locks. Each caller should pass its own output stream,
+ * as the messages of concurrent commands are otherwise interleaved.
+ */
+public class ConcurrentLibrary {
+
+	private static final int DEFAULT_STRIPES = 64;
+	//a valid red black tree of int keys is never deeper than 2 * log2(n + 1) <= 64, so a longer walk means a writer interfered
+	private static final int MAX_OPTIMISTIC_DEPTH = 128;
+
+	private final RedBlackTree library = new RedBlackTree();
+	private final Utility utility = new Utility();
+	private final StampedLock treeLock = new StampedLock();
+	private final StampedLock[] bookLocks;
+
+	public ConcurrentLibrary() {
+		this(DEFAULT_STRIPES);
+	}
+
+	//the number of stripes is rounded up to a power of two so the stripe can be picked with a mask
+	public ConcurrentLibrary(int stripes) {
+		int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+		this.bookLocks = new StampedLock[size];
+		for(int i = 0; i < size; i++) {
+			this.bookLocks[i] = new StampedLock();
+		}
+	}
+
+	public void insertBook(int bookId, String bookName, String authorName, String availabilityStatus) {
+		long stamp = treeLock.writeLock();
+		try {
+			library.insertBook(bookId, bookName, authorName, availabilityStatus);
+		} finally {
+			treeLock.unlockWrite(stamp);
+		}
+	}
+
+	public void deleteBookFromLibrary(int bookId, OutputStream access) throws IOException {
+		long stamp = treeLock.writeLock();
+		try {
+			library.deleteBookFromLibrary(bookId, access, utility);
+		} finally {
+			treeLock.unlockWrite(stamp);
+		}
+	}
+
+	public void borrowBook(int patronId, int bookId, int patronPriority, OutputStream access) throws IOException {
+		long stamp = treeLock.readLock();
+		try {
+			StampedLock bookLock = lockFor(bookId);
+			long bookStamp = bookLock.writeLock();
+			try {
+				library.borrowBook(patronId, bookId, patronPriority, access, utility);
+			} finally {
+				bookLock.unlockWrite(bookStamp);
+			}
+		} finally {
+			treeLock.unlockRead(stamp);
+		}
+	}
+
+	public void returnBook(int patronId, int bookId, OutputStream access) throws IOException {
+		long stamp = treeLock.readLock();
+		try {
+			StampedLock bookLock = lockFor(bookId);
+			long bookStamp = bookLock.writeLock();
+			try {
+				library.returnBook(patronId, bookId, access, utility);
+			} finally {
+				bookLock.unlockWrite(bookStamp);
+			}
+		} finally {
+			treeLock.unlockRead(stamp);
+		}
+	}
+
+	//returns false if the book is not in the library
+	public boolean printBook(int bookId, OutputStream access) throws IOException {
+		long stamp = treeLock.tryOptimisticRead();
+		if(stamp != 0L) {
+			StampedLock bookLock = lockFor(bookId);
+			long bookStamp = bookLock.tryOptimisticRead();
+			if(bookStamp != 0L) {
+				ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+				boolean found = false;
+				boolean consistent = true;
+				try {
+					Book book = floorWithoutLock(bookId);
+					if(book != null && book.getBookId() == bookId) {
+						utility.writeTheBookData(book, buffer);
+						found = true;
+					}
+				} catch(RuntimeException e) {
+					//a writer changed the links or the reservations under the read, the read locks below give a stable view
+					consistent = false;
+				}
+				//borrows and returns only hold the read mode of the tree lock, so the stripe has to be validated as well
+				if(consistent && bookLock.validate(bookStamp) && treeLock.validate(stamp)) {
+					buffer.writeTo(access);
+					return found;
+				}
+			}
+		}
+		stamp = treeLock.readLock();
+		try {
+			Book book = library.getBookFromLibrary(library.getRoot(), bookId);
+			if(book == null) {
+				return false;
+			}
+			StampedLock bookLock = lockFor(bookId);
+			long bookStamp = bookLock.readLock();
+			try {
+				utility.writeTheBookData(book, access);
+			} finally {
+				bookLock.unlockRead(bookStamp);
+			}
+			return true;
+		} finally {
+			treeLock.unlockRead(stamp);
+		}
+	}
+
+	//each book of the range is written while holding only its own stripe, so borrowers of other books are not blocked
+	public void printBooks(int start, int end, OutputStream access) throws IOException {
+		long stamp = treeLock.readLock();
+		try {
+			BookRangeCursor cursor = library.getBooksInRange(start, end);
+			if(!cursor.hasNext()) {
+				utility.write("No books found in library in the range of " +start +" to " + end, access);
+				return;
+			}
+			while(cursor.hasNext()) {
+				Book book = cursor.next();
+				StampedLock bookLock = lockFor(book.getBookId());
+				long bookStamp = bookLock.readLock();
+				try {
+					utility.writeTheBookData(book, access);
+				} finally {
+					bookLock.unlockRead(bookStamp);
+				}
+				if(cursor.hasNext()) {
+					utility.addNewLine(access);
+				}
+			}
+		} finally {
+			treeLock.unlockRead(stamp);
+		}
+	}
+
+	public void findClosestBooks(int bookId, OutputStream access) throws IOException {
+		long stamp = treeLock.tryOptimisticRead();
+		if(stamp != 0L) {
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			boolean consistent = true;
+			try {
+				Book below = floorWithoutLock(bookId);
+				Book above = below != null && below.getBookId() == bookId ? null : higherWithoutLock(bookId);
+				//the stamps of the stripes are taken before the books are read and checked after
+				StampedLock belowLock = below == null ? null : lockFor(below.getBookId());
+				StampedLock aboveLock = above == null ? null : lockFor(above.getBookId());
+				long belowStamp = belowLock == null ? 0L : belowLock.tryOptimisticRead();
+				long aboveStamp = aboveLock == null ? 0L : aboveLock.tryOptimisticRead();
+				if((belowLock != null && belowStamp == 0L) || (aboveLock != null && aboveStamp == 0L)) {
+					consistent = false;
+				} else {
+					library.writeClosestBooks(bookId, below, above, utility, buffer);
+					consistent = (belowLock == null || belowLock.validate(belowStamp)) && (aboveLock == null || aboveLock.validate(aboveStamp));
+				}
+			} catch(RuntimeException e) {
+				//a writer changed the links or the reservations under the read, the read locks below give a stable view
+				consistent = false;
+			}
+			if(consistent && treeLock.validate(stamp)) {
+				buffer.writeTo(access);
+				return;
+			}
+		}
+		stamp = treeLock.readLock();
+		try {
+			Book below = library.floor(bookId);
+			Book above = below != null && below.getBookId() == bookId ? null : library.higher(bookId);
+			writeClosestBooks(bookId, below, above, access);
+		} finally {
+			treeLock.unlockRead(stamp);
+		}
+	}
+
+	//the closest books can only be the floor or the next higher book, so only their stripes are locked, in stripe order
+	private void writeClosestBooks(int bookId, Book below, Book above, OutputStream access) throws IOException {
+		int first = below == null ? -1 : stripeOf(below.getBookId());
+		int second = above == null ? -1 : stripeOf(above.getBookId());
+		if(first > second) {
+			int temp = first;
+			first = second;
+			second = temp;
+		}
+		long firstStamp = first >= 0 ? bookLocks[first].readLock() : 0L;
+		long secondStamp = second >= 0 && second != first ? bookLocks[second].readLock() : 0L;
+		try {
+			library.writeClosestBooks(bookId, below, above, utility, access);
+		} finally {
+			if(second >= 0 && second != first) {
+				bookLocks[second].unlockRead(secondStamp);
+			}
+			if(first >= 0) {
+				bookLocks[first].unlockRead(firstStamp);
+			}
+		}
+	}
+
+	public int getColorFlipCount() {
+		long stamp = treeLock.readLock();
+		try {
+			return library.colorFlipCount;
+		} finally {
+			treeLock.unlockRead(stamp);
+		}
+	}
+
+	//checks the red black rules and the links of the whole tree, see RedBlackTree.validate(), it waits for the running commands
+	public TreeValidation validate() {
+		long stamp = treeLock.writeLock();
+		try {
+			return library.validate();
+		} finally {
+			treeLock.unlockWrite(stamp);
+		}
+	}
+
+	//same walk as RedBlackTree.floor, but without holding the tree lock, so it gives up once it is deeper than any valid tree
+	private Book floorWithoutLock(int bookId) {
+		Book result = null;
+		Book current = library.getRoot();
+		for(int depth = 0; current != null; depth++) {
+			if(depth > MAX_OPTIMISTIC_DEPTH) {
+				throw new ConcurrentModificationException();
+			}
+			if(current.getBookId() == bookId) {
+				return current;
+			}
+			if(current.getBookId() < bookId) {
+				result = current;
+				current = current.right;
+			} else {
+				current = current.left;
+			}
+		}
+		return result;
+	}
+
+	//same walk as RedBlackTree.higher, but without holding the tree lock, so it gives up once it is deeper than any valid tree
+	private Book higherWithoutLock(int bookId) {
+		Book result = null;
+		Book current = library.getRoot();
+		for(int depth = 0; current != null; depth++) {
+			if(depth > MAX_OPTIMISTIC_DEPTH) {
+				throw new ConcurrentModificationException();
+			}
+			if(current.getBookId() > bookId) {
+				result = current;
+				current = current.left;
+			} else {
+				current = current.right;
+			}
+		}
+		return result;
+	}
+
+	private StampedLock lockFor(int bookId) {
+		return bookLocks[stripeOf(bookId)];
+	}
+
+	//spread the bits of the book id so that consecutive ids do not all land in neighbouring stripes
+	private int stripeOf(int bookId) {
+		int hash = bookId * 0x9E3779B9;
+		return (hash ^ (hash >>> 16)) & (bookLocks.length - 1);
+	}
+}
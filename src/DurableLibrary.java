@@ -0,0 +1,179 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Library whose changes survive a crash.
+ *
+ * Every InsertBook, BorrowBook, ReturnBook, DeleteBook and CancelReservation is appended to a
+ * {@link WriteAheadLog} before it is applied to the tree. Opening the library loads the latest
+ * {@link LibrarySnapshot} and replays the log records written after it, which rebuilds the same
+ * tree, reservations, time stamps and color flip count, because the commands are applied in the same
+ * order as before. A checkpoint writes a new snapshot and empties the log, so recovery only has to
+ * replay the changes since the last checkpoint.
+ *
+ * Records are synced to disk in groups of groupSize records, a crash can lose the changes of at most
+ * the last group that was not synced yet. {@link #sync()} makes all changes so far durable. The
+ * methods are synchronized, the log is kept in the order the changes were applied in.
+ */
+public class DurableLibrary implements Closeable {
+
+	private static final String SNAPSHOT_FILE = "library.snapshot";
+	private static final String LOG_FILE = "library.log";
+
+	private final Path directory;
+	private final RedBlackTree library;
+	private final Utility utility;
+	private final WriteAheadLog log;
+
+	private DurableLibrary(Path directory, RedBlackTree library, Utility utility, WriteAheadLog log) {
+		this.directory = directory;
+		this.library = library;
+		this.utility = utility;
+		this.log = log;
+	}
+
+	/**
+	 * Opens the library stored in a directory, recovering it from its snapshot and log, or creates an
+	 * empty library if the directory holds none.
+	 *
+	 * @param directory The directory of the snapshot and log files, created if it does not exist.
+	 * @param groupSize The number of changes that are synced to disk together.
+	 * @return          The recovered library.
+	 * @throws IOException If the files cannot be read or written.
+	 */
+	public static DurableLibrary open(String directory, int groupSize) throws IOException {
+		Path path = Paths.get(directory);
+		Files.createDirectories(path);
+		String snapshotFile = path.resolve(SNAPSHOT_FILE).toString();
+		String logFile = path.resolve(LOG_FILE).toString();
+		Utility utility = new Utility();
+		RedBlackTree library;
+		long snapshotSequence = 0;
+		if(Files.exists(path.resolve(SNAPSHOT_FILE))) {
+			snapshotSequence = LibrarySnapshot.readLogSequence(snapshotFile);
+			library = LibrarySnapshot.load(snapshotFile, utility);
+		} else {
+			library = new RedBlackTree();
+		}
+		//the output of the replayed commands was already written before the crash
+		OutputStream discard = OutputStream.nullOutputStream();
+		long lastSequence;
+		try {
+			lastSequence = WriteAheadLog.replay(logFile, snapshotSequence, command -> {
+				try {
+					CommandExecutor.execute(command, library, utility, discard);
+				} catch(IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch(UncheckedIOException e) {
+			throw e.getCause();
+		}
+		return new DurableLibrary(path, library, utility, new WriteAheadLog(logFile, lastSequence, groupSize));
+	}
+
+	//the tree of the library, it must only be changed through this class
+	public RedBlackTree getLibrary() {
+		return library;
+	}
+
+	public Utility getUtility() {
+		return utility;
+	}
+
+	public synchronized void insertBook(int bookId, String bookName, String authorName, String availabilityStatus) throws IOException {
+		this.execute(Command.insertBook(bookId, bookName, authorName, availabilityStatus), OutputStream.nullOutputStream());
+	}
+
+	public synchronized void borrowBook(int patronId, int bookId, int patronPriority, OutputStream access) throws IOException {
+		this.execute(Command.borrowBook(patronId, bookId, patronPriority), access);
+	}
+
+	public synchronized void returnBook(int patronId, int bookId, OutputStream access) throws IOException {
+		this.execute(Command.returnBook(patronId, bookId), access);
+	}
+
+	public synchronized void deleteBookFromLibrary(int bookId, OutputStream access) throws IOException {
+		this.execute(Command.deleteBook(bookId), access);
+	}
+
+	public synchronized void cancelReservation(int patronId, int bookId, OutputStream access) throws IOException {
+		this.execute(Command.cancelReservation(patronId, bookId), access);
+	}
+
+	/**
+	 * Logs a command that changes the library and applies it, writing its messages to the output.
+	 *
+	 * @param command An InsertBook, BorrowBook, ReturnBook, DeleteBook or CancelReservation command.
+	 * @param access  The output for the messages of the command.
+	 * @throws IOException If the log or the output cannot be written.
+	 */
+	public synchronized void execute(Command command, OutputStream access) throws IOException {
+		if(!changesLibrary(command)) {
+			throw new IllegalArgumentException(command.getType() + " does not change the library");
+		}
+		log.append(command);
+		CommandExecutor.execute(command, library, utility, access);
+	}
+
+	//makes every change so far durable
+	public void sync() throws IOException {
+		log.sync();
+	}
+
+	/**
+	 * Writes a snapshot of the library and empties the log. The snapshot is written to a temporary
+	 * file, synced and renamed over the old one, so there is always one complete snapshot on disk. The
+	 * directory is synced after the rename, otherwise a crash could keep the emptied log but lose the
+	 * rename and recover the old snapshot without the changes of the log. A crash before the log is
+	 * emptied only leaves log records that the snapshot already contains.
+	 *
+	 * @throws IOException If the snapshot or the log cannot be written.
+	 */
+	public synchronized void checkpoint() throws IOException {
+		log.sync();
+		long sequence = log.getLastSequence();
+		Path snapshot = directory.resolve(SNAPSHOT_FILE);
+		Path temporary = directory.resolve(SNAPSHOT_FILE + ".tmp");
+		LibrarySnapshot.write(library, utility, temporary.toString(), sequence);
+		try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+			channel.force(true);
+		}
+		Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		//the rename is only durable once the directory is synced, the log must not be emptied before
+		syncDirectory(directory);
+		log.reset(sequence);
+	}
+
+	private static void syncDirectory(Path directory) throws IOException {
+		try(FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+			channel.force(true);
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		log.close();
+	}
+
+	private static boolean changesLibrary(Command command) {
+		switch(command.getType()) {
+		case INSERT_BOOK:
+		case BORROW_BOOK:
+		case RETURN_BOOK:
+		case DELETE_BOOK:
+		case CANCEL_RESERVATION:
+			return true;
+		default:
+			return false;
+		}
+	}
+}
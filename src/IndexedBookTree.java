@@ -0,0 +1,436 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Red-black tree of books whose nodes are int indexes into a storage of the subclass instead of objects.
+ *
+ * This class holds the algorithms, the subclasses only store the fields of a node: its book id, the
+ * indexes of its children and parent, its color and its strings. Node 0 is the black nil node that
+ * every leaf points to, as in the textbook algorithm, so inserts and deletes never test for missing
+ * children. Deleted nodes are kept in a free list, linked through their left field, and reused.
+ *
+ * Searches and range scans give the same books in the same order as {@link RedBlackTree}, and like
+ * there a second book with an id that exists already is added after it instead of replacing it. Books
+ * are handed out as detached {@link Book} copies without a reservation heap, which a book prints as no
+ * reservations, and {@link #contains(int)} searches without making a copy. Reservations, borrowers and
+ * the color flip count are not kept by these trees, their rebalancing follows the textbook cases and
+ * flips colors differently from the library tree.
+ */
+public abstract class IndexedBookTree {
+
+	static final int NIL = 0;
+	static final int BLACK = 0;
+	static final int RED = 1;
+	static final int NONE = -1;
+
+	private int freeList = NONE;
+	private int root = NIL;
+	private int size;
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Inserts a new book and restores the red-black properties with the textbook recoloring and
+	 * rotation cases.
+	 *
+	 * @param bookId             The ID of the new book.
+	 * @param bookName           The name of the new book.
+	 * @param authorName         The author of the new book.
+	 * @param availabilityStatus The availability status of the new book.
+	 */
+	public void insertBook(int bookId, String bookName, String authorName, String availabilityStatus) {
+		int node = this.allocate();
+		this.setKey(node, bookId);
+		this.setLeft(node, NIL);
+		this.setRight(node, NIL);
+		this.setColor(node, RED);
+		this.setStrings(node, bookName, authorName, availabilityStatus);
+		int parent = NIL;
+		int current = root;
+		while(current != NIL) {
+			parent = current;
+			current = bookId < key(current) ? left(current) : right(current);
+		}
+		this.setParent(node, parent);
+		if(parent == NIL) {
+			root = node;
+		} else if(bookId < key(parent)) {
+			this.setLeft(parent, node);
+		} else {
+			this.setRight(parent, node);
+		}
+		size++;
+		this.fixInsert(node);
+	}
+
+	/**
+	 * Deletes the book with the given ID and restores the red-black properties.
+	 *
+	 * @param bookId The ID of the book to delete.
+	 * @return       True if the book was found and deleted.
+	 */
+	public boolean deleteBook(int bookId) {
+		int node = this.find(bookId);
+		if(node == NIL) {
+			return false;
+		}
+		int removed = node;
+		int removedColor = color(removed);
+		int child;
+		if(left(node) == NIL) {
+			child = right(node);
+			this.transplant(node, child);
+		} else if(right(node) == NIL) {
+			child = left(node);
+			this.transplant(node, child);
+		} else {
+			//the successor takes the place of the node, its own place is taken by its right child
+			removed = right(node);
+			while(left(removed) != NIL) {
+				removed = left(removed);
+			}
+			removedColor = color(removed);
+			child = right(removed);
+			if(parent(removed) == node) {
+				this.setParent(child, removed);
+			} else {
+				this.transplant(removed, child);
+				this.setRight(removed, right(node));
+				this.setParent(right(removed), removed);
+			}
+			this.transplant(node, removed);
+			this.setLeft(removed, left(node));
+			this.setParent(left(removed), removed);
+			this.setColor(removed, color(node));
+		}
+		if(removedColor == BLACK) {
+			this.fixDelete(child);
+		}
+		this.free(node);
+		size--;
+		return true;
+	}
+
+	//checks if the tree holds a book with the given id, only the keys are read and nothing is copied
+	public boolean contains(int bookId) {
+		return this.find(bookId) != NIL;
+	}
+
+	//returns a copy of the book with the given id, or null if there is no such book
+	public Book getBookFromLibrary(int bookId) {
+		return this.toBook(this.find(bookId));
+	}
+
+	//returns a copy of the book with the greatest book id less than or equal to the given id, or null if there is no such book
+	public Book floor(int bookId) {
+		int result = NIL;
+		int current = root;
+		while(current != NIL) {
+			if(key(current) == bookId) {
+				return this.toBook(current);
+			}
+			if(key(current) < bookId) {
+				result = current;
+				current = right(current);
+			} else {
+				current = left(current);
+			}
+		}
+		return this.toBook(result);
+	}
+
+	//returns a copy of the book with the least book id greater than or equal to the given id, or null if there is no such book
+	public Book ceiling(int bookId) {
+		return this.toBook(this.ceilingNode(bookId));
+	}
+
+	//returns a copy of the book with the least book id strictly greater than the given id, or null if there is no such book
+	public Book higher(int bookId) {
+		int result = NIL;
+		int current = root;
+		while(current != NIL) {
+			if(key(current) > bookId) {
+				result = current;
+				current = left(current);
+			} else {
+				current = right(current);
+			}
+		}
+		return this.toBook(result);
+	}
+
+	/**
+	 * Returns copies of the books in the range start to end in increasing order of book ID. The search
+	 * descends once to the first book of the range, the iterator then follows the successors.
+	 *
+	 * @param start The lowest book ID of the range (inclusive).
+	 * @param end   The highest book ID of the range (inclusive).
+	 * @return      An iterator over the books of the range, it must not be used after the tree changed.
+	 */
+	public Iterator<Book> getBooksInRange(int start, int end) {
+		int first = this.ceilingNode(start);
+		return new Iterator<Book>() {
+			private int next = first;
+
+			@Override
+			public boolean hasNext() {
+				return next != NIL && key(next) <= end;
+			}
+
+			@Override
+			public Book next() {
+				if(!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				int current = next;
+				next = successor(current);
+				return toBook(current);
+			}
+		};
+	}
+
+	//a new node slot that was never used, the slot 0 of the nil node is the first one
+	abstract int newNode();
+
+	//drops what the storage keeps for a deleted node besides its fields, like its strings
+	abstract void release(int node);
+
+	abstract void setStrings(int node, String bookName, String authorName, String availabilityStatus);
+
+	abstract String bookName(int node);
+
+	abstract String authorName(int node);
+
+	abstract String availabilityStatus(int node);
+
+	abstract int key(int node);
+
+	abstract int left(int node);
+
+	abstract int right(int node);
+
+	abstract int parent(int node);
+
+	abstract int color(int node);
+
+	abstract void setKey(int node, int key);
+
+	abstract void setLeft(int node, int left);
+
+	abstract void setRight(int node, int right);
+
+	abstract void setParent(int node, int parent);
+
+	abstract void setColor(int node, int color);
+
+	private int find(int bookId) {
+		int current = root;
+		while(current != NIL && key(current) != bookId) {
+			current = bookId < key(current) ? left(current) : right(current);
+		}
+		return current;
+	}
+
+	private int ceilingNode(int bookId) {
+		int result = NIL;
+		int current = root;
+		while(current != NIL) {
+			if(key(current) == bookId) {
+				return current;
+			}
+			if(key(current) > bookId) {
+				result = current;
+				current = left(current);
+			} else {
+				current = right(current);
+			}
+		}
+		return result;
+	}
+
+	private int successor(int node) {
+		if(right(node) != NIL) {
+			node = right(node);
+			while(left(node) != NIL) {
+				node = left(node);
+			}
+			return node;
+		}
+		int parent = parent(node);
+		while(parent != NIL && right(parent) == node) {
+			node = parent;
+			parent = parent(parent);
+		}
+		return parent;
+	}
+
+	private void fixInsert(int node) {
+		while(color(parent(node)) == RED) {
+			int parent = parent(node);
+			int grandParent = parent(parent);
+			if(parent == left(grandParent)) {
+				int uncle = right(grandParent);
+				if(color(uncle) == RED) {
+					this.setColor(parent, BLACK);
+					this.setColor(uncle, BLACK);
+					this.setColor(grandParent, RED);
+					node = grandParent;
+					continue;
+				}
+				if(node == right(parent)) {
+					node = parent;
+					this.leftRotate(node);
+					parent = parent(node);
+				}
+				this.setColor(parent, BLACK);
+				this.setColor(grandParent, RED);
+				this.rightRotate(grandParent);
+			} else {
+				int uncle = left(grandParent);
+				if(color(uncle) == RED) {
+					this.setColor(parent, BLACK);
+					this.setColor(uncle, BLACK);
+					this.setColor(grandParent, RED);
+					node = grandParent;
+					continue;
+				}
+				if(node == left(parent)) {
+					node = parent;
+					this.rightRotate(node);
+					parent = parent(node);
+				}
+				this.setColor(parent, BLACK);
+				this.setColor(grandParent, RED);
+				this.leftRotate(grandParent);
+			}
+		}
+		this.setColor(root, BLACK);
+	}
+
+	//the node carries an extra black, it is moved up or removed by recoloring and rotating around the sibling
+	private void fixDelete(int node) {
+		while(node != root && color(node) == BLACK) {
+			int parent = parent(node);
+			if(node == left(parent)) {
+				int sibling = right(parent);
+				if(color(sibling) == RED) {
+					this.setColor(sibling, BLACK);
+					this.setColor(parent, RED);
+					this.leftRotate(parent);
+					sibling = right(parent);
+				}
+				if(color(left(sibling)) == BLACK && color(right(sibling)) == BLACK) {
+					this.setColor(sibling, RED);
+					node = parent;
+					continue;
+				}
+				if(color(right(sibling)) == BLACK) {
+					this.setColor(left(sibling), BLACK);
+					this.setColor(sibling, RED);
+					this.rightRotate(sibling);
+					sibling = right(parent);
+				}
+				this.setColor(sibling, color(parent));
+				this.setColor(parent, BLACK);
+				this.setColor(right(sibling), BLACK);
+				this.leftRotate(parent);
+			} else {
+				int sibling = left(parent);
+				if(color(sibling) == RED) {
+					this.setColor(sibling, BLACK);
+					this.setColor(parent, RED);
+					this.rightRotate(parent);
+					sibling = left(parent);
+				}
+				if(color(left(sibling)) == BLACK && color(right(sibling)) == BLACK) {
+					this.setColor(sibling, RED);
+					node = parent;
+					continue;
+				}
+				if(color(left(sibling)) == BLACK) {
+					this.setColor(right(sibling), BLACK);
+					this.setColor(sibling, RED);
+					this.leftRotate(sibling);
+					sibling = left(parent);
+				}
+				this.setColor(sibling, color(parent));
+				this.setColor(parent, BLACK);
+				this.setColor(left(sibling), BLACK);
+				this.rightRotate(parent);
+			}
+			node = root;
+		}
+		this.setColor(node, BLACK);
+	}
+
+	private void leftRotate(int x) {
+		int y = right(x);
+		this.setRight(x, left(y));
+		if(left(y) != NIL) {
+			this.setParent(left(y), x);
+		}
+		this.setParent(y, parent(x));
+		this.replaceChild(parent(x), x, y);
+		this.setLeft(y, x);
+		this.setParent(x, y);
+	}
+
+	private void rightRotate(int x) {
+		int y = left(x);
+		this.setLeft(x, right(y));
+		if(right(y) != NIL) {
+			this.setParent(right(y), x);
+		}
+		this.setParent(y, parent(x));
+		this.replaceChild(parent(x), x, y);
+		this.setRight(y, x);
+		this.setParent(x, y);
+	}
+
+	//puts the subtree of the replacement where the subtree of the node was, the parent of nil is set as well for fixDelete
+	private void transplant(int node, int replacement) {
+		this.replaceChild(parent(node), node, replacement);
+		this.setParent(replacement, parent(node));
+	}
+
+	private void replaceChild(int parent, int child, int replacement) {
+		if(parent == NIL) {
+			root = replacement;
+		} else if(child == left(parent)) {
+			this.setLeft(parent, replacement);
+		} else {
+			this.setRight(parent, replacement);
+		}
+	}
+
+	private Book toBook(int node) {
+		if(node == NIL) {
+			return null;
+		}
+		Book book = new Book();
+		book.setBookId(key(node));
+		book.setBookName(bookName(node));
+		book.setAuthorName(authorName(node));
+		book.setAvailabilityStatus(availabilityStatus(node));
+		book.color = color(node);
+		return book;
+	}
+
+	//takes a node from the free list or a new one
+	private int allocate() {
+		if(freeList != NONE) {
+			int node = freeList;
+			freeList = left(node);
+			return node;
+		}
+		return this.newNode();
+	}
+
+	private void free(int node) {
+		this.release(node);
+		this.setLeft(node, freeList);
+		freeList = node;
+	}
+}
@@ -0,0 +1,111 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of latencies in nanoseconds, or of any other non-negative values, with a fixed memory
+ * footprint.
+ *
+ * Values are counted in buckets that are exact below 64 and above that have 64 buckets for every
+ * power of two, so a percentile is off by less than 1/64 of its value. Recording a value neither
+ * allocates nor sorts, which keeps the histogram out of the allocation and time it measures. Values
+ * can be recorded from several threads and read while they are recorded, a reader may then see a
+ * value in the total before it is in its bucket. The count is the sum of the buckets and the maximum
+ * is only written when it grows, so recording costs one atomic increment and one add in the common case.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 6;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+	private final LongAdder total = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	public void record(long nanos) {
+		if(nanos < 0) {
+			nanos = 0;
+		}
+		counts.incrementAndGet(bucket(nanos));
+		total.add(nanos);
+		this.updateMax(nanos);
+	}
+
+	private void updateMax(long value) {
+		long current = max.get();
+		while(value > current && !max.compareAndSet(current, value)) {
+			current = max.get();
+		}
+	}
+
+	//adds the values of another histogram to this one
+	public void add(LatencyHistogram other) {
+		for(int i = 0; i < counts.length(); i++) {
+			counts.addAndGet(i, other.counts.get(i));
+		}
+		total.add(other.total.sum());
+		this.updateMax(other.max.get());
+	}
+
+	public long getCount() {
+		long values = 0;
+		for(int i = 0; i < counts.length(); i++) {
+			values += counts.get(i);
+		}
+		return values;
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public double getMean() {
+		long values = this.getCount();
+		return values == 0 ? 0 : (double) total.sum() / values;
+	}
+
+	/**
+	 * Returns the latency that the given share of the values does not exceed, as the upper end of its
+	 * bucket but never more than the largest value recorded.
+	 *
+	 * @param percentile The share in percent, for example 99.9.
+	 * @return           The latency in nanoseconds, 0 if nothing was recorded.
+	 */
+	public long percentile(double percentile) {
+		long values = this.getCount();
+		if(values == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * values));
+		long seen = 0;
+		for(int i = 0; i < counts.length(); i++) {
+			seen += counts.get(i);
+			if(seen >= rank) {
+				return Math.min(max.get(), upperBound(i));
+			}
+		}
+		return max.get();
+	}
+
+	//values below 64 have a bucket each, above that the 6 bits after the highest one bit select one of the 64 buckets of its power of two
+	private static int bucket(long value) {
+		if(value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return SUB_BUCKETS + (shift << SUB_BUCKET_BITS) + (int) (value >>> shift) - SUB_BUCKETS;
+	}
+
+	private static long upperBound(int bucket) {
+		if(bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = (bucket - SUB_BUCKETS) >>> SUB_BUCKET_BITS;
+		long top = SUB_BUCKETS + ((bucket - SUB_BUCKETS) & (SUB_BUCKETS - 1)) + 1;
+		//the last bucket ends beyond the range of a long
+		if(shift + SUB_BUCKET_BITS + 1 >= 64) {
+			return Long.MAX_VALUE;
+		}
+		return (top << shift) - 1;
+	}
+}
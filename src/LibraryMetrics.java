@@ -0,0 +1,231 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters and histograms of what the library does, published as a JMX MBean and written to a file
+ * on request.
+ *
+ * The latency of every command is recorded in a {@link LatencyHistogram} per command type by whoever
+ * runs the commands, gatorLibrary does it when it is started with -DgatorLibrary.metrics=file. A
+ * {@link RedBlackTree} with metrics counts its single and double rotations, the books whose color
+ * changes, the depth at which every new book is inserted, which follows the height of the tree, and
+ * the length of the reservation queue after every reservation and every allotment. A tree that
+ * tracks its subtrees, which gatorLibrary only does with -DgatorLibrary.subtreeTracking=true or once a
+ * command needs it, also publishes its height after every change, and every validation of the tree
+ * is recorded with its height, black height and number of violations. Everything can be updated from
+ * several threads and read by JMX clients while it is updated.
+ */
+public class LibraryMetrics implements LibraryMetricsMBean {
+
+	public static final String OBJECT_NAME = "gatorLibrary:type=LibraryMetrics";
+
+	private final LatencyHistogram[] latencies = new LatencyHistogram[Command.Type.values().length];
+	private final LongAdder singleRotations = new LongAdder();
+	private final LongAdder doubleRotations = new LongAdder();
+	private final LongAdder recolors = new LongAdder();
+	private final LatencyHistogram insertDepths = new LatencyHistogram();
+	private final LatencyHistogram reservationQueueDepths = new LatencyHistogram();
+	private volatile int treeHeight;
+	private volatile int treeHeightBound;
+	private final LongAdder validations = new LongAdder();
+	private final LongAdder failedValidations = new LongAdder();
+	private volatile int blackHeight;
+	private volatile long lastViolationCount;
+
+	public LibraryMetrics() {
+		for(int i = 0; i < latencies.length; i++) {
+			latencies[i] = new LatencyHistogram();
+		}
+	}
+
+	//registers the metrics with the platform MBean server, replacing metrics registered before
+	public void register() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		if(server.isRegistered(name)) {
+			server.unregisterMBean(name);
+		}
+		server.registerMBean(this, name);
+	}
+
+	public void recordLatency(Command.Type type, long nanos) {
+		latencies[type.ordinal()].record(nanos);
+	}
+
+	void singleRotation() {
+		singleRotations.increment();
+	}
+
+	void doubleRotation() {
+		doubleRotations.increment();
+	}
+
+	void recolor() {
+		recolors.increment();
+	}
+
+	void insertDepth(int depth) {
+		insertDepths.record(depth);
+	}
+
+	void reservationQueueDepth(int depth) {
+		reservationQueueDepths.record(depth);
+	}
+
+	void treeHeight(int height, int bookCount) {
+		treeHeight = height;
+		treeHeightBound = TreeValidation.heightBound(bookCount);
+	}
+
+	void validation(TreeValidation result) {
+		validations.increment();
+		if(!result.isValid()) {
+			failedValidations.increment();
+		}
+		this.treeHeight(result.getHeight(), result.getBookCount());
+		blackHeight = result.getBlackHeight();
+		lastViolationCount = result.getViolationCount();
+	}
+
+	@Override
+	public long getInsertBookCount() {
+		return latencies[Command.Type.INSERT_BOOK.ordinal()].getCount();
+	}
+
+	@Override
+	public long getDeleteBookCount() {
+		return latencies[Command.Type.DELETE_BOOK.ordinal()].getCount();
+	}
+
+	@Override
+	public long getBorrowBookCount() {
+		return latencies[Command.Type.BORROW_BOOK.ordinal()].getCount();
+	}
+
+	@Override
+	public long getReturnBookCount() {
+		return latencies[Command.Type.RETURN_BOOK.ordinal()].getCount();
+	}
+
+	@Override
+	public long getFindClosestBookCount() {
+		return latencies[Command.Type.FIND_CLOSEST_BOOK.ordinal()].getCount();
+	}
+
+	@Override
+	public long getPrintBooksCount() {
+		return latencies[Command.Type.PRINT_BOOKS.ordinal()].getCount();
+	}
+
+	@Override
+	public long getPrintBookCount() {
+		return latencies[Command.Type.PRINT_BOOK.ordinal()].getCount();
+	}
+
+	@Override
+	public long getSingleRotationCount() {
+		return singleRotations.sum();
+	}
+
+	@Override
+	public long getDoubleRotationCount() {
+		return doubleRotations.sum();
+	}
+
+	@Override
+	public long getRecolorCount() {
+		return recolors.sum();
+	}
+
+	@Override
+	public long getMaxInsertDepth() {
+		return insertDepths.getMax();
+	}
+
+	@Override
+	public double getMeanInsertDepth() {
+		return insertDepths.getMean();
+	}
+
+	@Override
+	public long getMaxReservationQueueDepth() {
+		return reservationQueueDepths.getMax();
+	}
+
+	@Override
+	public double getMeanReservationQueueDepth() {
+		return reservationQueueDepths.getMean();
+	}
+
+	@Override
+	public int getTreeHeight() {
+		return treeHeight;
+	}
+
+	@Override
+	public int getTreeHeightBound() {
+		return treeHeightBound;
+	}
+
+	@Override
+	public int getBlackHeight() {
+		return blackHeight;
+	}
+
+	@Override
+	public long getValidationCount() {
+		return validations.sum();
+	}
+
+	@Override
+	public long getFailedValidationCount() {
+		return failedValidations.sum();
+	}
+
+	@Override
+	public long getLastViolationCount() {
+		return lastViolationCount;
+	}
+
+	//the command is the name of a command type like INSERT_BOOK, in any case
+	@Override
+	public long latencyPercentile(String command, double percentile) {
+		return latencies[Command.Type.valueOf(command.trim().toUpperCase()).ordinal()].percentile(percentile);
+	}
+
+	@Override
+	public String dump() {
+		StringBuilder report = new StringBuilder();
+		report.append(String.format("%-18s %10s %10s %10s %10s %10s %12s%n", "command", "count", "mean ns", "p50 ns", "p99 ns", "p99.9 ns", "max ns"));
+		for(Command.Type type : Command.Type.values()) {
+			LatencyHistogram histogram = latencies[type.ordinal()];
+			if(histogram.getCount() == 0) {
+				continue;
+			}
+			report.append(String.format("%-18s %10d %10.0f %10d %10d %10d %12d%n", type.name().toLowerCase(), histogram.getCount(),
+					histogram.getMean(), histogram.percentile(50), histogram.percentile(99), histogram.percentile(99.9), histogram.getMax()));
+		}
+		report.append("single rotations: ").append(singleRotations.sum()).append('\n');
+		report.append("double rotations: ").append(doubleRotations.sum()).append('\n');
+		report.append("recolors: ").append(recolors.sum()).append('\n');
+		report.append(String.format("insert depth: mean %.2f, p99 %d, max %d%n", insertDepths.getMean(), insertDepths.percentile(99), insertDepths.getMax()));
+		report.append(String.format("reservation queue depth: mean %.2f, p99 %d, max %d%n", reservationQueueDepths.getMean(),
+				reservationQueueDepths.percentile(99), reservationQueueDepths.getMax()));
+		report.append(String.format("tree height: %d, bound %d%n", treeHeight, treeHeightBound));
+		report.append(String.format("validations: %d, failed %d, last black height %d, last violations %d%n", validations.sum(),
+				failedValidations.sum(), blackHeight, lastViolationCount));
+		return report.toString();
+	}
+
+	@Override
+	public void dumpTo(String fileName) throws IOException {
+		Files.write(Paths.get(fileName), this.dump().getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,59 @@
+import java.io.IOException;
+
+/**
+ * Management interface of {@link LibraryMetrics}, the attributes and operations shown by JMX clients
+ * like jconsole under gatorLibrary:type=LibraryMetrics.
+ */
+public interface LibraryMetricsMBean {
+
+	long getInsertBookCount();
+
+	long getDeleteBookCount();
+
+	long getBorrowBookCount();
+
+	long getReturnBookCount();
+
+	long getFindClosestBookCount();
+
+	long getPrintBooksCount();
+
+	long getPrintBookCount();
+
+	long getSingleRotationCount();
+
+	long getDoubleRotationCount();
+
+	long getRecolorCount();
+
+	long getMaxInsertDepth();
+
+	double getMeanInsertDepth();
+
+	long getMaxReservationQueueDepth();
+
+	double getMeanReservationQueueDepth();
+
+	//the height of the tree after its last change, only published while the tree tracks its subtrees or when it is validated
+	int getTreeHeight();
+
+	//2 * log2(n + 1) for the n books of the library, the height of a healthy tree never exceeds it
+	int getTreeHeightBound();
+
+	//the black height found by the last validation
+	int getBlackHeight();
+
+	long getValidationCount();
+
+	long getFailedValidationCount();
+
+	long getLastViolationCount();
+
+	//the latency in nanoseconds that the given percentage of the commands of one type did not exceed
+	long latencyPercentile(String command, double percentile);
+
+	//a text report of all counters and histograms
+	String dump();
+
+	void dumpTo(String fileName) throws IOException;
+}
@@ -0,0 +1,272 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Compact binary snapshot of a library, so a library can be loaded without replaying its command log.
+ *
+ * The snapshot starts with a header holding the sequence number of the last {@link WriteAheadLog}
+ * record it contains, the last reservation time stamp of the {@link Utility}, the color flip count, the reservation limit of the library and the number of books. The books follow
+ * in pre-order, each with a flag byte for its color and for which children it has, its id, borrower,
+ * own reservation limit, title, author, availability and the reservations of its heap in heap order.
+ * This keeps the exact shape and colors of the tree, so later inserts and deletes rebalance and count
+ * color flips exactly as they would have in the saved library. Strings are stored as UTF-8 with their
+ * length in front.
+ *
+ * Loading maps the file in chunks and reads it in a single sequential pass, linking the books while
+ * they are read with a stack of the books whose right child is still to come.
+ */
+public class LibrarySnapshot {
+
+	private static final int MAGIC = 0x474C4942;
+	private static final int VERSION = 2;
+	//size of the header up to and including the log sequence
+	private static final int LOG_SEQUENCE_END = 16;
+	private static final long DEFAULT_CHUNK_SIZE = 1L << 28;
+
+	private static final int BLACK = 1;
+	private static final int HAS_LEFT = 2;
+	private static final int HAS_RIGHT = 4;
+
+	//writes a snapshot of a library that is not backed by a write ahead log
+	public static void write(RedBlackTree library, Utility utility, String fileName) throws IOException {
+		write(library, utility, fileName, 0);
+	}
+
+	/**
+	 * Writes the library and the reservation time stamp of the utility to a snapshot file.
+	 *
+	 * @param library     The library to save.
+	 * @param utility     The utility that hands out the reservation time stamps of the library.
+	 * @param fileName    The snapshot file, replaced if it exists.
+	 * @param logSequence The sequence number of the last log record applied to the library, 0 without a log.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public static void write(RedBlackTree library, Utility utility, String fileName, long logSequence) throws IOException {
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(logSequence);
+			out.writeLong(utility.getLastTimestamp());
+			out.writeInt(library.colorFlipCount);
+			out.writeInt(library.getReservationLimit());
+			out.writeInt(library.getBookCount());
+			Deque<Book> stack = new ArrayDeque<>();
+			if(library.getRoot() != null) {
+				stack.push(library.getRoot());
+			}
+			while(!stack.isEmpty()) {
+				Book book = stack.pop();
+				writeBook(book, out);
+				if(book.right != null) {
+					stack.push(book.right);
+				}
+				if(book.left != null) {
+					stack.push(book.left);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Loads a library from a snapshot file and continues the reservation time stamps of the utility
+	 * after the last one saved.
+	 *
+	 * @param fileName The snapshot file.
+	 * @param utility  The utility that will hand out the reservation time stamps of the loaded library.
+	 * @return         The loaded library.
+	 * @throws IOException If the file cannot be read or is not a snapshot.
+	 */
+	public static RedBlackTree load(String fileName, Utility utility) throws IOException {
+		try(Reader in = new Reader(fileName, DEFAULT_CHUNK_SIZE)) {
+			readLogSequence(fileName, in);
+			long lastTimestamp = in.readLong();
+			int colorFlipCount = in.readInt();
+			RedBlackTree library = new RedBlackTree(in.readInt());
+			int bookCount = in.readInt();
+			Book root = null;
+			Deque<Book> pendingRight = new ArrayDeque<>();
+			Book parent = null;
+			boolean leftChild = false;
+			for(int i = 0; i < bookCount; i++) {
+				int flags = in.readByte();
+				Book book = readBook(flags, in);
+				//attach the book where the pre-order says the next book goes
+				if(parent == null) {
+					root = book;
+				} else if(leftChild) {
+					parent.left = book;
+				} else {
+					parent.right = book;
+				}
+				book.parent = parent;
+				if((flags & HAS_RIGHT) != 0) {
+					pendingRight.push(book);
+				}
+				if((flags & HAS_LEFT) != 0) {
+					parent = book;
+					leftChild = true;
+				} else if(!pendingRight.isEmpty()) {
+					parent = pendingRight.pop();
+					leftChild = false;
+				} else if(i + 1 < bookCount) {
+					throw new IOException("Snapshot " + fileName + " has more books than its tree links");
+				}
+			}
+			library.restore(root, bookCount, colorFlipCount);
+			utility.setLastTimestamp(lastTimestamp);
+			return library;
+		}
+	}
+
+	/**
+	 * Reads the sequence number of the last write ahead log record contained in a snapshot, the log is
+	 * replayed from the record after it.
+	 *
+	 * @param fileName The snapshot file.
+	 * @return         The sequence number of the last record, 0 if the snapshot was written without a log.
+	 * @throws IOException If the file cannot be read or is not a snapshot.
+	 */
+	public static long readLogSequence(String fileName) throws IOException {
+		try(Reader in = new Reader(fileName, LOG_SEQUENCE_END)) {
+			return readLogSequence(fileName, in);
+		}
+	}
+
+	private static long readLogSequence(String fileName, Reader in) throws IOException {
+		if(in.readInt() != MAGIC) {
+			throw new IOException(fileName + " is not a library snapshot");
+		}
+		int version = in.readInt();
+		if(version != VERSION) {
+			throw new IOException("Unsupported snapshot version " + version);
+		}
+		return in.readLong();
+	}
+
+	private static void writeBook(Book book, DataOutputStream out) throws IOException {
+		int flags = (book.color == 0 ? BLACK : 0) | (book.left != null ? HAS_LEFT : 0) | (book.right != null ? HAS_RIGHT : 0);
+		out.writeByte(flags);
+		out.writeInt(book.getBookId());
+		out.writeInt(book.getBorrowedBy());
+		out.writeInt(book.getReservationLimit());
+		writeString(book.getBookName(), out);
+		writeString(book.getAuthorName(), out);
+		writeString(book.getAvailabilityStatus(), out);
+		ReservationHeap reservationHeap = book.getReservationHeap();
+		out.writeInt(reservationHeap.size());
+		for(int i = 0; i < reservationHeap.size(); i++) {
+			out.writeInt(reservationHeap.getPatronId(i));
+			out.writeInt(reservationHeap.getPriorityNumber(i));
+			out.writeLong(reservationHeap.getTimeOfReservation(i));
+		}
+	}
+
+	private static Book readBook(int flags, Reader in) throws IOException {
+		Book book = new Book();
+		book.color = (flags & BLACK) != 0 ? 0 : 1;
+		book.setBookId(in.readInt());
+		book.setBorrowedBy(in.readInt());
+		book.setReservationLimit(in.readInt());
+		book.setBookName(in.readString());
+		book.setAuthorName(in.readString());
+		book.setAvailabilityStatus(in.readString());
+		ReservationHeap reservationHeap = new ReservationHeap();
+		int reservations = in.readInt();
+		for(int i = 0; i < reservations; i++) {
+			reservationHeap.append(in.readInt(), in.readInt(), in.readLong());
+		}
+		book.setReservationHeap(reservationHeap);
+		return book;
+	}
+
+	//a null string is stored with the length -1
+	private static void writeString(String text, DataOutputStream out) throws IOException {
+		if(text == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Sequential reader over a memory mapped snapshot, the next chunk is mapped when a value would
+	 * cross the end of the current one.
+	 */
+	private static class Reader implements AutoCloseable {
+
+		private final FileChannel channel;
+		private final long fileSize;
+		private final long chunkSize;
+		private MappedByteBuffer chunk;
+		private long chunkStart;
+
+		private Reader(String fileName, long chunkSize) throws IOException {
+			this.channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+			this.fileSize = channel.size();
+			this.chunkSize = Math.min(chunkSize, Integer.MAX_VALUE);
+			map(0);
+		}
+
+		private byte readByte() throws IOException {
+			ensure(1);
+			return chunk.get();
+		}
+
+		private int readInt() throws IOException {
+			ensure(4);
+			return chunk.getInt();
+		}
+
+		private long readLong() throws IOException {
+			ensure(8);
+			return chunk.getLong();
+		}
+
+		private String readString() throws IOException {
+			int length = readInt();
+			if(length < 0) {
+				return null;
+			}
+			ensure(length);
+			byte[] bytes = new byte[length];
+			chunk.get(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		private void ensure(int bytes) throws IOException {
+			if(chunk.remaining() >= bytes) {
+				return;
+			}
+			long position = chunkStart + chunk.position();
+			if(position + bytes > fileSize) {
+				throw new IOException("Snapshot ends unexpectedly at offset " + position);
+			}
+			if(bytes > chunkSize) {
+				throw new IOException("Value of " + bytes + " bytes at offset " + position + " is larger than a chunk");
+			}
+			map(position);
+		}
+
+		private void map(long start) throws IOException {
+			long size = Math.min(chunkSize, fileSize - start);
+			this.chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+			this.chunkStart = start;
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,138 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the lines of a command file through memory mapped chunks of the file.
+ *
+ * Line boundaries are found directly on the mapped bytes and each line is returned as a
+ * {@link CharSequence} view over those bytes, so no String is created for a line unless a part of it
+ * is copied out with subSequence() or toString(). The view is reused, it is only valid until the next
+ * call of {@link #nextLine()}. Lines end at "\n", "\r\n" or a single "\r" like with
+ * BufferedReader.readLine(). A line must fit into one chunk.
+ */
+public class MappedCommandReader implements Closeable {
+
+	private static final long DEFAULT_CHUNK_SIZE = 1L << 28;
+
+	private final FileChannel channel;
+	private final long fileSize;
+	private final long chunkSize;
+	private MappedByteBuffer chunk;
+	//offset of the current chunk in the file and position of the next line in the chunk
+	private long chunkStart;
+	private int pos;
+	private final Line line = new Line();
+
+	public MappedCommandReader(String fileName) throws IOException {
+		this(fileName, DEFAULT_CHUNK_SIZE);
+	}
+
+	public MappedCommandReader(String fileName, long chunkSize) throws IOException {
+		this.channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+		this.fileSize = channel.size();
+		this.chunkSize = Math.min(chunkSize, Integer.MAX_VALUE);
+		map(0);
+	}
+
+	/**
+	 * Returns the next line of the file without its line terminator.
+	 *
+	 * @return The line, or null at the end of the file.
+	 * @throws IOException If the file cannot be mapped or a line does not fit into one chunk.
+	 */
+	public CharSequence nextLine() throws IOException {
+		while(true) {
+			int limit = chunk.limit();
+			boolean lastChunk = chunkStart + limit >= fileSize;
+			for(int i = pos; i < limit; i++) {
+				byte b = chunk.get(i);
+				if(b != '\n' && b != '\r') {
+					continue;
+				}
+				int next = i + 1;
+				if(b == '\r') {
+					//a "\r" at the end of the chunk may be followed by the "\n" of the next chunk
+					if(next == limit && !lastChunk) {
+						break;
+					}
+					if(next < limit && chunk.get(next) == '\n') {
+						next++;
+					}
+				}
+				line.set(chunk, pos, i - pos);
+				pos = next;
+				return line;
+			}
+			if(lastChunk) {
+				if(pos == limit) {
+					return null;
+				}
+				//the last line of the file has no line terminator
+				line.set(chunk, pos, limit - pos);
+				pos = limit;
+				return line;
+			}
+			if(pos == 0) {
+				throw new IOException("Line at offset " + chunkStart + " is longer than " + chunkSize + " bytes");
+			}
+			//continue with the next chunk, starting at the beginning of the unfinished line
+			map(chunkStart + pos);
+		}
+	}
+
+	private void map(long start) throws IOException {
+		long size = Math.min(chunkSize, fileSize - start);
+		this.chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+		this.chunkStart = start;
+		this.pos = 0;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * View of one line in the mapped chunk. Each byte is one char, which is exact for the ASCII syntax
+	 * of the commands; copied out parts are decoded with the platform encoding, the same way the lines
+	 * were decoded by the InputStreamReader before, so book titles and authors keep their characters.
+	 */
+	private static class Line implements CharSequence {
+
+		private MappedByteBuffer buffer;
+		private int offset;
+		private int length;
+
+		private void set(MappedByteBuffer buffer, int offset, int length) {
+			this.buffer = buffer;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		@Override
+		public int length() {
+			return length;
+		}
+
+		@Override
+		public char charAt(int index) {
+			return (char) (buffer.get(offset + index) & 0xFF);
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			byte[] bytes = new byte[end - start];
+			buffer.get(offset + start, bytes);
+			return new String(bytes);
+		}
+
+		@Override
+		public String toString() {
+			return subSequence(0, length).toString();
+		}
+	}
+}
@@ -0,0 +1,133 @@
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Buffered output stream for the library output file.
+ *
+ * All writes go into one reusable byte buffer which is only handed to the underlying stream when it
+ * is full, on {@link #flush()} or on {@link #close()}, so the many short messages of a command file
+ * end up as a few large writes. Text and numbers can be appended directly, ASCII characters are
+ * encoded without creating intermediate strings or byte arrays. As an {@link Appendable} the sink
+ * takes the same writer as a StringBuilder, like {@link Book#writeTo(Appendable)}.
+ */
+public class OutputSink extends OutputStream implements Appendable {
+
+	private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+	private final OutputStream out;
+	private final byte[] buffer;
+	private int count;
+	//scratch space for the digits of an int, the longest one is "-2147483648"
+	private final byte[] digits = new byte[11];
+
+	public OutputSink(OutputStream out) {
+		this(out, DEFAULT_BUFFER_SIZE);
+	}
+
+	public OutputSink(OutputStream out, int bufferSize) {
+		this.out = out;
+		this.buffer = new byte[bufferSize];
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if(count == buffer.length) {
+			flushBuffer();
+		}
+		buffer[count++] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		//large blocks would only be copied twice, so they go straight to the underlying stream
+		if(len >= buffer.length) {
+			flushBuffer();
+			out.write(b, off, len);
+			return;
+		}
+		if(len > buffer.length - count) {
+			flushBuffer();
+		}
+		System.arraycopy(b, off, buffer, count, len);
+		count += len;
+	}
+
+	//appends the text, characters outside ASCII fall back to the platform encoding like String.getBytes() does, null appends "null" like a StringBuilder
+	@Override
+	public OutputSink append(CharSequence text) throws IOException {
+		if(text == null) {
+			text = "null";
+		}
+		int length = text.length();
+		for(int i = 0; i < length; i++) {
+			if(text.charAt(i) >= 0x80) {
+				byte[] bytes = text.toString().getBytes();
+				write(bytes, 0, bytes.length);
+				return this;
+			}
+		}
+		for(int i = 0; i < length; i++) {
+			if(count == buffer.length) {
+				flushBuffer();
+			}
+			buffer[count++] = (byte) text.charAt(i);
+		}
+		return this;
+	}
+
+	//appends a part of the text like a StringBuilder does
+	@Override
+	public OutputSink append(CharSequence text, int start, int end) throws IOException {
+		return this.append((text == null ? "null" : text).subSequence(start, end));
+	}
+
+	@Override
+	public OutputSink append(char c) throws IOException {
+		if(c >= 0x80) {
+			return this.append(String.valueOf(c));
+		}
+		this.write(c);
+		return this;
+	}
+
+	//appends the decimal digits of the value
+	public OutputSink append(int value) throws IOException {
+		int pos = digits.length;
+		long remaining = value;
+		boolean negative = remaining < 0;
+		if(negative) {
+			remaining = -remaining;
+		}
+		do {
+			digits[--pos] = (byte) ('0' + remaining % 10);
+			remaining /= 10;
+		} while(remaining != 0);
+		if(negative) {
+			digits[--pos] = '-';
+		}
+		write(digits, pos, digits.length - pos);
+		return this;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		flushBuffer();
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flushBuffer();
+		} finally {
+			out.close();
+		}
+	}
+
+	private void flushBuffer() throws IOException {
+		if(count > 0) {
+			out.write(buffer, 0, count);
+			count = 0;
+		}
+	}
+}
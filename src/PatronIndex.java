@@ -0,0 +1,135 @@
+import java.util.Arrays;
+
+/**
+ * Index from patron id to the books the patron has borrowed and the books the patron waits for.
+ *
+ * A {@link PatronPositionMap} gives every patron a slot, and the slot holds two int arrays of book ids
+ * whose first element is the number of ids, which grow by doubling. Adding a book first checks that the
+ * patron does not have it yet and removing one looks for it, so both take time linear in the books of
+ * that patron and neither depends on the size of the library. A patron without books gives the slot
+ * back, so the index only holds patrons who have something borrowed or reserved. Removing a book the
+ * patron does not have changes nothing.
+ */
+public class PatronIndex {
+
+	private static final int INITIAL_SLOTS = 16;
+
+	private final PatronPositionMap slots = new PatronPositionMap();
+	private int[][] loans = new int[INITIAL_SLOTS][];
+	private int[][] reservations = new int[INITIAL_SLOTS][];
+	//slots given back by patrons without books, used again before new slots
+	private int[] freeSlots = new int[INITIAL_SLOTS];
+	private int freeCount;
+	private int usedSlots;
+
+	public void addLoan(int patronId, int bookId) {
+		int slot = this.slotOf(patronId);
+		loans[slot] = add(loans[slot], bookId);
+	}
+
+	public void removeLoan(int patronId, int bookId) {
+		int slot = slots.get(patronId);
+		if(slot >= 0) {
+			remove(loans[slot], bookId);
+			this.releaseIfEmpty(patronId, slot);
+		}
+	}
+
+	public void addReservation(int patronId, int bookId) {
+		int slot = this.slotOf(patronId);
+		reservations[slot] = add(reservations[slot], bookId);
+	}
+
+	public void removeReservation(int patronId, int bookId) {
+		int slot = slots.get(patronId);
+		if(slot >= 0) {
+			remove(reservations[slot], bookId);
+			this.releaseIfEmpty(patronId, slot);
+		}
+	}
+
+	//the ids of the books the patron has borrowed, in increasing order
+	public int[] getLoans(int patronId) {
+		int slot = slots.get(patronId);
+		return slot < 0 ? new int[0] : sorted(loans[slot]);
+	}
+
+	//the ids of the books the patron has reserved, in increasing order
+	public int[] getReservations(int patronId) {
+		int slot = slots.get(patronId);
+		return slot < 0 ? new int[0] : sorted(reservations[slot]);
+	}
+
+	//the number of patrons with at least one book borrowed or reserved
+	public int patronCount() {
+		return slots.size();
+	}
+
+	//returns the slot of the patron, taking a free one for a patron who is not in the index yet
+	private int slotOf(int patronId) {
+		int slot = slots.get(patronId);
+		if(slot >= 0) {
+			return slot;
+		}
+		if(freeCount > 0) {
+			slot = freeSlots[--freeCount];
+		} else {
+			if(usedSlots == loans.length) {
+				loans = Arrays.copyOf(loans, usedSlots * 2);
+				reservations = Arrays.copyOf(reservations, usedSlots * 2);
+			}
+			slot = usedSlots++;
+		}
+		loans[slot] = new int[] {0, 0};
+		reservations[slot] = new int[] {0, 0};
+		slots.put(patronId, slot);
+		return slot;
+	}
+
+	private void releaseIfEmpty(int patronId, int slot) {
+		if(loans[slot][0] != 0 || reservations[slot][0] != 0) {
+			return;
+		}
+		slots.remove(patronId);
+		loans[slot] = null;
+		reservations[slot] = null;
+		if(freeCount == freeSlots.length) {
+			freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+		}
+		freeSlots[freeCount++] = slot;
+	}
+
+	//appends the book id, returns the list itself or its grown copy
+	private static int[] add(int[] books, int bookId) {
+		int count = books[0];
+		for(int i = 1; i <= count; i++) {
+			if(books[i] == bookId) {
+				return books;
+			}
+		}
+		if(count + 1 == books.length) {
+			books = Arrays.copyOf(books, books.length * 2);
+		}
+		books[count + 1] = bookId;
+		books[0] = count + 1;
+		return books;
+	}
+
+	//removes the book id by moving the last id into its place
+	private static void remove(int[] books, int bookId) {
+		int count = books[0];
+		for(int i = 1; i <= count; i++) {
+			if(books[i] == bookId) {
+				books[i] = books[count];
+				books[0] = count - 1;
+				return;
+			}
+		}
+	}
+
+	private static int[] sorted(int[] books) {
+		int[] ids = Arrays.copyOfRange(books, 1, books[0] + 1);
+		Arrays.sort(ids);
+		return ids;
+	}
+}
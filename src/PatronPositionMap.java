@@ -0,0 +1,121 @@
+import java.util.Arrays;
+
+/**
+ * Map from patron id to the position of the patron's reservation in a {@link ReservationHeap},
+ * stored in an open addressed int table with linear probing.
+ *
+ * Lookups, updates and removals take constant expected time and do not allocate unless the table
+ * has to grow. Removal shifts the following entries of the probe run back instead of leaving
+ * tombstones, so the table never degrades after many reservations come and go. The table is kept
+ * at most half full. Integer.MIN_VALUE marks empty slots and cannot be used as a patron id.
+ */
+public class PatronPositionMap {
+
+	private static final int EMPTY = Integer.MIN_VALUE;
+	private static final int INITIAL_CAPACITY = 8;
+
+	private int[] keys;
+	private int[] positions;
+	private int size;
+
+	public PatronPositionMap() {
+		this.keys = newTable(INITIAL_CAPACITY);
+		this.positions = new int[INITIAL_CAPACITY];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean contains(int patronId) {
+		return get(patronId) >= 0;
+	}
+
+	//returns the position stored for the patron, or -1 if the patron is not in the map
+	public int get(int patronId) {
+		int mask = keys.length - 1;
+		for(int i = slot(patronId, mask); keys[i] != EMPTY; i = (i + 1) & mask) {
+			if(keys[i] == patronId) {
+				return positions[i];
+			}
+		}
+		return -1;
+	}
+
+	//stores the position for the patron, replacing the previous one if the patron is already in the map
+	public void put(int patronId, int position) {
+		if(patronId == EMPTY) {
+			throw new IllegalArgumentException("Patron id " + patronId + " cannot be stored");
+		}
+		if((size + 1) * 2 > keys.length) {
+			resize(keys.length * 2);
+		}
+		int mask = keys.length - 1;
+		int i = slot(patronId, mask);
+		while(keys[i] != EMPTY) {
+			if(keys[i] == patronId) {
+				positions[i] = position;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = patronId;
+		positions[i] = position;
+		size++;
+	}
+
+	//returns false if the patron was not in the map
+	public boolean remove(int patronId) {
+		int mask = keys.length - 1;
+		int i = slot(patronId, mask);
+		while(keys[i] != patronId) {
+			if(keys[i] == EMPTY) {
+				return false;
+			}
+			i = (i + 1) & mask;
+		}
+		//move back every following entry of the run whose home slot is not between the hole and its position
+		int hole = i;
+		for(int j = (hole + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+			int home = slot(keys[j], mask);
+			if(((j - home) & mask) >= ((j - hole) & mask)) {
+				keys[hole] = keys[j];
+				positions[hole] = positions[j];
+				hole = j;
+			}
+		}
+		keys[hole] = EMPTY;
+		size--;
+		return true;
+	}
+
+	private void resize(int capacity) {
+		int[] oldKeys = keys;
+		int[] oldPositions = positions;
+		keys = newTable(capacity);
+		positions = new int[capacity];
+		int mask = capacity - 1;
+		for(int k = 0; k < oldKeys.length; k++) {
+			if(oldKeys[k] != EMPTY) {
+				int i = slot(oldKeys[k], mask);
+				while(keys[i] != EMPTY) {
+					i = (i + 1) & mask;
+				}
+				keys[i] = oldKeys[k];
+				positions[i] = oldPositions[k];
+			}
+		}
+	}
+
+	private static int[] newTable(int capacity) {
+		int[] table = new int[capacity];
+		Arrays.fill(table, EMPTY);
+		return table;
+	}
+
+	//spread the bits of the id so that consecutive patron ids do not form long probe runs
+	private static int slot(int patronId, int mask) {
+		int hash = patronId * 0x9E3779B9;
+		return (hash ^ (hash >>> 16)) & mask;
+	}
+}
@@ -2,38 +2,54 @@
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.TreeMap;
 
 public class RedBlackTree {
 	
 	private Book root;
 	int colorFlipCount = 0;
-	Map<Integer, Book> treeMap = new TreeMap<>();
-	Map<Integer, Integer> dictionary = new HashMap<>();
-	Map<Integer, Integer> colorChanged = new HashMap<>();
+	private int bookCount = 0;
+	public static final int DEFAULT_RESERVATION_LIMIT = 20;
+	//a batch of less than this part of the library is applied book by book instead of rebuilding the tree,
+	//the LoadBenchmark and BatchBenchmark crossovers are at a fifth to a quarter
+	private static final int REBUILD_FRACTION = 4;
+	private int reservationLimit = DEFAULT_RESERVATION_LIMIT;
+	//number of the current insert or delete, a book's color flip is counted against its color when this operation started
+	private int operation = 0;
+	//counters of rotations, recolors and queue depths, null unless the library is instrumented
+	private LibraryMetrics metrics;
+	//whether the size and height of every subtree is kept up to date, and the books whose children changed in the current operation
+	private boolean subtreeTracking;
+	private Book[] touched = new Book[8];
+	private int touchedCount;
+	//the book ids by author and by title, null unless the library keeps secondary indexes
+	private StringIndex authorIndex;
+	private StringIndex titleIndex;
+	//the books every patron has borrowed or reserved, null unless the library keeps a patron index
+	private PatronIndex patronIndex;
 	
 	/**
-	 * Recursively searches for a book in the library's binary search tree based on the provided book ID.
+	 * Searches for a book in the library's binary search tree based on the provided book ID.
 	 *
-	 * This method performs a recursive search in the library's binary search tree to find the
-	 * book with the specified ID. If the book is found, it is returned; otherwise, null is returned.
+	 * This method walks down the library's binary search tree in a loop, starting at the given
+	 * book, to find the book with the specified ID. If the book is found, it is returned;
+	 * otherwise, null is returned.
 	 *
 	 * @param book  The current node in the binary search tree.
 	 * @param value The book ID to search for.
 	 * @return      The Book object with the specified ID if found, or null if not found.
 	 */
 	public Book getBookFromLibrary(Book book, int value) {
-		if (book == null || value == book.getBookId()) {
-			return book;
-		}
-		if (value < book.getBookId()) {
-			return getBookFromLibrary(book.left, value);
+		while (book != null && value != book.getBookId()) {
+			if (value < book.getBookId()) {
+				book = book.left;
+			} else {
+				book = book.right;
+			}
 		}
-		return getBookFromLibrary(book.right, value);
+		return book;
 	}
 
 	/**
@@ -43,9 +59,8 @@ public class RedBlackTree {
 	 *
 	 * This method first searches for the book with the given ID in the library. If the book is
 	 * found, it generates a message indicating the unavailability of the book and, if applicable,
-	 * cancels reservations made for the book. The method then removes the book from the dictionary,
-	 * calls the `deleteBook` method to perform the deletion, and finally checks for potential color
-	 * changes in the tree nodes, updating the color flip count.
+	 * cancels reservations made for the book. The method then calls the `deleteBook` method to
+	 * perform the deletion, which counts the color flips of the books as their colors change.
 	 *
 	 * @param bookId  The ID of the book to be deleted from the library.
 	 * @param access  The output stream to write the result message.
@@ -58,7 +73,13 @@ public class RedBlackTree {
 			utility.write("Book "+bookId+ " not found in the Library", access);
 			return;
 		}
-		String message = "Book " + bookId + " is no longer available";
+		this.writeDeletedMessage(book, access, utility);
+		this.removeBook(book);
+	}
+
+	//writes that the book is no longer available and which reservations are cancelled with it
+	private void writeDeletedMessage(Book book, OutputStream access, Utility utility) throws IOException {
+		String message = "Book " + book.getBookId() + " is no longer available";
 		int size = book.getReservationHeap().size();
 		if(size != 0) {
 			String reservationString = utility.reservationString(book.getReservationHeap());
@@ -69,12 +90,15 @@ public class RedBlackTree {
 			}
 		}
 		utility.write(message, access);
-		//will remove the book from dictionary map
-		this.dictionary.remove(book.getBookId());
-		//call the deleteBook method and fix the violations 
+	}
+
+	//call the deleteBook method and fix the violations, this starts a new operation for the color flip count
+	private void removeBook(Book book) {
+		this.operation++;
+		this.bookCount--;
+		this.unindex(book);
 		this.deleteBook(book);
-		//once the delete operation is performed check for potential color change of the node
-		this.updateColorFlipCount();
+		this.refreshTouched();
 	}
 
 	// Fix the violation after the insert is done
@@ -85,13 +109,10 @@ public class RedBlackTree {
 				uncle = child.parent.parent.left;
 				//if uncle is red just do the color flip and rotation not required
 				if (uncle != null && uncle.color == 1) {
-					uncle.color = 0;
-					this.colorChanged.put(uncle.getBookId(), 0);
-					child.parent.color = 0;
-					this.colorChanged.put(child.parent.getBookId(), 0);
+					this.recolor(uncle, 0);
+					this.recolor(child.parent, 0);
 					if(child.parent.parent != root) {
-						child.parent.parent.color = 1;
-						this.colorChanged.put(child.parent.parent.getBookId(), 1);
+						this.recolor(child.parent.parent, 1);
 					}
 					child = child.parent.parent;
 				} else {
@@ -100,23 +121,18 @@ public class RedBlackTree {
 						child = child.parent;
 						rightRotate(child);
 					}
-					child.parent.color = 0;
-					this.colorChanged.put(child.parent.getBookId(), 0);
-					child.parent.parent.color = 1;
-					this.colorChanged.put(child.parent.parent.getBookId(), 1);
+					this.recolor(child.parent, 0);
+					this.recolor(child.parent.parent, 1);
 					leftRotate(child.parent.parent);
 				}
 			} else {
 				uncle = child.parent.parent.right;
 				//if uncle is red just do the color flip and rotation not required
 				if (uncle != null && uncle.color == 1) {
-					uncle.color = 0;
-					this.colorChanged.put(uncle.getBookId(), 0);
-					child.parent.color = 0;
-					this.colorChanged.put(child.parent.getBookId(), 0);
+					this.recolor(uncle, 0);
+					this.recolor(child.parent, 0);
 					if(child.parent.parent != root) {
-						child.parent.parent.color = 1;
-						this.colorChanged.put(child.parent.parent.getBookId(), 1);
+						this.recolor(child.parent.parent, 1);
 					}
 					child = child.parent.parent;
 				} else {
@@ -125,10 +141,8 @@ public class RedBlackTree {
 						child = child.parent;
 						leftRotate(child);
 					}
-					child.parent.color = 0;
-					this.colorChanged.put(child.parent.getBookId(), 0);
-					child.parent.parent.color = 1;
-					this.colorChanged.put(child.parent.parent.getBookId(), 1);
+					this.recolor(child.parent, 0);
+					this.recolor(child.parent.parent, 1);
 					rightRotate(child.parent.parent);
 				}
 			}
@@ -136,17 +150,262 @@ public class RedBlackTree {
 				break;
 			}
 		}
-		root.color = 0;
-		this.colorChanged.put(root.getBookId(), 0);
+		this.recolor(root, 0);
 	}
 
 	//instantiate the Red black tree
 	public RedBlackTree() {
 	}
 
+	//instantiate the Red black tree with a different number of reservations allowed per book, single books can still override it
+	public RedBlackTree(int reservationLimit) {
+		this.reservationLimit = reservationLimit;
+	}
+
+	public LibraryMetrics getMetrics() {
+		return this.metrics;
+	}
+
+	//starts or stops counting the rotations, recolors, insert depths and reservation queue depths of this tree
+	public void setMetrics(LibraryMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	public boolean isSubtreeTracking() {
+		return this.subtreeTracking;
+	}
+
+	/**
+	 * Starts or stops keeping the size and height of every subtree up to date.
+	 *
+	 * Starting computes them for the whole tree in one pass. After that every insert and delete
+	 * remembers the books whose children it changes, rotations only the books they move down, and
+	 * once the tree is rebalanced refreshes those books and the paths from them to the root. That
+	 * costs O(log n) for each of the few books an operation touches. While the library has metrics,
+	 * the height of the tree is then published after every change.
+	 *
+	 * @param subtreeTracking True to keep the sizes and heights up to date.
+	 */
+	public void setSubtreeTracking(boolean subtreeTracking) {
+		if(subtreeTracking && !this.subtreeTracking) {
+			this.refreshAll();
+		}
+		this.subtreeTracking = subtreeTracking;
+		this.refreshTouched();
+	}
+
+	//remembers a book whose children changed, it is refreshed with the path above it when the operation ends
+	private void touch(Book book) {
+		if(!this.subtreeTracking || book == null) {
+			return;
+		}
+		if(this.touchedCount == this.touched.length) {
+			this.touched = Arrays.copyOf(this.touched, this.touchedCount * 2);
+		}
+		this.touched[this.touchedCount++] = book;
+	}
+
+	//refreshes the touched books and their ancestors, the last refresh of a book then always comes after the last refresh of its children
+	private void refreshTouched() {
+		for(int i = 0; i < this.touchedCount; i++) {
+			for(Book book = this.touched[i]; book != null; book = book.parent) {
+				refresh(book);
+			}
+			this.touched[i] = null;
+		}
+		this.touchedCount = 0;
+		if(this.subtreeTracking && this.metrics != null) {
+			this.metrics.treeHeight(height(this.root), this.bookCount);
+		}
+	}
+
+	//computes the size and height of every subtree in post-order, with an explicit stack instead of recursion
+	private void refreshAll() {
+		if(this.root == null) {
+			return;
+		}
+		Book[] stack = new Book[64];
+		boolean[] expanded = new boolean[64];
+		int top = 0;
+		stack[top++] = this.root;
+		while(top > 0) {
+			Book book = stack[top - 1];
+			if(expanded[top - 1]) {
+				top--;
+				refresh(book);
+				continue;
+			}
+			expanded[top - 1] = true;
+			if(top + 2 > stack.length) {
+				stack = Arrays.copyOf(stack, stack.length * 2);
+				expanded = Arrays.copyOf(expanded, expanded.length * 2);
+			}
+			if(book.right != null) {
+				stack[top] = book.right;
+				expanded[top++] = false;
+			}
+			if(book.left != null) {
+				stack[top] = book.left;
+				expanded[top++] = false;
+			}
+		}
+	}
+
+	private static int size(Book book) {
+		return book == null ? 0 : book.size;
+	}
+
+	private static int height(Book book) {
+		return book == null ? 0 : book.height;
+	}
+
+	//recomputes the size and height of the subtree of a book from those of its children
+	private static void refresh(Book book) {
+		book.size = size(book.left) + size(book.right) + 1;
+		book.height = Math.max(height(book.left), height(book.right)) + 1;
+	}
+
+	/**
+	 * Checks the red-black rules and the links of the whole tree in one O(n) pass.
+	 *
+	 * The books are visited in post-order with an explicit stack, so even a tree that degenerated
+	 * into a list is checked without running out of call stack. For every book it checks that its
+	 * children link back to it, that its ID lies between the IDs of its left and right subtree, that
+	 * a red book has no red child and that both subtrees have the same number of black books. The
+	 * root has to be black, the tree has to hold as many books as the library counted and its height
+	 * has to stay within 2 * log2(n + 1). While the tree tracks its subtrees the tracked sizes and
+	 * heights are checked as well. The result is also recorded in the metrics of the library.
+	 *
+	 * @return The violations found, and the height and black height of the tree.
+	 */
+	public TreeValidation validate() {
+		TreeValidation result = new TreeValidation(this.bookCount);
+		if(this.root != null) {
+			if(this.root.parent != null) {
+				result.violation("The root book " + this.root.getBookId() + " has a parent");
+			}
+			if(this.root.color != 0) {
+				result.violation("The root book " + this.root.getBookId() + " is red");
+			}
+		}
+		Book[] stack = new Book[64];
+		boolean[] expanded = new boolean[64];
+		//the finished subtrees, five ints each: size, height, black height, smallest and largest book id
+		int[] subtrees = new int[5 * 64];
+		int top = 0;
+		int finished = 0;
+		long reached = 0;
+		if(this.root != null) {
+			stack[top++] = this.root;
+		}
+		while(top > 0) {
+			Book book = stack[top - 1];
+			if(!expanded[top - 1]) {
+				expanded[top - 1] = true;
+				//a cycle in the child links would keep the walk going forever
+				if(++reached > this.bookCount) {
+					result.violation("More books are reachable from the root than the " + this.bookCount + " the library holds");
+					result.setShape(0, 0);
+					this.recordValidation(result);
+					return result;
+				}
+				if(top + 2 > stack.length) {
+					stack = Arrays.copyOf(stack, stack.length * 2);
+					expanded = Arrays.copyOf(expanded, expanded.length * 2);
+				}
+				if(book.right != null) {
+					stack[top] = book.right;
+					expanded[top++] = false;
+				}
+				if(book.left != null) {
+					stack[top] = book.left;
+					expanded[top++] = false;
+				}
+				continue;
+			}
+			top--;
+			int bookId = book.getBookId();
+			//the right subtree was finished last, so its result is on top
+			int size = 1, height = 0, leftBlack = 0, rightBlack = 0, low = bookId, high = bookId;
+			if(book.right != null) {
+				finished--;
+				size += subtrees[5 * finished];
+				height = subtrees[5 * finished + 1];
+				rightBlack = subtrees[5 * finished + 2];
+				high = subtrees[5 * finished + 4];
+				if(subtrees[5 * finished + 3] <= bookId) {
+					result.violation("Book " + bookId + " has a book with a smaller or equal ID in its right subtree");
+				}
+				if(book.right.parent != book) {
+					result.violation("Book " + book.right.getBookId() + " does not link back to its parent " + bookId);
+				}
+			}
+			if(book.left != null) {
+				finished--;
+				size += subtrees[5 * finished];
+				height = Math.max(height, subtrees[5 * finished + 1]);
+				leftBlack = subtrees[5 * finished + 2];
+				low = subtrees[5 * finished + 3];
+				if(subtrees[5 * finished + 4] >= bookId) {
+					result.violation("Book " + bookId + " has a book with a larger or equal ID in its left subtree");
+				}
+				if(book.left.parent != book) {
+					result.violation("Book " + book.left.getBookId() + " does not link back to its parent " + bookId);
+				}
+			}
+			height++;
+			if(book.color == 1 && ((book.left != null && book.left.color == 1) || (book.right != null && book.right.color == 1))) {
+				result.violation("Red book " + bookId + " has a red child");
+			}
+			if(leftBlack != rightBlack) {
+				result.violation("Book " + bookId + " has " + leftBlack + " black books below it on the left and " + rightBlack + " on the right");
+			}
+			if(this.subtreeTracking && (book.size != size || book.height != height)) {
+				result.violation("Book " + bookId + " tracks size " + book.size + " and height " + book.height + " instead of " + size + " and " + height);
+			}
+			if(5 * finished + 5 > subtrees.length) {
+				subtrees = Arrays.copyOf(subtrees, subtrees.length * 2);
+			}
+			subtrees[5 * finished] = size;
+			subtrees[5 * finished + 1] = height;
+			subtrees[5 * finished + 2] = leftBlack + (book.color == 0 ? 1 : 0);
+			subtrees[5 * finished + 3] = low;
+			subtrees[5 * finished + 4] = high;
+			finished++;
+		}
+		int size = finished == 0 ? 0 : subtrees[0];
+		int height = finished == 0 ? 0 : subtrees[1];
+		result.setShape(height, finished == 0 ? 0 : subtrees[2]);
+		if(size != this.bookCount) {
+			result.violation("The tree holds " + size + " books but the library counted " + this.bookCount);
+		}
+		if(height > result.getHeightBound()) {
+			result.violation("The height " + height + " exceeds the bound " + result.getHeightBound() + " of " + this.bookCount + " books");
+		}
+		this.recordValidation(result);
+		return result;
+	}
+
+	private void recordValidation(TreeValidation result) {
+		if(this.metrics != null) {
+			this.metrics.validation(result);
+		}
+	}
+
+	public int getReservationLimit() {
+		return this.reservationLimit;
+	}
+
+	public void setReservationLimit(int reservationLimit) {
+		this.reservationLimit = reservationLimit;
+	}
+
 
 	//this method is responsible for doing the right at the given node x 
 	public void leftRotate(Book x) {
+		if(this.metrics != null) {
+			this.metrics.singleRotation();
+		}
 		Book y = x.right;
 		x.right = y.left;
 		if (y.left != null) {
@@ -162,10 +421,14 @@ public class RedBlackTree {
 		}
 		y.left = x;
 		x.parent = y;
+		this.touch(x);
 	}
 
 	//this method is responsible for doing the left at the given node x 
 	public void rightRotate(Book x) {
+		if(this.metrics != null) {
+			this.metrics.singleRotation();
+		}
 		Book y = x.left;
 		x.left = y.right;
 		if (y.right != null) {
@@ -181,6 +444,7 @@ public class RedBlackTree {
 		}
 		y.right = x;
 		x.parent = y;
+		this.touch(x);
 	}
 
 	//this helps to create new book when we have to insert new book into library
@@ -191,7 +455,7 @@ public class RedBlackTree {
 		book.setAvailabilityStatus(availabilityStatus);
 		book.setBookName(bookName);
 		book.setBorrowedBy(0);
-		book.setReservationHeap(new ArrayList<>());
+		book.setReservationHeap(new ReservationHeap());
 		book.parent = null;
 		book.left = null;
 		book.right = null;
@@ -205,8 +469,8 @@ public class RedBlackTree {
 	 *
 	 * This method creates a new book node with the provided details and inserts it into the
 	 * Red-Black Tree. It then applies the necessary rotations and color adjustments to ensure
-	 * that the Red-Black Tree properties are maintained. The method also updates a dictionary
-	 * to keep track of the color flip count for each book ID.
+	 * that the Red-Black Tree properties are maintained. Every color change goes through
+	 * recolor(), which keeps the color flip count up to date.
 	 *
 	 * @param bookId            The ID of the new book.
 	 * @param bookName          The name of the new book.
@@ -214,17 +478,29 @@ public class RedBlackTree {
 	 * @param availabilityStatus The availability status of the new book.
 	 */
 	public void insertBook(int bookId, String bookName, String authorName, String availabilityStatus) {
-		Book node = this.getBook(bookId, bookName, authorName, availabilityStatus);
+		this.insertNode(this.getBook(bookId, bookName, authorName, availabilityStatus));
+	}
+
+	//inserts a book created by getBook() and fixes the violations, this starts a new operation for the color flip count
+	private void insertNode(Book node) {
+		this.operation++;
+		this.bookCount++;
+		this.index(node);
 		Book y = null;
 		Book x = this.root;
+		int depth = 0;
 		while (x != null) {
 			y = x;
+			depth++;
 			if (node.getBookId() < x.getBookId()) {
 				x = x.left;
 			} else {
 				x = x.right;
 			}
 		}
+		if(this.metrics != null) {
+			this.metrics.insertDepth(depth);
+		}
 
 		node.parent = y;
 		if (y == null) {
@@ -234,38 +510,301 @@ public class RedBlackTree {
 		} else {
 			y.right = node;
 		}
+		this.touch(node);
 		
+		//the first book becomes the black root directly, this is not counted as a color flip
 		if (node.parent == null) {
 			node.color = 0;
-			dictionary.put(node.getBookId(), 0);
+		} else if (node.parent.parent != null) {
+			//fix the violations if there is any
+			ficViolationOfInsert(node);
+		}
+		this.refreshTouched();
+	}
+	
+	//This method changes the color of a book and updates the color flip count, a book counts as flipped when its color
+	//at the end of the insert or delete differs from its color at the start, so flipping it back within one operation is not counted
+	private void recolor(Book book, int color) {
+		if(this.metrics != null && book.color != color) {
+			this.metrics.recolor();
+		}
+		this.colorFlipCount += book.setColor(color, this.operation);
+	}
+
+	/**
+	 * Adds a batch of books to the library by rebuilding the whole tree bottom-up in linear time.
+	 *
+	 * The batch is sorted by book ID if it is not sorted already, then merged with the books of the
+	 * library in one pass over the tree in key order. From the merged sequence a balanced tree is
+	 * built by always taking the middle book as the root of a subtree. Every book on the deepest level
+	 * of an incomplete tree is colored red and all the others black, which gives every path the same
+	 * number of black books. On an empty library this is a plain bulk load. Color changes of the
+	 * books are counted like for a single insert, with the new books starting as red.
+	 *
+	 * The rebuild costs about n steps for a library of n books however small the batch is, so a batch
+	 * of less than a quarter of the library is inserted book by book instead, where the LoadBenchmark
+	 * shows the inserts to be faster. The books and the color flip count are then the same as with
+	 * {@link #insertBook(int, String, String, String)} for every new book in order of book ID.
+	 *
+	 * @param books New books created with {@link #getBook(int, String, String, String)}.
+	 * @return      The number of books added, books whose ID is already in the library are skipped.
+	 * @throws IllegalArgumentException If the batch contains the same book ID twice.
+	 */
+	public int loadBooks(List<Book> books) {
+		List<Book> batch = new ArrayList<>(books);
+		for(int i = 1; i < batch.size(); i++) {
+			if(batch.get(i - 1).getBookId() > batch.get(i).getBookId()) {
+				batch.sort(Comparator.comparingInt(Book::getBookId));
+				break;
+			}
+		}
+		for(int i = 1; i < batch.size(); i++) {
+			if(batch.get(i - 1).getBookId() == batch.get(i).getBookId()) {
+				throw new IllegalArgumentException("Book " + batch.get(i).getBookId() + " appears twice in the batch");
+			}
+		}
+		if((long) batch.size() * REBUILD_FRACTION < this.bookCount) {
+			int added = 0;
+			for(Book book : batch) {
+				if(this.getBookFromLibrary(this.root, book.getBookId()) == null) {
+					this.insertNode(book);
+					added++;
+				}
+			}
+			return added;
+		}
+		//merge the books of the library, taken in order of book id, with the batch
+		List<Book> merged = new ArrayList<>(batch.size());
+		Book current = this.root;
+		while(current != null && current.left != null) {
+			current = current.left;
+		}
+		int added = 0;
+		int i = 0;
+		while(current != null || i < batch.size()) {
+			if(i == batch.size() || (current != null && current.getBookId() <= batch.get(i).getBookId())) {
+				if(i < batch.size() && current.getBookId() == batch.get(i).getBookId()) {
+					i++;
+				}
+				merged.add(current);
+				current = getSuccessor(current);
+			} else {
+				this.index(batch.get(i));
+				merged.add(batch.get(i++));
+				added++;
+			}
+		}
+		this.rebuild(merged);
+		return added;
+	}
+
+	//replaces the tree by a balanced tree of the given books, which must be sorted by book id
+	private void rebuild(List<Book> books) {
+		this.operation++;
+		this.bookCount = books.size();
+		//the middle split puts every book at most floor(log2(n)) levels below the root
+		int redDepth = books.size() > 1 ? 31 - Integer.numberOfLeadingZeros(books.size()) : -1;
+		this.root = this.buildBalanced(books, 0, books.size() - 1, 0, redDepth, null);
+		this.refreshTouched();
+	}
+
+	/**
+	 * Applies a run of InsertBook and DeleteBook commands as one bulk change of the library.
+	 *
+	 * A batch of less than a quarter of the library is applied command by command, exactly like
+	 * gatorLibrary applies them, since the rebuild below costs about n steps for a library of n books
+	 * however small the batch is. A larger batch is first checked in its order against a map of pending
+	 * changes, then the same messages as deleteBookFromLibrary are written for every DeleteBook, each
+	 * followed by the empty line gatorLibrary puts after it. The books of the batch are found in one walk
+	 * over the library in order of book ID instead of a search per command, the net changes are merged
+	 * with the books of the library and the tree is rebuilt like in {@link #loadBooks(List)}. An InsertBook
+	 * of a book ID that is in the library at that point adds a second book with that ID, like
+	 * {@link #insertBook(int, String, String, String)}, a batch with such an insert or with a book ID the
+	 * library already holds twice is therefore applied command by command as well.
+	 *
+	 * The books, reservations and messages are always the same as when the commands are applied one by
+	 * one. The color flip count is only the same for a batch applied command by command: after a rebuild
+	 * it counts the books whose color differs after the rebuild, while applying the commands one by one
+	 * counts the flips of every single fix-up, and the shape of the tree differs as well. gatorLibrary
+	 * therefore applies its commands one by one, since ColorFlipCount() has to print the count of the
+	 * single fix-ups, and large batches are meant for bulk changes of a library whose color flip count is
+	 * not reported, like importing a catalogue.
+	 *
+	 * @param commands The InsertBook and DeleteBook commands in the order they were read.
+	 * @param access   The output stream to write the messages of the DeleteBook commands.
+	 * @param utility  An instance of the Utility class for writing the messages.
+	 * @throws IOException If an I/O error occurs during writing to the output stream.
+	 * @throws IllegalArgumentException If the batch contains another kind of command, the library is then unchanged.
+	 */
+	public void applyBatch(List<Command> commands, OutputStream access, Utility utility) throws IOException {
+		for(Command command : commands) {
+			if(command.getType() != Command.Type.INSERT_BOOK && command.getType() != Command.Type.DELETE_BOOK) {
+				throw new IllegalArgumentException("Only InsertBook and DeleteBook can be batched, not " + command.getType());
+			}
+		}
+		if((long) commands.size() * REBUILD_FRACTION < this.bookCount) {
+			this.applyOneByOne(commands, access, utility);
 			return;
 		}
-		dictionary.put(node.getBookId(), 1);
-		if (node.parent.parent == null) {
+		//the distinct book ids of the batch in ascending order
+		int[] bookIds = new int[commands.size()];
+		for(int i = 0; i < bookIds.length; i++) {
+			bookIds[i] = commands.get(i).getBookId();
+		}
+		Arrays.sort(bookIds);
+		int distinct = 0;
+		for(int i = 0; i < bookIds.length; i++) {
+			if(i == 0 || bookIds[i] != bookIds[i - 1]) {
+				bookIds[distinct++] = bookIds[i];
+			}
+		}
+		bookIds = Arrays.copyOf(bookIds, distinct);
+		//one walk over the library in order of book id takes its books and finds those of the batch,
+		//which is much faster than searching the tree for every command
+		List<Book> books = new ArrayList<>(this.bookCount);
+		Book[] existing = new Book[distinct];
+		Book current = this.root;
+		while(current != null && current.left != null) {
+			current = current.left;
+		}
+		int i = 0;
+		for(; current != null; current = getSuccessor(current)) {
+			while(i < distinct && bookIds[i] < current.getBookId()) {
+				i++;
+			}
+			if(i < distinct && bookIds[i] == current.getBookId()) {
+				if(existing[i] != null) {
+					//a book id of the batch is in the library twice, only single commands know which of them to delete
+					this.applyOneByOne(commands, access, utility);
+					return;
+				}
+				existing[i] = current;
+			}
+			books.add(current);
+		}
+		//the book each id has after the commands so far, null if it is not in the library
+		Book[] pending = existing.clone();
+		//the book removed by each DeleteBook in order, null if it was not found
+		List<Book> deleted = new ArrayList<>();
+		for(Command command : commands) {
+			int index = Arrays.binarySearch(bookIds, command.getBookId());
+			if(command.getType() == Command.Type.INSERT_BOOK) {
+				if(pending[index] != null) {
+					//insertBook adds a second book with the same id, which the merge below cannot hold
+					this.applyOneByOne(commands, access, utility);
+					return;
+				}
+				pending[index] = this.getBook(command.getBookId(), command.getBookName(), command.getAuthorName(), command.getAvailabilityStatus());
+			} else {
+				deleted.add(pending[index]);
+				pending[index] = null;
+			}
+		}
+		int next = 0;
+		for(Command command : commands) {
+			if(command.getType() != Command.Type.DELETE_BOOK) {
+				continue;
+			}
+			Book book = deleted.get(next++);
+			if(book == null) {
+				utility.write("Book "+command.getBookId()+ " not found in the Library", access);
+			} else {
+				this.writeDeletedMessage(book, access, utility);
+			}
+			utility.addNewLine(access);
+		}
+		boolean changed = false;
+		for(i = 0; i < distinct && !changed; i++) {
+			changed = pending[i] != existing[i];
+		}
+		if(!changed) {
 			return;
 		}
-		//fix the violations if there is any
-		ficViolationOfInsert(node);
-		//update the color flip count
-		this.updateColorFlipCount();
-	}
-	
-	//This method will update the color flip count once the delete or insert operation is performed, here checking only the nodes which might have changes the color
-	public void updateColorFlipCount() {
-		if(!this.colorChanged.isEmpty()) {
-			for(Integer key : this.colorChanged.keySet()) {
-				if(this.colorChanged.get(key) != this.dictionary.get(key)) {
-					this.colorFlipCount++;
-					this.dictionary.put(key, this.colorChanged.get(key));
+		//merge the books of the library with the pending changes, both in order of book id
+		List<Book> merged = new ArrayList<>(books.size() + distinct);
+		int j = 0;
+		i = 0;
+		while(j < books.size() || i < distinct) {
+			if(i == distinct || (j < books.size() && books.get(j).getBookId() < bookIds[i])) {
+				merged.add(books.get(j++));
+				continue;
+			}
+			//a book id of the batch, the next book of the library has it if it was in the library before
+			if(existing[i] != null) {
+				j++;
+			}
+			if(existing[i] != pending[i]) {
+				if(existing[i] != null) {
+					this.unindex(existing[i]);
+				}
+				if(pending[i] != null) {
+					this.index(pending[i]);
 				}
 			}
-			this.colorChanged.clear();
+			if(pending[i] != null) {
+				merged.add(pending[i]);
+			}
+			i++;
 		}
+		this.rebuild(merged);
+	}
+
+	//applies the commands of a batch like gatorLibrary, with the empty line after every DeleteBook
+	private void applyOneByOne(List<Command> commands, OutputStream access, Utility utility) throws IOException {
+		for(Command command : commands) {
+			if(command.getType() == Command.Type.INSERT_BOOK) {
+				this.insertBook(command.getBookId(), command.getBookName(), command.getAuthorName(), command.getAvailabilityStatus());
+			} else {
+				this.deleteBookFromLibrary(command.getBookId(), access, utility);
+				utility.addNewLine(access);
+			}
+		}
+	}
+
+	//builds a balanced subtree from the books between low and high, the recursion is only log2(n) deep
+	private Book buildBalanced(List<Book> books, int low, int high, int depth, int redDepth, Book parent) {
+		if(low > high) {
+			return null;
+		}
+		int mid = (low + high) >>> 1;
+		Book book = books.get(mid);
+		book.parent = parent;
+		book.left = this.buildBalanced(books, low, mid - 1, depth + 1, redDepth, book);
+		book.right = this.buildBalanced(books, mid + 1, high, depth + 1, redDepth, book);
+		this.recolor(book, depth == redDepth ? 1 : 0);
+		if(this.subtreeTracking) {
+			refresh(book);
+		}
+		return book;
 	}
 
 	public Book getRoot() {
 		return this.root;
 	}
+
+	//returns the number of books in the library
+	public int getBookCount() {
+		return this.bookCount;
+	}
+
+	//replaces the tree by an already linked and colored tree, used when a library is loaded from a snapshot
+	void restore(Book root, int bookCount, int colorFlipCount) {
+		this.root = root;
+		this.bookCount = bookCount;
+		this.colorFlipCount = colorFlipCount;
+		if(this.subtreeTracking) {
+			this.refreshAll();
+		}
+		this.refreshTouched();
+		if(this.authorIndex != null) {
+			this.setSecondaryIndexes(false);
+			this.setSecondaryIndexes(true);
+		}
+		if(this.patronIndex != null) {
+			this.setPatronIndex(false);
+			this.setPatronIndex(true);
+		}
+	}
 	
 	/**
 	 * Processes a book return request by a patron and updates the library records accordingly.
@@ -292,19 +831,27 @@ public class RedBlackTree {
 		}
 		utility.write("Book " + bookId + " Returned by Patron "+ patronId, access);
 		//once the book is returned by the patron, assign the book to the patron with highest priority in the reservation list
-		List<Reservation> reservationHeap = book.getReservationHeap();
+		ReservationHeap reservationHeap = book.getReservationHeap();
 		if(reservationHeap != null && !reservationHeap.isEmpty()) {
-			int newBorrower = reservationHeap.get(0).getPatronId();
+			//removing the patron from the reservation heap also restores the order of the heap
+			int newBorrower = reservationHeap.poll();
+			if(this.metrics != null) {
+				this.metrics.reservationQueueDepth(reservationHeap.size());
+			}
+			if(this.patronIndex != null) {
+				this.patronIndex.removeLoan(patronId, bookId);
+				this.patronIndex.removeReservation(newBorrower, bookId);
+				this.patronIndex.addLoan(newBorrower, bookId);
+			}
 			book.setBorrowedBy(newBorrower);
 			utility.addNewLine(access);
 			utility.write("Book " + bookId + " Allotted to Patron "+ newBorrower, access);
-			reservationHeap.set(0, reservationHeap.get(reservationHeap.size()-1));
-			reservationHeap.remove(reservationHeap.size()-1);
-			//once the book is assigned to the patron from the reservation list, fix the heap to maintain the order of reservation heap
-			heapfy(reservationHeap, reservationHeap.size(), 0);
 		} else {
 			//if reservation list is empty then set the availability status of the book to Yes
 			book.setAvailabilityStatus("Yes");
+			if(this.patronIndex != null) {
+				this.patronIndex.removeLoan(patronId, bookId);
+			}
 		}	
 	}
 	
@@ -336,6 +883,9 @@ public class RedBlackTree {
 		if(book.getAvailabilityStatus().toLowerCase().equals("yes")) {
 			book.setBorrowedBy(patronId);
 			book.setAvailabilityStatus("No");
+			if(this.patronIndex != null) {
+				this.patronIndex.addLoan(patronId, bookId);
+			}
 			utility.write("Book " + bookId + " Borrowed by Patron " + patronId, access);
 			return;
 		}
@@ -347,185 +897,504 @@ public class RedBlackTree {
 		}
 		
 		//if patron is already in the reservation list
-		List<Reservation> reservationHeap = book.getReservationHeap();
-		if(utility.getPatronIds(reservationHeap).contains(patronId)) {
+		ReservationHeap reservationHeap = book.getReservationHeap();
+		if(reservationHeap.contains(patronId)) {
 			utility.write("Book " + bookId + " already Reserved by Patron " + patronId, access);
 			return;
 		}
 		
-		//only 20 patrons can request particular book
-		if(reservationHeap.size() >= 20) {
+		//only a limited number of patrons can request particular book, 20 unless configured otherwise for the library or the book
+		int limit = book.getReservationLimit() > 0 ? book.getReservationLimit() : this.reservationLimit;
+		if(reservationHeap.size() >= limit) {
 			utility.write("Reservations for book " + bookId + " is full", access);
 			return;
 		}
-		//create the reservation for the patron
-		Reservation reservation = new Reservation(patronId, patronPriority, utility.getTimestampForReservation());
-		//insert the patron into reservation heap
-		List<Reservation> reverations = this.insertIntoReservationHeap(reservation, reservationHeap);
-		book.setReservationHeap(reverations);
+		//insert the patron into reservation heap with a unique time stamp for the reservation
+		reservationHeap.insert(patronId, patronPriority, utility.getTimestampForReservation());
+		if(this.metrics != null) {
+			this.metrics.reservationQueueDepth(reservationHeap.size());
+		}
+		if(this.patronIndex != null) {
+			this.patronIndex.addReservation(patronId, bookId);
+		}
 		utility.write("Book " + bookId + " Reserved by Patron " + patronId, access);
 	} 
 	
 	/**
-	 * Inserts a reservation into a min-heap of reservations and maintains the min-heap property.
+	 * Finds the closest books to a given book ID in the library and prints the details.
 	 *
-	 * This method adds the specified reservation to the end of the reservation heap and
-	 * ensures that the min-heap property is maintained by comparing the reservation's
-	 * priority and time of reservation with its parent. If necessary, it swaps elements
-	 * and continues the process until the heap property is satisfied.
+	 * If the book ID exists, only that book is printed. Otherwise the greatest book below and the
+	 * least book above the ID are looked up with {@link #floor(int)} and {@link #higher(int)}; the
+	 * nearer one is printed, or both in order of book ID when they are at the same distance.
+	 * Nothing is printed when the library is empty.
 	 *
-	 * @param reservation      The reservation to be inserted into the heap.
-	 * @param reservationHeap  The list representing the min-heap of reservations.
-	 * @return                 The updated reservation heap after inserting the new reservation.
+	 * @param bookId   The ID of the target book.
+	 * @param utility  An instance of the Utility class for book printing.
+	 * @param access   The output stream to print the book details.
+	 * @throws IOException If an I/O error occurs during printing.
 	 */
-    public List<Reservation> insertIntoReservationHeap(Reservation reservation, List<Reservation> reservationHeap) {
-    	reservationHeap.add(reservation);
-        int currentIndex = reservationHeap.size() - 1;
-        while (currentIndex > 0) {
-           int parentIndex = (currentIndex - 1) / 2;
-           if (compare(reservation, reservationHeap.get(parentIndex)) >= 0) {
-                break;
-           }
-           reservationHeap.set(currentIndex, reservationHeap.get(parentIndex));
-           reservationHeap.set(parentIndex, reservation);
-           currentIndex = parentIndex;
-        }
-        return reservationHeap;
-    }
-    
-    //compare the two patrons based on priority and if priority is same then compare the time at which reservation made for patrons
-	private int compare(Reservation child, Reservation parent) {
-        if (child.getPriorityNumber() < parent.getPriorityNumber()) {
-            return -1;
-        } else if (child.getPriorityNumber() > parent.getPriorityNumber()) {
-            return 1;
-        } else {
-            return Long.compare(child.getTimeOfReservation(), parent.getTimeOfReservation());
-        }
-    }
+	public void findClosestBooks(int bookId, Utility utility, OutputStream access) throws IOException {
+		Book below = this.floor(bookId);
+		//if there is a exact match then will print the book details
+		if(below != null && below.getBookId() == bookId) {
+			utility.writeTheBookData(below, access);
+			return;
+		}
+		this.writeClosestBooks(bookId, below, this.higher(bookId), utility, access);
+	}
+
+	//writes whichever of the two neighbours of a missing book id is closer, or both in order when they are at the same distance
+	public void writeClosestBooks(int bookId, Book below, Book above, Utility utility, OutputStream access) throws IOException {
+		if(below == null && above == null) {
+			return;
+		}
+		if(below == null || (above != null && above.getBookId() - bookId < bookId - below.getBookId())) {
+			utility.writeTheBookData(above, access);
+		} else if(above == null || bookId - below.getBookId() < above.getBookId() - bookId) {
+			utility.writeTheBookData(below, access);
+		} else {
+			//if there is two books closest then will print two books
+			utility.writeTheBookData(below, access);
+			utility.addNewLine(access);
+			utility.writeTheBookData(above, access);
+		}
+	}
+
+	//returns the book with the greatest book id less than or equal to the given id, or null if there is no such book
+	public Book floor(int bookId) {
+		Book result = null;
+		Book current = this.root;
+		while(current != null) {
+			if(current.getBookId() == bookId) {
+				return current;
+			}
+			if(current.getBookId() < bookId) {
+				result = current;
+				current = current.right;
+			} else {
+				current = current.left;
+			}
+		}
+		return result;
+	}
+
+	//returns the book with the least book id greater than or equal to the given id, or null if there is no such book
+	public Book ceiling(int bookId) {
+		Book result = null;
+		Book current = this.root;
+		while(current != null) {
+			if(current.getBookId() == bookId) {
+				return current;
+			}
+			if(current.getBookId() > bookId) {
+				result = current;
+				current = current.left;
+			} else {
+				current = current.right;
+			}
+		}
+		return result;
+	}
+
+	//returns the book with the greatest book id strictly less than the given id, or null if there is no such book
+	public Book lower(int bookId) {
+		Book result = null;
+		Book current = this.root;
+		while(current != null) {
+			if(current.getBookId() < bookId) {
+				result = current;
+				current = current.right;
+			} else {
+				current = current.left;
+			}
+		}
+		return result;
+	}
+
+	//returns the book with the least book id strictly greater than the given id, or null if there is no such book
+	public Book higher(int bookId) {
+		Book result = null;
+		Book current = this.root;
+		while(current != null) {
+			if(current.getBookId() > bookId) {
+				result = current;
+				current = current.left;
+			} else {
+				current = current.right;
+			}
+		}
+		return result;
+	}
 	
+	//this method wil print the books in the range, the cursor already gives the books in order of book id
+	public void printBooks(int start, int end, Utility utility, OutputStream access) throws IOException {
+		BookRangeCursor cursor = this.getBooksInRange(start, end);
+		if(!cursor.hasNext()) {
+			utility.write("No books found in library in the range of " +start +" to " + end, access);
+			return;
+		}
+		while(cursor.hasNext()) {
+			utility.writeTheBookData(cursor.next(), access);
+			if(cursor.hasNext()) {
+				utility.addNewLine(access);
+			}
+		}
+	}
+
 	/**
-	 * Maintains the min-heap property in a list of reservations starting from a specified index.
+	 * Returns the number of books whose ID is less than or equal to the given ID.
 	 *
-	 * This private helper method is crucial for heap operations, ensuring that the min-heap
-	 * property is preserved in a list of reservations. The method compares the priority and
-	 * time of reservation of the current node with its left and right child nodes, identifying
-	 * the smallest among the three. If the smallest node is not the current node, it swaps the
-	 * elements and recursively calls itself on the affected child.
+	 * For a book of the library this is its position in order of book ID, counted from 1, so
+	 * select(rank(bookId)) returns the book again. The search adds up the sizes of the left subtrees
+	 * it passes on the way down, which costs O(log n). It only reads the tree, so subtree tracking has
+	 * to be turned on with {@link #setSubtreeTracking(boolean)} before, while no other thread uses the
+	 * library.
 	 *
-	 * @param reservationHeap  The list representing the min-heap of reservations.
-	 * @param length           The current size of the heap.
-	 * @param i                The index of the current node in the heap.
+	 * @param bookId The book ID, which does not have to be in the library.
+	 * @return       The number of books with an ID up to bookId.
+	 * @throws IllegalStateException If subtree tracking is off.
 	 */
-	private void heapfy(List<Reservation> reservationHeap, int length, int i) {
-		int smallest = i;
-		//to get the left child index
-		int left = (2*i)+1;
-		//to get the right child index
-		int right = (2*i)+2;
-		if(left < length) {
-			if((reservationHeap.get(left).getPriorityNumber() == reservationHeap.get(smallest).getPriorityNumber()
-					&& reservationHeap.get(left).getTimeOfReservation() < reservationHeap.get(smallest).getTimeOfReservation())
-					|| reservationHeap.get(left).getPriorityNumber() < reservationHeap.get(smallest).getPriorityNumber()) {
-				smallest = left;
+	public int rank(int bookId) {
+		this.requireSubtreeTracking();
+		int rank = 0;
+		Book current = this.root;
+		while(current != null) {
+			if(bookId < current.getBookId()) {
+				current = current.left;
+			} else {
+				rank += size(current.left) + 1;
+				if(bookId == current.getBookId()) {
+					break;
+				}
+				current = current.right;
 			}
 		}
-		
-		if(right < length) {
-			if((reservationHeap.get(right).getPriorityNumber() == reservationHeap.get(smallest).getPriorityNumber()
-					&& reservationHeap.get(right).getTimeOfReservation() < reservationHeap.get(smallest).getTimeOfReservation()) 
-					|| reservationHeap.get(right).getPriorityNumber() < reservationHeap.get(smallest).getPriorityNumber()) {
-				smallest = right;
-			} 
+		return rank;
+	}
+
+	/**
+	 * Returns the book at the given position in order of book ID, in O(log n).
+	 *
+	 * The search compares the position with the size of the left subtree at every book on the
+	 * way down. Like {@link #rank(int)} it needs subtree tracking to be turned on.
+	 *
+	 * @param position The position of the book, 1 for the book with the smallest ID.
+	 * @return         The book at that position, or null if the library has fewer books.
+	 * @throws IllegalStateException If subtree tracking is off.
+	 */
+	public Book select(int position) {
+		this.requireSubtreeTracking();
+		if(position < 1 || position > this.bookCount) {
+			return null;
+		}
+		Book current = this.root;
+		while(current != null) {
+			int leftSize = size(current.left);
+			if(position <= leftSize) {
+				current = current.left;
+			} else if(position == leftSize + 1) {
+				return current;
+			} else {
+				position -= leftSize + 1;
+				current = current.right;
+			}
 		}
-		//if one of the child is smaller than parent then swap and do it recursively
-		if(smallest != i) {
-			Reservation temp = reservationHeap.get(smallest);
-			reservationHeap.set(smallest, reservationHeap.get(i));
-			reservationHeap.set(i, temp);
-			heapfy(reservationHeap, length, smallest);
+		return null;
+	}
+
+	//returns the number of books with an ID from start to end inclusive in O(log n), without visiting them, needs subtree tracking
+	public int countInRange(int start, int end) {
+		if(start > end) {
+			return 0;
 		}
+		return this.rank(end) - (start == Integer.MIN_VALUE ? 0 : this.rank(start - 1));
 	}
-	
+
+	public boolean hasSecondaryIndexes() {
+		return this.authorIndex != null;
+	}
+
 	/**
-	 * Finds the closest books to a given book ID in a binary tree and prints the details.
+	 * Starts or stops keeping indexes of the books by author and by title.
 	 *
-	 * This method navigates a binary tree of books to find the closest books to the provided
-	 * book ID. It populates a TreeMap with the book details and prints the results using the
-	 * provided Utility and OutputStream instances.
+	 * Starting indexes every book of the library in one in-order walk. After that inserts, deletes and
+	 * batches add and remove the IDs of their books. The indexes hold book IDs, so when a delete
+	 * copies the predecessor of a book into its node nothing has to change in them.
 	 *
-	 * @param bookId   The ID of the target book.
-	 * @param utility  An instance of the Utility class for book printing.
-	 * @param access   The output stream to print the book details.
-	 * @throws IOException If an I/O error occurs during printing.
+	 * @param enabled True to keep the indexes.
 	 */
-	public void findClosestBooks(int bookId, Utility utility, OutputStream access) throws IOException {
-        Book currentNode = root;
-        int closest = root.getBookId();
-
-        while (currentNode != null) {
-            if (bookId == currentNode.getBookId()) {
-            	this.treeMap.clear();
-                this.treeMap.put(currentNode.getBookId() ,currentNode);
-                break;
-            }
-            //if there is a exact match then will print the book details
-            if (Math.abs(bookId - currentNode.getBookId()) < Math.abs(bookId - closest)) {
-                closest = currentNode.getBookId();
-                this.treeMap.clear(); 
-                this.treeMap.put(currentNode.getBookId(), currentNode);
-            } else if (Math.abs(bookId - currentNode.getBookId()) == Math.abs(bookId - closest)) {
-            	//if there is two books closest then will print two books
-            	this.treeMap.put(currentNode.getBookId() ,currentNode);
-            }
-
-            if (bookId < currentNode.getBookId()) {
-                currentNode = currentNode.left;
-            } else {
-                currentNode = currentNode.right;
-            }
-        }
-        this.printTheBooksInOrder(utility, access);
-    }
-	
-	
-	//this method will print the books into the file in order has we are using tree map
-	public void printTheBooksInOrder(Utility utility, OutputStream access) throws IOException {
-		if(this.treeMap != null && !this.treeMap.isEmpty()) {
-			int count = 0;
-			for(Entry<Integer, Book> entry : this.treeMap.entrySet()) {
-				count++;
-				utility.writeTheBookData(entry.getValue(), access);
-				if(treeMap.size() != count) {
-					utility.addNewLine(access);
-				}
-			}
+	public void setSecondaryIndexes(boolean enabled) {
+		if(!enabled) {
+			this.authorIndex = null;
+			this.titleIndex = null;
+			return;
+		}
+		if(this.authorIndex != null) {
+			return;
+		}
+		this.authorIndex = new StringIndex();
+		this.titleIndex = new StringIndex();
+		Book current = this.root;
+		while(current != null && current.left != null) {
+			current = current.left;
+		}
+		for(; current != null; current = getSuccessor(current)) {
+			this.index(current);
 		}
-		//once the data is written to the file then clear the map
-		this.treeMap.clear();
 	}
-	
-	//this method wil print the books in the range
-	public void printBooks(int start, int end, Utility utility, OutputStream access) throws IOException {
-		this.getBooksInRange(this.root, start, end);
-		if(this.treeMap.isEmpty() || this.treeMap == null) {
-			utility.write("No books found in library in the range of " +start +" to " + end, access);
+
+	public boolean hasPatronIndex() {
+		return this.patronIndex != null;
+	}
+
+	/**
+	 * Starts or stops keeping an index of the books every patron has borrowed or reserved.
+	 *
+	 * Starting indexes the loans and reservations of every book in one in-order walk. After that
+	 * borrows, returns, cancelled reservations, deletes and batches update the patrons they touch,
+	 * so looking up a patron no longer depends on the size of the library.
+	 *
+	 * @param enabled True to keep the index.
+	 */
+	public void setPatronIndex(boolean enabled) {
+		if(!enabled) {
+			this.patronIndex = null;
 			return;
 		}
-		this.printTheBooksInOrder(utility, access);
+		if(this.patronIndex != null) {
+			return;
+		}
+		this.patronIndex = new PatronIndex();
+		Book current = this.root;
+		while(current != null && current.left != null) {
+			current = current.left;
+		}
+		for(; current != null; current = getSuccessor(current)) {
+			this.indexPatrons(current);
+		}
 	}
-	
-	//this method will get the books in the the range x and y
-	public void getBooksInRange(Book book, int start, int end) {
+
+	//adds a book that joins the library to the indexes that are kept
+	private void index(Book book) {
+		if(this.authorIndex != null) {
+			this.authorIndex.add(book.getAuthorName(), book.getBookId());
+			this.titleIndex.add(book.getBookName(), book.getBookId());
+		}
+		if(this.patronIndex != null) {
+			this.indexPatrons(book);
+		}
+	}
+
+	//removes a book that leaves the library from the indexes that are kept, its loan and reservations go with it
+	private void unindex(Book book) {
+		if(this.authorIndex != null) {
+			this.authorIndex.remove(book.getAuthorName(), book.getBookId());
+			this.titleIndex.remove(book.getBookName(), book.getBookId());
+		}
+		if(this.patronIndex != null) {
+			if(isLent(book)) {
+				this.patronIndex.removeLoan(book.getBorrowedBy(), book.getBookId());
+			}
+			ReservationHeap reservationHeap = book.getReservationHeap();
+			for(int i = 0; reservationHeap != null && i < reservationHeap.size(); i++) {
+				this.patronIndex.removeReservation(reservationHeap.getPatronId(i), book.getBookId());
+			}
+		}
+	}
+
+	private void indexPatrons(Book book) {
+		if(isLent(book)) {
+			this.patronIndex.addLoan(book.getBorrowedBy(), book.getBookId());
+		}
+		ReservationHeap reservationHeap = book.getReservationHeap();
+		for(int i = 0; reservationHeap != null && i < reservationHeap.size(); i++) {
+			this.patronIndex.addReservation(reservationHeap.getPatronId(i), book.getBookId());
+		}
+	}
+
+	//a book is lent while it is not available, borrowed by 0 means nobody like in the output of a book
+	private static boolean isLent(Book book) {
+		return book.getBorrowedBy() != 0 && !book.getAvailabilityStatus().equalsIgnoreCase("yes");
+	}
+
+	/**
+	 * Writes the books a patron has borrowed and the books the patron has reserved.
+	 *
+	 * The books come from the patron index, so the cost depends only on the books of the patron and
+	 * not on the size of the library. It only reads the index, so the index has to be turned on with
+	 * {@link #setPatronIndex(boolean)} before, while no other thread uses the library.
+	 *
+	 * @param patronId The ID of the patron.
+	 * @param utility  An instance of the Utility class for writing the output.
+	 * @param access   The output stream to write the patron to.
+	 * @throws IOException If an I/O error occurs during writing to the output stream.
+	 * @throws IllegalStateException If the library keeps no patron index.
+	 */
+	public void printPatron(int patronId, Utility utility, OutputStream access) throws IOException {
+		this.requirePatronIndex();
+		utility.write("PatronID = " + patronId
+				+ "\nBorrowed = " + Arrays.toString(this.patronIndex.getLoans(patronId))
+				+ "\nReservations = " + Arrays.toString(this.patronIndex.getReservations(patronId)), access);
+	}
+
+	//the books the patron has borrowed in order of book id, needs the patron index
+	public int[] getLoans(int patronId) {
+		this.requirePatronIndex();
+		return this.patronIndex.getLoans(patronId);
+	}
+
+	//the books the patron waits for in order of book id, needs the patron index
+	public int[] getReservations(int patronId) {
+		this.requirePatronIndex();
+		return this.patronIndex.getReservations(patronId);
+	}
+
+	//the patron queries must not build the index, other threads may read the library at the same time
+	private void requirePatronIndex() {
+		if(this.patronIndex == null) {
+			throw new IllegalStateException("The library keeps no patron index");
+		}
+	}
+
+	/**
+	 * Cancels the reservation of a patron for a book.
+	 *
+	 * The reservation is taken out of the reservation heap of the book in O(log n) through the patron
+	 * positions of the heap, and out of the patron index if the library keeps one.
+	 *
+	 * @param patronId The ID of the patron whose reservation is cancelled.
+	 * @param bookId   The ID of the reserved book.
+	 * @param access   The output stream to write the result message.
+	 * @param utility  An instance of the Utility class for writing the message.
+	 * @throws IOException If an I/O error occurs during writing to the output stream.
+	 */
+	public void cancelReservation(int patronId, int bookId, OutputStream access, Utility utility) throws IOException {
+		Book book = this.getBookFromLibrary(this.root, bookId);
 		if(book == null) {
+			utility.write("Book " + bookId + " not found in the Library", access);
+			return;
+		}
+		if(!book.getReservationHeap().remove(patronId)) {
+			utility.write("Patron " + patronId + " has no reservation for book " + bookId, access);
+			return;
+		}
+		if(this.patronIndex != null) {
+			this.patronIndex.removeReservation(patronId, bookId);
+		}
+		if(this.metrics != null) {
+			this.metrics.reservationQueueDepth(book.getReservationHeap().size());
+		}
+		utility.write("Reservation made by Patron " + patronId + " for book " + bookId + " has been cancelled", access);
+	}
+
+	/**
+	 * Returns the books of an author in order of book ID.
+	 *
+	 * The lookup goes through the author index, so it costs O(log n) for the author and O(log n) for
+	 * every book found instead of a walk over the whole library. It only reads the indexes, so they
+	 * have to be turned on with {@link #setSecondaryIndexes(boolean)} before, while no other thread
+	 * uses the library.
+	 *
+	 * @param authorName The name of the author, or the start of it if prefix is true.
+	 * @param prefix     True to find the books of every author whose name starts with authorName.
+	 * @return           The books found, an empty list if there are none.
+	 * @throws IllegalStateException If the library keeps no secondary indexes.
+	 */
+	public List<Book> findByAuthor(String authorName, boolean prefix) {
+		this.requireSecondaryIndexes();
+		return this.booksWithIds(prefix ? this.authorIndex.findPrefix(authorName) : this.authorIndex.find(authorName));
+	}
+
+	//returns the books with the title, or whose title starts with it if prefix is true, in order of book id, needs the secondary indexes
+	public List<Book> findByTitle(String bookName, boolean prefix) {
+		this.requireSecondaryIndexes();
+		return this.booksWithIds(prefix ? this.titleIndex.findPrefix(bookName) : this.titleIndex.find(bookName));
+	}
+
+	//the lookups must not build the indexes, other threads may read the library at the same time
+	private void requireSecondaryIndexes() {
+		if(this.authorIndex == null) {
+			throw new IllegalStateException("The library keeps no secondary indexes");
+		}
+	}
+
+	private List<Book> booksWithIds(int[] bookIds) {
+		Arrays.sort(bookIds);
+		List<Book> books = new ArrayList<>(bookIds.length);
+		for(int bookId : bookIds) {
+			Book book = this.getBookFromLibrary(this.root, bookId);
+			if(book != null) {
+				books.add(book);
+			}
+		}
+		return books;
+	}
+
+	//writes the books of the author like printBooks, a name ending in '*' finds every author whose name starts with the rest
+	public void printBooksByAuthor(String authorName, Utility utility, OutputStream access) throws IOException {
+		boolean prefix = authorName.endsWith("*");
+		List<Book> books = this.findByAuthor(prefix ? authorName.substring(0, authorName.length() - 1) : authorName, prefix);
+		this.writeBooks(books, "No books found in library by author " + authorName, utility, access);
+	}
+
+	//writes the books with the title like printBooks, a title ending in '*' finds every title that starts with the rest
+	public void printBooksByTitle(String bookName, Utility utility, OutputStream access) throws IOException {
+		boolean prefix = bookName.endsWith("*");
+		List<Book> books = this.findByTitle(prefix ? bookName.substring(0, bookName.length() - 1) : bookName, prefix);
+		this.writeBooks(books, "No books found in library with title " + bookName, utility, access);
+	}
+
+	private void writeBooks(List<Book> books, String notFound, Utility utility, OutputStream access) throws IOException {
+		if(books.isEmpty()) {
+			utility.write(notFound, access);
 			return;
 		}
-		if(book.getBookId() >= start && book.getBookId() <= end) {
-			this.treeMap.put(book.getBookId(), book);
+		for(int i = 0; i < books.size(); i++) {
+			if(i > 0) {
+				utility.addNewLine(access);
+			}
+			utility.writeTheBookData(books.get(i), access);
+		}
+	}
+
+	//the order statistics need the subtree sizes, a query must not turn them on as other threads may read the tree at the same time
+	private void requireSubtreeTracking() {
+		if(!this.subtreeTracking) {
+			throw new IllegalStateException("Subtree tracking is off, the order statistics need the subtree sizes");
+		}
+	}
+
+	/**
+	 * Returns a cursor over the books in the range x and y, in increasing order of book ID.
+	 *
+	 * The search descends from the root only towards the first book whose ID is greater than or
+	 * equal to start, and the cursor then follows in-order successors until it passes end, so a
+	 * range scan costs O(log n + k) for k matching books and never recurses.
+	 *
+	 * @param start The lowest book ID of the range (inclusive).
+	 * @param end   The highest book ID of the range (inclusive).
+	 * @return      A cursor positioned at the first book of the range.
+	 */
+	public BookRangeCursor getBooksInRange(int start, int end) {
+		return new BookRangeCursor(this.ceiling(start), end);
+	}
+
+	//this method returns the book with the next higher book id, or null if the given book is the last one
+	public static Book getSuccessor(Book book) {
+		if(book.right != null) {
+			Book succ = book.right;
+			while(succ.left != null) {
+				succ = succ.left;
+			}
+			return succ;
+		}
+		Book child = book;
+		Book parent = book.parent;
+		while(parent != null && parent.right == child) {
+			child = parent;
+			parent = parent.parent;
 		}
-		getBooksInRange(book.left, start, end);
-		getBooksInRange(book.right, start, end);
-		return;
+		return parent;
 	}
 	
 	
@@ -537,23 +1406,21 @@ public class RedBlackTree {
 	 * cases, such as the node being a leaf, having one child, or having two children. If the node
 	 * being deleted is a leaf, it checks its color and fixes violations if needed. If the node has
 	 * one child, it handles the deletion accordingly. If the node has two children, it finds the
-	 * predecessor, copies its data, and recursively deletes the predecessor. The method ensures that
+	 * predecessor, copies its data, and deletes the predecessor instead, which has at most one child. The method ensures that
 	 * Red-Black Tree properties are maintained throughout the deletion process.
 	 *
 	 * @param book The book node to be deleted from the Red-Black Tree.
 	 */
 	public void deleteBook(Book book) {
-		if(this.root == book && book.left == null && book.right == null) {
-			this.root = null;
-			return;
-		}
-		
-		//if both children's are not null then find the predecessor and do the recursively
-		Book x = null;
+		//if both children's are not null then copy the predecessor into the book and remove the predecessor node instead
 		if(book.right != null && book.left != null) {
-			x = findPredcessor(book);
+			Book x = findPredcessor(book);
 			copyPredecessorData(x, book);
-			deleteBook(x);
+			book = x;
+		}
+
+		if(this.root == book && book.left == null && book.right == null) {
+			this.root = null;
 			return;
 		}
 		
@@ -568,6 +1435,7 @@ public class RedBlackTree {
 						book.parent.left = null;
 					}
 				}
+				this.touch(book.parent);
 				return;
 			} else {
 				//The node the leaf and it is black will call delete method and fix the violations if required
@@ -579,6 +1447,7 @@ public class RedBlackTree {
 						book.parent.left = null;
 					}
 				}
+				this.touch(book.parent);
 				return;
 			}
 		}
@@ -608,6 +1477,7 @@ public class RedBlackTree {
 						y.parent = null;
 					}
 				}
+				this.touch(book.parent);
 				return;
 			} else {
 				//the node which need to be deleted has one child and color is black we need to fix the violations because 
@@ -627,9 +1497,9 @@ public class RedBlackTree {
 						y.parent = null;
 					}
 				}
+				this.touch(book.parent);
 				if(y != null && y.color == 1) {
-					y.color =0;
-					this.colorChanged.put(y.getBookId(), 0);
+					this.recolor(y, 0);
 					return;
 				} else {
 					this.fixDelete(y);
@@ -647,7 +1517,9 @@ public class RedBlackTree {
 		book.setBookId(x.getBookId());
 		book.setBorrowedBy(x.getBorrowedBy());
 		book.setReservationHeap(x.getReservationHeap());
-		this.colorChanged.put(book.getBookId(), book.color);
+		book.setReservationLimit(x.getReservationLimit());
+		//the node now carries the predecessor's id, so its color is compared with the color the predecessor had
+		this.colorFlipCount += book.inheritColorHistory(x, this.operation);
 	}
 
 	//this method will find the predecessor of the node which being passed
@@ -660,347 +1532,323 @@ public class RedBlackTree {
 	}
 	
 	public void fixDelete(Book book) {
-		//if the book is null or if the book is same as root will return
-		if(book == null || book == this.root) {
-			return;
-		}
-		//check if the node has sibling and its color is black
-		if(getSibling(book).color == 0) {
-			//get red count of the sibling
-			if(getRedCount(getSibling(book)) > 0) {
-				if(getRedCount(getSibling(book)) == 1) {
-					if(book.parent.right == book) {
-						// Check if the left sibling of the current node (book) exists and is red
-						if(getSibling(book).left != null && getSibling(book).left.color == 1) {
-							// Check if the parent of the current node (book) is red
-							if(book.parent.color == 1) {
-								// Adjust colors for the red sibling and parent, then perform a left rotation
-								getSibling(book).color = 1;
-								this.colorChanged.put(getSibling(book).getBookId(), 1);
-								book.parent.color = 0;
-								this.colorChanged.put(book.parent.getBookId(), 0);
+		//the fix moves up the tree in a loop instead of calling itself again for the parent
+		while(true) {
+			//if the book is null or if the book is same as root will return
+			if(book == null || book == this.root) {
+				return;
+			}
+			//check if the node has sibling and its color is black
+			if(getSibling(book).color == 0) {
+				//get red count of the sibling
+				if(getRedCount(getSibling(book)) > 0) {
+					if(getRedCount(getSibling(book)) == 1) {
+						if(book.parent.right == book) {
+							// Check if the left sibling of the current node (book) exists and is red
+							if(getSibling(book).left != null && getSibling(book).left.color == 1) {
+								// Check if the parent of the current node (book) is red
+								if(book.parent.color == 1) {
+									// Adjust colors for the red sibling and parent, then perform a left rotation
+									this.recolor(getSibling(book), 1);
+									this.recolor(book.parent, 0);
+								}
+								 // Set the color of the left child of the sibling to black
+								this.recolor(getSibling(book).left, 0);
+								// Perform a left rotation on the left child of the sibling
+								rotateLeft(getSibling(book).left);
+								return;
+							} else {
+								// The left sibling's left child is not red
+							    // Check if the parent of the current node (book) is red
+								if(book.parent.color == 1) {
+									this.recolor(book.parent, 0);
+								} else {
+									this.recolor(getSibling(book).right, 0);
+								}
+								// Perform a left-right rotation on the right child of the sibling
+								this.rotateLeftRight(getSibling(book).right);
+								return;
 							}
-							 // Set the color of the left child of the sibling to black
-							getSibling(book).left.color = 0;
-							this.colorChanged.put(getSibling(book).left.getBookId(), 0);
-							// Perform a left rotation on the left child of the sibling
-							rotateLeft(getSibling(book).left);
-							return;
 						} else {
-							// The left sibling's left child is not red
-						    // Check if the parent of the current node (book) is red
-							if(book.parent.color == 1) {
-								book.parent.color = 0;
-								this.colorChanged.put(book.parent.getBookId(), 0);
+							// Check if the parent of the current node (book) is red
+							if(getSibling(book).right != null && getSibling(book).right.color == 1) {
+								// Adjust colors for the red sibling and parent, then perform a right rotation
+								if(book.parent.color == 1) {
+									this.recolor(getSibling(book), 1);
+									this.recolor(book.parent, 0);
+								}
+								this.recolor(getSibling(book).right, 0);
+								// Perform a right rotation on the right child of the sibling
+								this.rotateRight(getSibling(book).right);
+								return;
 							} else {
-								getSibling(book).right.color = 0;
-								this.colorChanged.put(getSibling(book).right.getBookId(), 0);
+								// The right sibling's right child is not red
+							    // Check if the parent of the current node (book) is red
+								if(book.parent.color == 1) {
+									this.recolor(book.parent, 0);
+								} else {
+									this.recolor(getSibling(book).left, 0);
+								}
+								// Perform a right-left rotation on the left child of the sibling
+								rotateRightLeft(getSibling(book).left);
+								return;
 							}
-							// Perform a left-right rotation on the right child of the sibling
-							this.rotateLeftRight(getSibling(book).right);
-							return;
 						}
 					} else {
-						// Check if the parent of the current node (book) is red
-						if(getSibling(book).right != null && getSibling(book).right.color == 1) {
-							// Adjust colors for the red sibling and parent, then perform a right rotation
+						// Check if the current node (book) is the right child of its parent
+						if(book.parent.right == book) {
+							 // Current node is the right child
+						    // Check if the parent of the current node is red
 							if(book.parent.color == 1) {
-								getSibling(book).color = 1;
-								this.colorChanged.put(getSibling(book).getBookId(), 1);
-								book.parent.color = 0;
-								this.colorChanged.put(book.parent.getBookId(), 0);
+								// Adjust the color of the parent to black
+								this.recolor(book.parent, 0);
+							} else {
+								this.recolor(getSibling(book).right, 0);
 							}
-							getSibling(book).right.color = 0;
-							this.colorChanged.put(getSibling(book).right.getBookId(), 0);
-							// Perform a right rotation on the right child of the sibling
-							this.rotateRight(getSibling(book).right);
+							// Perform a left-right rotation on the right child of the sibling
+							this.rotateLeftRight(getSibling(book).right);
 							return;
 						} else {
-							// The right sibling's right child is not red
-						    // Check if the parent of the current node (book) is red
+							// Current node is the left child
+						    // Check if the parent of the current node is red
 							if(book.parent.color == 1) {
-								book.parent.color = 0;
-								this.colorChanged.put(book.parent.getBookId(), 0);
+								this.recolor(book.parent, 0);
 							} else {
-								getSibling(book).left.color = 0;
-								this.colorChanged.put(getSibling(book).left.getBookId(), 0);
+								// Adjust the color of the left child of the sibling to black
+								this.recolor(getSibling(book).left, 0);
 							}
 							// Perform a right-left rotation on the left child of the sibling
-							rotateRightLeft(getSibling(book).left);
+							this.rotateRightLeft(getSibling(book).left);
 							return;
 						}
 					}
 				} else {
-					// Check if the current node (book) is the right child of its parent
-					if(book.parent.right == book) {
-						 // Current node is the right child
-					    // Check if the parent of the current node is red
-						if(book.parent.color == 1) {
-							// Adjust the color of the parent to black
-							book.parent.color =0;
-							this.colorChanged.put(book.parent.getBookId(), 0);
-						} else {
-							getSibling(book).right.color = 0;
-							this.colorChanged.put(getSibling(book).right.getBookId(), 0);
-						}
-						// Perform a left-right rotation on the right child of the sibling
-						this.rotateLeftRight(getSibling(book).right);
+					// Check if the parent of the current node (book) is red
+					if(book.parent.color == 1) {
+						// Parent is red
+					    // Adjust the color of the parent to black
+						this.recolor(book.parent, 0);
+						this.recolor(getSibling(book), 1);
 						return;
 					} else {
-						// Current node is the left child
-					    // Check if the parent of the current node is red
-						if(book.parent.color == 1) {
-							book.parent.color = 0;
-							this.colorChanged.put(book.parent.getBookId(), 0);
-						} else {
-							// Adjust the color of the left child of the sibling to black
-							getSibling(book).left.color = 0;
-							this.colorChanged.put(getSibling(book).left.getBookId(), 0);
-						}
-						// Perform a right-left rotation on the left child of the sibling
-						this.rotateRightLeft(getSibling(book).left);
-						return;
+						// Parent is black
+					    // Adjust the color of the sibling to red
+						this.recolor(getSibling(book), 1);
+						// The parent is now short of a black node, continue fixing the tree upwards from the parent
+						book = book.parent;
+						continue;
 					}
 				}
 			} else {
-				// Check if the parent of the current node (book) is red
-				if(book.parent.color == 1) {
-					// Parent is red
-				    // Adjust the color of the parent to black
-					book.parent.color = 0;
-					this.colorChanged.put(book.parent.getBookId(), 0);
-					getSibling(book).color = 1;
-					this.colorChanged.put(getSibling(book).getBookId(), 1);
-					return;
-				} else {
-					// Parent is black
-				    // Adjust the color of the sibling to red
-					getSibling(book).color = 1;
-					this.colorChanged.put(getSibling(book).getBookId(), 1);
-					// Recursively fix the tree upwards by calling the fixDelete method on the parent
-					this.fixDelete(book.parent);
-					return;
-				}
-			}
-		} else {
-			if(book.parent.right == book) {
-				// Check if the right child of the sibling is null or has no red nodes in its subtree
-				if(getSibling(book).right == null || (getSibling(book).right != null && this.getRedCount(getSibling(book).right) == 0)) {
-					 // Case 1: Right child of the sibling is null or has no red nodes
-				    // Set the color of the sibling to black
-					getSibling(book).color = 0;
-					this.colorChanged.put(getSibling(book).getBookId(), 0);
-					if(getSibling(book).right != null) {
-						// Set the color of the right child of the sibling to red
-						getSibling(book).right.color = 1;
-						this.colorChanged.put(getSibling(book).right.getBookId(), 1);
-					}
-					// Perform a left rotation on the left child of the sibling
-					this.rotateLeft(getSibling(book).left);
-					return;
-				} else if(getSibling(book).right != null && getRedCount(getSibling(book).right) == 1) {
-				    // Case 2: Right child of the sibling has exactly one red node
-					if(getSibling(book).right.left != null && getSibling(book).right.left.color == 1) {
-						// Right child's left child is red
-				        // Adjust the color of the right child's left child to black
-						getSibling(book).right.left.color = 0;
-						this.colorChanged.put(getSibling(book).right.left.getBookId(), 0);
-				        // Perform a left-right rotation on the right child of the sibling
-						this.rotateLeftRight(getSibling(book).right);
+				if(book.parent.right == book) {
+					// Check if the right child of the sibling is null or has no red nodes in its subtree
+					if(getSibling(book).right == null || (getSibling(book).right != null && this.getRedCount(getSibling(book).right) == 0)) {
+						 // Case 1: Right child of the sibling is null or has no red nodes
+					    // Set the color of the sibling to black
+						this.recolor(getSibling(book), 0);
+						if(getSibling(book).right != null) {
+							// Set the color of the right child of the sibling to red
+							this.recolor(getSibling(book).right, 1);
+						}
+						// Perform a left rotation on the left child of the sibling
+						this.rotateLeft(getSibling(book).left);
 						return;
-					} else {
-						// Right child's left child is not red
-				        // Adjust the color of the right child's right child to black
-						getSibling(book).right.right.color = 0;
-						this.colorChanged.put(getSibling(book).right.right.getBookId(), 0);
-				        // Perform a right rotation on the right child's right child of the sibling
+					} else if(getSibling(book).right != null && getRedCount(getSibling(book).right) == 1) {
+					    // Case 2: Right child of the sibling has exactly one red node
+						if(getSibling(book).right.left != null && getSibling(book).right.left.color == 1) {
+							// Right child's left child is red
+					        // Adjust the color of the right child's left child to black
+							this.recolor(getSibling(book).right.left, 0);
+					        // Perform a left-right rotation on the right child of the sibling
+							this.rotateLeftRight(getSibling(book).right);
+							return;
+						} else {
+							// Right child's left child is not red
+					        // Adjust the color of the right child's right child to black
+							this.recolor(getSibling(book).right.right, 0);
+					        // Perform a right rotation on the right child's right child of the sibling
+							this.rotateRight(getSibling(book).right.right);
+					        // Perform a left-right rotation on the right child of the sibling
+							this.rotateLeftRight(getSibling(book).right);
+					        // Update the tree structure to maintain the Red-Black Tree properties
+							Book grandParent = book.parent.parent;
+							Book grandChild = grandParent.left.left;
+							Book child = grandParent.left;
+							child.parent = grandChild;
+							child.left = grandChild.right;
+					        // Update the parent reference for the right child of grandChild
+							if(grandChild.right != null) {
+								grandChild.right.parent = child;
+							}
+							grandChild.right = child;
+							grandChild.parent = grandParent;
+					        // Update the parent's reference to grandChild
+							grandParent.left = grandChild;
+							this.touch(child);
+							return;
+						}
+					} else if(getSibling(book).right != null && getRedCount(getSibling(book).right) == 2) {
+						// Right child of the sibling has exactly two red nodes
+					    // Adjust the color of the right child's right child to black
+						this.recolor(getSibling(book).right.right, 0);
+					    // Perform a right rotation on the right child's right child of the sibling
 						this.rotateRight(getSibling(book).right.right);
-				        // Perform a left-right rotation on the right child of the sibling
+					    // Perform a left-right rotation on the right child of the sibling
 						this.rotateLeftRight(getSibling(book).right);
-				        // Update the tree structure to maintain the Red-Black Tree properties
+					    // Update the tree structure to maintain the Red-Black Tree properties
 						Book grandParent = book.parent.parent;
 						Book grandChild = grandParent.left.left;
 						Book child = grandParent.left;
 						child.parent = grandChild;
 						child.left = grandChild.right;
-				        // Update the parent reference for the right child of grandChild
+					    // Update the parent reference for the right child of grandChild
 						if(grandChild.right != null) {
 							grandChild.right.parent = child;
 						}
+					    // Update references for grandChild
 						grandChild.right = child;
 						grandChild.parent = grandParent;
-				        // Update the parent's reference to grandChild
 						grandParent.left = grandChild;
+						this.touch(child);
 						return;
+					} else {
+					    // Swap the colors of the parent and the sibling
+						int parentColor = book.parent.color;
+						this.recolor(book.parent, getSibling(book).color);
+						this.recolor(getSibling(book), parentColor);
+					    // Store a reference to the sibling for further operations
+						Book sibling = getSibling(book);
+					    // Update the root if the parent of the current node is the root
+						if(book.parent == this.root) {
+							this.root = sibling;
+						}
+					    // Adjust the parent's left child to be the right child of the sibling
+						book.parent.left = sibling.right;
+					    // Update the parent reference for the right child of the sibling
+						if(sibling.right != null) {
+							sibling.right.parent = book.parent;
+						}
+					    // Update parent and sibling references
+						sibling.parent = book.parent;
+						this.touch(book.parent);
+						book.parent = sibling;
+					    // Update the parent's reference to the sibling
+						if(sibling.parent != null) {
+							if(sibling.parent.right == book.parent) {
+								sibling.parent.right = sibling;
+							} else {
+								sibling.parent.left = sibling;
+							}
+						}
+					    // The node has a new sibling after the rotation, fix the tree again from the same node
+						continue;
 					}
-				} else if(getSibling(book).right != null && getRedCount(getSibling(book).right) == 2) {
-					// Right child of the sibling has exactly two red nodes
-				    // Adjust the color of the right child's right child to black
-					getSibling(book).right.right.color = 0;
-					this.colorChanged.put(getSibling(book).right.right.getBookId(), 0);
-				    // Perform a right rotation on the right child's right child of the sibling
-					this.rotateRight(getSibling(book).right.right);
-				    // Perform a left-right rotation on the right child of the sibling
-					this.rotateLeftRight(getSibling(book).right);
-				    // Update the tree structure to maintain the Red-Black Tree properties
-					Book grandParent = book.parent.parent;
-					Book grandChild = grandParent.left.left;
-					Book child = grandParent.left;
-					child.parent = grandChild;
-					child.left = grandChild.right;
-				    // Update the parent reference for the right child of grandChild
-					if(grandChild.right != null) {
-						grandChild.right.parent = child;
-					}
-				    // Update references for grandChild
-					grandChild.right = child;
-					grandChild.parent = grandParent;
-					grandParent.left = grandChild;
-					return;
 				} else {
-				    // Swap the colors of the parent and the sibling
-					int parentColor = book.parent.color;
-					book.parent.color = getSibling(book).color;
-					this.colorChanged.put(book.parent.getBookId(), getSibling(book).color);
-					getSibling(book).color = parentColor;
-					this.colorChanged.put(getSibling(book).getBookId(), parentColor);
-				    // Store a reference to the sibling for further operations
-					Book sibling = getSibling(book);
-				    // Update the root if the parent of the current node is the root
-					if(book.parent == this.root) {
-						this.root = sibling;
-					}
-				    // Adjust the parent's left child to be the right child of the sibling
-					book.parent.left = sibling.right;
-				    // Update the parent reference for the right child of the sibling
-					if(sibling.right != null) {
-						sibling.right.parent = book.parent;
-					}
-				    // Update parent and sibling references
-					sibling.parent = book.parent;
-					book.parent = sibling;
-				    // Update the parent's reference to the sibling
-					if(sibling.parent != null) {
-						if(sibling.parent.right == book.parent) {
-							sibling.parent.right = sibling;
+					// Check if the left child of the sibling is null or has no red nodes in its subtree
+					if (getSibling(book).left == null || ( getSibling(book).left != null && this.getRedCount(getSibling(book).left) == 0)) {
+						// Left child of the sibling is null or has no red nodes
+					    // Set the color of the sibling to black
+						 this.recolor(getSibling(book), 0);
+						 // Check if the left child of the sibling is not null
+						 if(getSibling(book).left != null) {
+						     // Set the color of the left child of the sibling to red
+							 this.recolor(getSibling(book).left, 1);
+						 }
+						  // Perform a right rotation on the right child of the sibling
+						 this.rotateRight(getSibling(book).right);
+						 return;
+					 
+					} else if (getSibling(book).left != null && this.getRedCount(getSibling(book).left) == 1) {
+					    // Left child of the sibling has exactly one red node
+						if(getSibling(book).left.right != null && getSibling(book).left.right.color == 1) {
+							// Left child's right child is red
+					        // Adjust the color of the left child's right child to black
+							this.recolor(getSibling(book).left.right, 0);
+					        // Perform a right-left rotation on the left child of the sibling
+							this.rotateRightLeft(getSibling(book).left);
+							return;
 						} else {
-							sibling.parent.left = sibling;
+							// Left child's right child is not red
+					        // Adjust the color of the left child's left child to black
+							this.recolor(getSibling(book).left.left, 0);
+					        // Perform a left rotation on the left child's left child of the sibling
+							this.rotateLeft(getSibling(book).left.left);
+					        // Perform a right-left rotation on the left child of the sibling
+							this.rotateRightLeft(getSibling(book).left);
+					        // Update the tree structure to maintain the Red-Black Tree properties
+							Book grandParent = book.parent.parent;
+							Book grandChild = grandParent.right.right;
+							Book child = grandParent.right;
+							child.parent = grandChild;
+							child.right = grandChild.left;
+					        // Update the parent reference for the left child of grandChild
+							if(grandChild.left != null) {
+								grandChild.left.parent = child;
+							}
+							grandChild.left = child;
+							grandChild.parent = grandParent;
+					        // Update the parent's reference to grandChild
+							grandParent.right = grandChild;
+							this.touch(child);
+				            return;
 						}
-					}
-				    // Recursively fix the tree structure upwards
-					this.fixDelete(book);
-					return;
-				}
-			} else {
-				// Check if the left child of the sibling is null or has no red nodes in its subtree
-				if (getSibling(book).left == null || ( getSibling(book).left != null && this.getRedCount(getSibling(book).left) == 0)) {
-					// Left child of the sibling is null or has no red nodes
-				    // Set the color of the sibling to black
-					 getSibling(book).color = 0;
-					 this.colorChanged.put(getSibling(book).getBookId(), 0);
-					 // Check if the left child of the sibling is not null
-					 if(getSibling(book).left != null) {
-					     // Set the color of the left child of the sibling to red
-						 getSibling(book).left.color = 1;
-						 this.colorChanged.put(getSibling(book).left.getBookId(), 1);
-					 }
-					  // Perform a right rotation on the right child of the sibling
-					 this.rotateRight(getSibling(book).right);
-					 return;
-					 
-				} else if (getSibling(book).left != null && this.getRedCount(getSibling(book).left) == 1) {
-				    // Left child of the sibling has exactly one red node
-					if(getSibling(book).left.right != null && getSibling(book).left.right.color == 1) {
-						// Left child's right child is red
-				        // Adjust the color of the left child's right child to black
-						getSibling(book).left.right.color = 0;
-						this.colorChanged.put(getSibling(book).left.right.getBookId(), 0);
-				        // Perform a right-left rotation on the left child of the sibling
-						this.rotateRightLeft(getSibling(book).left);
-						return;
-					} else {
-						// Left child's right child is not red
-				        // Adjust the color of the left child's left child to black
-						getSibling(book).left.left.color = 0;
-						this.colorChanged.put(getSibling(book).left.left.getBookId(), 0);
-				        // Perform a left rotation on the left child's left child of the sibling
+					} else if(getSibling(book).left != null && this.getRedCount(getSibling(book).left) == 2) {
+						 //Left child of the sibling has exactly two red nodes
+						 // Adjust the color of the left child's left child to black
+						this.recolor(getSibling(book).left.left, 0);
+					    // Perform a left rotation on the left child's left child of the sibling
 						this.rotateLeft(getSibling(book).left.left);
-				        // Perform a right-left rotation on the left child of the sibling
+					    // Perform a right-left rotation on the left child of the sibling
 						this.rotateRightLeft(getSibling(book).left);
-				        // Update the tree structure to maintain the Red-Black Tree properties
+					    // Update the tree structure to maintain the Red-Black Tree properties
 						Book grandParent = book.parent.parent;
 						Book grandChild = grandParent.right.right;
 						Book child = grandParent.right;
 						child.parent = grandChild;
 						child.right = grandChild.left;
-				        // Update the parent reference for the left child of grandChild
+					    // Update the parent reference for the left child of grandChild
 						if(grandChild.left != null) {
 							grandChild.left.parent = child;
 						}
+					    // Update references for grandChild
 						grandChild.left = child;
 						grandChild.parent = grandParent;
-				        // Update the parent's reference to grandChild
+					    // Update the parent's reference to grandChild
 						grandParent.right = grandChild;
+						this.touch(child);
 			            return;
-					}
-				} else if(getSibling(book).left != null && this.getRedCount(getSibling(book).left) == 2) {
-					 //Left child of the sibling has exactly two red nodes
-					 // Adjust the color of the left child's left child to black
-					getSibling(book).left.left.color = 0;
-					this.colorChanged.put(getSibling(book).left.left.getBookId(), 0);
-				    // Perform a left rotation on the left child's left child of the sibling
-					this.rotateLeft(getSibling(book).left.left);
-				    // Perform a right-left rotation on the left child of the sibling
-					this.rotateRightLeft(getSibling(book).left);
-				    // Update the tree structure to maintain the Red-Black Tree properties
-					Book grandParent = book.parent.parent;
-					Book grandChild = grandParent.right.right;
-					Book child = grandParent.right;
-					child.parent = grandChild;
-					child.right = grandChild.left;
-				    // Update the parent reference for the left child of grandChild
-					if(grandChild.left != null) {
-						grandChild.left.parent = child;
-					}
-				    // Update references for grandChild
-					grandChild.left = child;
-					grandChild.parent = grandParent;
-				    // Update the parent's reference to grandChild
-					grandParent.right = grandChild;
-		            return;
-				} else {
-					// Swap the colors of the parent and the sibling
-					int parentColor = book.parent.color;
-					book.parent.color = getSibling(book).color;
-					this.colorChanged.put(book.parent.getBookId(), getSibling(book).color);
-					getSibling(book).color = parentColor;
-					this.colorChanged.put(getSibling(book).getBookId(), parentColor);
-					// Store a reference to the sibling for further operations
-					Book sibling = getSibling(book);
-					// Update the root if the parent of the current node is the root
-					if(book.parent == this.root) {
-						this.root = sibling;
-					}
-					// Adjust the parent's left child to be the right child of the sibling
-					book.parent.left = sibling.right;
-					// Update the parent reference for the right child of the sibling
-					if(sibling.right != null) {
-						sibling.right.parent = book.parent;
-					}
-					// Update parent and sibling references
-					sibling.parent = book.parent;
-					book.parent = sibling;
-					// Update the parent's reference to the sibling
-					if(sibling.parent != null) {
-						if(sibling.parent.right == book.parent) {
-							sibling.parent.right = sibling;
-						} else {
-							sibling.parent.left = sibling;
+					} else {
+						// Swap the colors of the parent and the sibling
+						int parentColor = book.parent.color;
+						this.recolor(book.parent, getSibling(book).color);
+						this.recolor(getSibling(book), parentColor);
+						// Store a reference to the sibling for further operations
+						Book sibling = getSibling(book);
+						// Update the root if the parent of the current node is the root
+						if(book.parent == this.root) {
+							this.root = sibling;
 						}
+						// Adjust the parent's left child to be the right child of the sibling
+						book.parent.left = sibling.right;
+						// Update the parent reference for the right child of the sibling
+						if(sibling.right != null) {
+							sibling.right.parent = book.parent;
+						}
+						// Update parent and sibling references
+						sibling.parent = book.parent;
+						this.touch(book.parent);
+						book.parent = sibling;
+						// Update the parent's reference to the sibling
+						if(sibling.parent != null) {
+							if(sibling.parent.right == book.parent) {
+								sibling.parent.right = sibling;
+							} else {
+								sibling.parent.left = sibling;
+							}
+						}
+						// The node has a new sibling after the rotation, fix the tree again from the same node
+						continue;
 					}
-					// Recursively fix the tree structure upwards
-					this.fixDelete(book);
-					return;
 				}
 			}
 		}
@@ -1008,6 +1856,9 @@ public class RedBlackTree {
 	
 	// Rotate the given book node to the left
 	private Book rotateLeft(Book book) {
+		if(this.metrics != null) {
+			this.metrics.singleRotation();
+		}
 	    // Store references to the grandparent and the new parent (book's parent) of the rotated subtree
 		Book fNode = book.parent.parent;
 	    // Update the parent of the rotated subtree to the grandparent of the original parent
@@ -1032,12 +1883,16 @@ public class RedBlackTree {
 		if(fNode == this.root) {
 			this.root = book.parent;
 		}
+		this.touch(fNode);
 	    // Return the new parent (book's parent) after the rotation
 		return book.parent;
 	}
 	
 	// Rotate the given lastNode to the right
 	private Book rotateRight(Book lastNode) {
+		if(this.metrics != null) {
+			this.metrics.singleRotation();
+		}
 	    // Store references to the grandparent and the new parent (lastNode's parent) of the rotated subtree
 		Book fNode = lastNode.parent.parent;
 		lastNode.parent.parent = fNode.parent;
@@ -1060,12 +1915,16 @@ public class RedBlackTree {
 		if(fNode == this.root) {
 			this.root = lastNode.parent;
 		}
+		this.touch(fNode);
 	    // Return the new parent (lastNode's parent) after the rotation
 		return lastNode.parent;
 	}
 	
 	// Perform a left-right rotation on the given lastNode
 	private Book rotateLeftRight(Book lastNode) {
+		if(this.metrics != null) {
+			this.metrics.doubleRotation();
+		}
 	    // Store references to the grandparent and the new parent (lastNode's parent) of the rotated subtree
 		Book fNode = lastNode.parent.parent;
 	    // Update the left child of the grandparent to be the right child of lastNode
@@ -1098,12 +1957,17 @@ public class RedBlackTree {
 		 if(fNode == this.root) {
 			 this.root = lastNode;
 		 }
+		 this.touch(fNode);
+		 this.touch(lastNode.left);
 		    // Return lastNode after the left-right rotation
 		 return lastNode;
 	}
 	
 	// Perform a right-left rotation on the given node
 	private Book rotateRightLeft(Book node) {
+		if(this.metrics != null) {
+			this.metrics.doubleRotation();
+		}
 	    // Store references to the grandparent and the new parent (node's parent) of the rotated subtree
 		Book fNode = node.parent.parent;
 	    // Update the right child of the grandparent to be the left child of node
@@ -1135,6 +1999,8 @@ public class RedBlackTree {
 		 if(fNode == this.root) {
 			 this.root = node;
 		 }
+		 this.touch(fNode);
+		 this.touch(node.right);
 		    // Return node after the right-left rotation
 		 return node;
 	}
@@ -0,0 +1,223 @@
+import java.util.Arrays;
+
+/**
+ * Min-heap of the reservations of one book, ordered by priority number and then by the time the
+ * reservation was made.
+ *
+ * The reservations are stored in parallel primitive arrays (patron id, priority and time stamp) in
+ * heap order instead of a list of Reservation objects, so inserting and removing never allocates
+ * except when the arrays have to grow, and comparisons never unbox. A heap without reservations shares
+ * empty arrays, so the many books that are never reserved carry no arrays of their own. The patron ids
+ * can be read in heap order with {@link #getPatronId(int)}, which is the order the reservations are
+ * printed in. A patron is found by a scan of at most 32 reservations, a heap that grows larger gets a
+ * {@link PatronPositionMap} of the position of every patron, so {@link #contains(int)} takes constant
+ * time either way and a single reservation can be cancelled in O(log n). The heap has no size limit of
+ * its own, the number of reservations per book is limited by the library.
+ */
+public class ReservationHeap {
+
+	private static final int INITIAL_CAPACITY = 4;
+	//up to this many reservations a patron is found by a scan of the heap array, beyond it through the position map
+	private static final int LINEAR_SCAN_LIMIT = 32;
+	//shared by every heap without reservations, most books never get one
+	private static final int[] NO_INTS = new int[0];
+	private static final long[] NO_LONGS = new long[0];
+
+	private int[] patronIds = NO_INTS;
+	private int[] priorities = NO_INTS;
+	private long[] times = NO_LONGS;
+	private int size;
+	//positions of the patrons in the heap, only created once the heap outgrows the linear scan
+	private PatronPositionMap patrons;
+
+	public ReservationHeap() {
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	//checks if the patron already has a reservation in this heap
+	public boolean contains(int patronId) {
+		return this.indexOf(patronId) >= 0;
+	}
+
+	//returns the patron id of the reservation at the given position of the heap array
+	public int getPatronId(int index) {
+		return patronIds[index];
+	}
+
+	public int getPriorityNumber(int index) {
+		return priorities[index];
+	}
+
+	public long getTimeOfReservation(int index) {
+		return times[index];
+	}
+
+	/**
+	 * Adds a reservation at the end of the heap and moves it up until its parent is not larger.
+	 *
+	 * @param patronId          The ID of the patron making the reservation.
+	 * @param priorityNumber    The priority of the patron, lower numbers are served first.
+	 * @param timeOfReservation The unique time stamp of the reservation, breaks ties between equal priorities.
+	 * @throws IllegalArgumentException If the patron already has a reservation in this heap.
+	 */
+	public void insert(int patronId, int priorityNumber, long timeOfReservation) {
+		this.makeRoomFor(patronId);
+		siftUp(size++, patronId, priorityNumber, timeOfReservation);
+	}
+
+	//adds a reservation at the end without moving it, only for reservations read back in the heap order they were saved in
+	void append(int patronId, int priorityNumber, long timeOfReservation) {
+		this.makeRoomFor(patronId);
+		place(size++, patronId, priorityNumber, timeOfReservation);
+	}
+
+	private void makeRoomFor(int patronId) {
+		if(this.contains(patronId)) {
+			throw new IllegalArgumentException("Patron " + patronId + " already has a reservation");
+		}
+		if(size == patronIds.length) {
+			//the arrays are only allocated with the first reservation
+			int capacity = Math.max(INITIAL_CAPACITY, size * 2);
+			patronIds = Arrays.copyOf(patronIds, capacity);
+			priorities = Arrays.copyOf(priorities, capacity);
+			times = Arrays.copyOf(times, capacity);
+		}
+		if(patrons == null && size == LINEAR_SCAN_LIMIT) {
+			patrons = new PatronPositionMap();
+			for(int i = 0; i < size; i++) {
+				patrons.put(patronIds[i], i);
+			}
+		}
+	}
+
+	//returns the position of the patron's reservation in the heap array, or -1 if the patron has none
+	private int indexOf(int patronId) {
+		if(patrons != null) {
+			return patrons.get(patronId);
+		}
+		for(int i = 0; i < size; i++) {
+			if(patronIds[i] == patronId) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Removes the reservation with the highest priority, replaces it by the last reservation of the heap
+	 * and moves that one down until both children are larger.
+	 *
+	 * @return The patron id of the removed reservation.
+	 */
+	public int poll() {
+		int patronId = patronIds[0];
+		removeAt(0);
+		return patronId;
+	}
+
+	/**
+	 * Cancels the reservation of a patron in O(log n), the position of the reservation is looked up and
+	 * the last reservation of the heap takes its place.
+	 *
+	 * @param patronId The ID of the patron whose reservation is cancelled.
+	 * @return         True if the patron had a reservation in this heap.
+	 */
+	public boolean remove(int patronId) {
+		int index = this.indexOf(patronId);
+		if(index < 0) {
+			return false;
+		}
+		removeAt(index);
+		return true;
+	}
+
+	private void removeAt(int index) {
+		if(patrons != null) {
+			patrons.remove(patronIds[index]);
+		}
+		size--;
+		if(index == size) {
+			return;
+		}
+		int patronId = patronIds[size];
+		int priorityNumber = priorities[size];
+		long timeOfReservation = times[size];
+		//the last reservation fills the gap and moves up if it is smaller than the new parent, otherwise down
+		if(index > 0 && compare(priorityNumber, timeOfReservation, (index - 1) / 2) < 0) {
+			siftUp(index, patronId, priorityNumber, timeOfReservation);
+		} else {
+			place(index, patronId, priorityNumber, timeOfReservation);
+			siftDown(index);
+		}
+	}
+
+	//moves the parents down instead of swapping, the reservation is written once at its final position
+	private void siftUp(int currentIndex, int patronId, int priorityNumber, long timeOfReservation) {
+		while(currentIndex > 0) {
+			int parentIndex = (currentIndex - 1) / 2;
+			if(compare(priorityNumber, timeOfReservation, parentIndex) >= 0) {
+				break;
+			}
+			move(parentIndex, currentIndex);
+			currentIndex = parentIndex;
+		}
+		place(currentIndex, patronId, priorityNumber, timeOfReservation);
+	}
+
+	//iterative version of the heapify step, swaps the node with its smaller child until the heap property holds
+	private void siftDown(int i) {
+		while(true) {
+			int smallest = i;
+			int left = (2 * i) + 1;
+			int right = (2 * i) + 2;
+			if(left < size && compare(priorities[left], times[left], smallest) < 0) {
+				smallest = left;
+			}
+			if(right < size && compare(priorities[right], times[right], smallest) < 0) {
+				smallest = right;
+			}
+			if(smallest == i) {
+				return;
+			}
+			swap(i, smallest);
+			i = smallest;
+		}
+	}
+
+	//compare a reservation with the one at the given index based on priority and if priority is same then on the time of reservation
+	private int compare(int priorityNumber, long timeOfReservation, int index) {
+		if(priorityNumber != priorities[index]) {
+			return priorityNumber < priorities[index] ? -1 : 1;
+		}
+		return Long.compare(timeOfReservation, times[index]);
+	}
+
+	//every write of a reservation also records its new position in the position map, once the heap has one
+	private void place(int index, int patronId, int priorityNumber, long timeOfReservation) {
+		patronIds[index] = patronId;
+		priorities[index] = priorityNumber;
+		times[index] = timeOfReservation;
+		if(patrons != null) {
+			patrons.put(patronId, index);
+		}
+	}
+
+	private void move(int from, int to) {
+		place(to, patronIds[from], priorities[from], times[from]);
+	}
+
+	private void swap(int i, int j) {
+		int patronId = patronIds[i];
+		int priority = priorities[i];
+		long time = times[i];
+		move(j, i);
+		place(j, patronId, priority, time);
+	}
+}
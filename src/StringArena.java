@@ -0,0 +1,231 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Store of interned strings outside of the Java heap.
+ *
+ * Every distinct string is stored once as its UTF-8 bytes in direct memory pages and is identified by
+ * an int id, equal strings get the same id. Only the page and offset of every string, its reference
+ * count and an open addressing hash table of the ids stay on the heap, a few ints per distinct string
+ * instead of a String and its array.
+ *
+ * Every {@link #intern(String)} counts one more reference to the string and every
+ * {@link #release(int)} one less. A string without references is removed from the table and its id is
+ * reused, its bytes are dead until the arena is compacted: once the dead bytes outgrow the live ones,
+ * the live strings are copied into new pages and the old pages are left to the garbage collector, which
+ * frees their direct memory. Ids stay the same when the arena is compacted.
+ */
+public class StringArena {
+
+	private static final int PAGE_SIZE = 1 << 20;
+	private static final int INITIAL_CAPACITY = 1 << 10;
+	private static final int NONE = -1;
+
+	private ByteBuffer[] pages = new ByteBuffer[4];
+	private int pageCount;
+	//page index in the high and offset in the low half of each location, indexed by string id
+	private long[] locations = new long[INITIAL_CAPACITY];
+	//the hash of each string, a free id links to the next free id through its hash instead
+	private int[] hashes = new int[INITIAL_CAPACITY];
+	private int[] references = new int[INITIAL_CAPACITY];
+	//number of ids ever handed out, including the free ones
+	private int ids;
+	private int freeId = NONE;
+	private int count;
+	//string id + 1 at every used slot, 0 at a free one
+	private int[] table = new int[INITIAL_CAPACITY * 2];
+	private long offHeapBytes;
+	//bytes of the strings with references and of the removed strings that are still in the pages
+	private long liveBytes;
+	private long deadBytes;
+
+	//returns the number of distinct strings with references
+	public int size() {
+		return count;
+	}
+
+	//returns the number of bytes reserved outside of the heap
+	public long getOffHeapBytes() {
+		return offHeapBytes;
+	}
+
+	/**
+	 * Returns the id of a string and counts one more reference to it, storing the string first if the
+	 * arena does not have it yet.
+	 *
+	 * @param text The string, must not be null.
+	 * @return     The id of the string.
+	 */
+	public int intern(String text) {
+		byte[] encoded = text.getBytes(StandardCharsets.UTF_8);
+		int hash = Arrays.hashCode(encoded);
+		int mask = table.length - 1;
+		int slot = mix(hash) & mask;
+		while(table[slot] != 0) {
+			int id = table[slot] - 1;
+			if(hashes[id] == hash && matches(id, encoded)) {
+				references[id]++;
+				return id;
+			}
+			slot = (slot + 1) & mask;
+		}
+		int id = this.store(encoded, hash);
+		table[slot] = id + 1;
+		//the table is kept at most half full so that probe sequences stay short
+		if(count * 2 > table.length) {
+			this.rehash();
+		}
+		return id;
+	}
+
+	/**
+	 * Counts one reference less to a string, the string is removed once it has none left.
+	 *
+	 * @param id The id of a string returned by {@link #intern(String)} that was not released as often.
+	 */
+	public void release(int id) {
+		if(--references[id] > 0) {
+			return;
+		}
+		this.remove(id);
+		int bytes = 4 + length(id);
+		liveBytes -= bytes;
+		deadBytes += bytes;
+		hashes[id] = freeId;
+		freeId = id;
+		count--;
+		if(deadBytes > liveBytes && deadBytes >= PAGE_SIZE) {
+			this.compact();
+		}
+	}
+
+	//returns the string with the given id
+	public String get(int id) {
+		long location = locations[id];
+		ByteBuffer page = pages[(int) (location >>> 32)];
+		int offset = (int) location;
+		byte[] encoded = new byte[page.getInt(offset)];
+		page.get(offset + 4, encoded);
+		return new String(encoded, StandardCharsets.UTF_8);
+	}
+
+	private int store(byte[] encoded, int hash) {
+		int id;
+		if(freeId != NONE) {
+			id = freeId;
+			freeId = hashes[id];
+		} else {
+			if(ids == locations.length) {
+				locations = Arrays.copyOf(locations, ids * 2);
+				hashes = Arrays.copyOf(hashes, ids * 2);
+				references = Arrays.copyOf(references, ids * 2);
+			}
+			id = ids++;
+		}
+		locations[id] = this.append(encoded);
+		hashes[id] = hash;
+		references[id] = 1;
+		liveBytes += 4 + encoded.length;
+		count++;
+		return id;
+	}
+
+	//writes the length and the bytes of a string behind the last one and returns its location
+	private long append(byte[] encoded) {
+		int needed = 4 + encoded.length;
+		ByteBuffer page = pageCount == 0 ? null : pages[pageCount - 1];
+		if(page == null || page.remaining() < needed) {
+			//a string longer than a page gets a page of its own size
+			page = ByteBuffer.allocateDirect(Math.max(PAGE_SIZE, needed));
+			if(pageCount == pages.length) {
+				pages = Arrays.copyOf(pages, pageCount * 2);
+			}
+			pages[pageCount++] = page;
+			offHeapBytes += page.capacity();
+		}
+		int offset = page.position();
+		page.putInt(encoded.length);
+		page.put(encoded);
+		return ((long) (pageCount - 1) << 32) | offset;
+	}
+
+	//copies the strings with references into new pages, the direct memory of the old pages is freed with them
+	private void compact() {
+		ByteBuffer[] old = pages;
+		pages = new ByteBuffer[4];
+		pageCount = 0;
+		offHeapBytes = 0;
+		for(int id = 0; id < ids; id++) {
+			if(references[id] == 0) {
+				continue;
+			}
+			long location = locations[id];
+			ByteBuffer page = old[(int) (location >>> 32)];
+			int offset = (int) location;
+			byte[] encoded = new byte[page.getInt(offset)];
+			page.get(offset + 4, encoded);
+			locations[id] = this.append(encoded);
+		}
+		deadBytes = 0;
+	}
+
+	private int length(int id) {
+		long location = locations[id];
+		return pages[(int) (location >>> 32)].getInt((int) location);
+	}
+
+	private boolean matches(int id, byte[] encoded) {
+		long location = locations[id];
+		ByteBuffer page = pages[(int) (location >>> 32)];
+		int offset = (int) location;
+		if(page.getInt(offset) != encoded.length) {
+			return false;
+		}
+		for(int i = 0; i < encoded.length; i++) {
+			if(page.get(offset + 4 + i) != encoded[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	//takes the id out of the table, the following ids of its probe sequence move back into the gap so they can still be found
+	private void remove(int id) {
+		int mask = table.length - 1;
+		int gap = mix(hashes[id]) & mask;
+		while(table[gap] != id + 1) {
+			gap = (gap + 1) & mask;
+		}
+		for(int slot = (gap + 1) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+			int home = mix(hashes[table[slot] - 1]) & mask;
+			//the id may move back if the gap is not before its home slot on the way to its slot
+			if(((slot - home) & mask) >= ((slot - gap) & mask)) {
+				table[gap] = table[slot];
+				gap = slot;
+			}
+		}
+		table[gap] = 0;
+	}
+
+	private void rehash() {
+		table = new int[table.length * 2];
+		int mask = table.length - 1;
+		for(int id = 0; id < ids; id++) {
+			if(references[id] == 0) {
+				continue;
+			}
+			int slot = mix(hashes[id]) & mask;
+			while(table[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = id + 1;
+		}
+	}
+
+	//spreads the bits of the hash code so that similar strings do not cluster in the table
+	private static int mix(int hash) {
+		hash *= 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+}
@@ -0,0 +1,103 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Sorted index from a string, like the author or the title of a book, to the IDs of the books that
+ * have it.
+ *
+ * The strings are the keys of a {@link TreeMap}, so an exact lookup costs O(log n) and a prefix
+ * lookup O(log n + k) for the k matching strings, as the strings with a common prefix are neighbours
+ * in the sorted order. The IDs of one string are kept sorted in an int array whose first element is
+ * the number of IDs, which grows by doubling, so a string shared by many books costs four bytes per
+ * book instead of a boxed Integer. The index holds book IDs rather than books, as the tree moves the
+ * data of a book to another node when it deletes a book with two children.
+ */
+public class StringIndex {
+
+	private final TreeMap<String, int[]> books = new TreeMap<>();
+	private int size;
+
+	//adds the book under the given string, adding it a second time changes nothing
+	public void add(String key, int bookId) {
+		int[] ids = books.get(key);
+		if(ids == null) {
+			books.put(key, new int[] {1, bookId});
+			size++;
+			return;
+		}
+		int count = ids[0];
+		int position = Arrays.binarySearch(ids, 1, count + 1, bookId);
+		if(position >= 0) {
+			return;
+		}
+		position = -position - 1;
+		if(count + 1 == ids.length) {
+			ids = Arrays.copyOf(ids, ids.length * 2);
+			books.put(key, ids);
+		}
+		System.arraycopy(ids, position, ids, position + 1, count + 1 - position);
+		ids[position] = bookId;
+		ids[0] = count + 1;
+		size++;
+	}
+
+	//removes the book from the given string, the string is dropped with its last book
+	public void remove(String key, int bookId) {
+		int[] ids = books.get(key);
+		if(ids == null) {
+			return;
+		}
+		int count = ids[0];
+		int position = Arrays.binarySearch(ids, 1, count + 1, bookId);
+		if(position < 0) {
+			return;
+		}
+		size--;
+		if(count == 1) {
+			books.remove(key);
+			return;
+		}
+		System.arraycopy(ids, position + 1, ids, position, count - position);
+		ids[0] = count - 1;
+	}
+
+	//returns the IDs of the books with exactly this string in increasing order
+	public int[] find(String key) {
+		int[] ids = books.get(key);
+		return ids == null ? new int[0] : Arrays.copyOfRange(ids, 1, ids[0] + 1);
+	}
+
+	//returns the IDs of the books whose string starts with the prefix, in order of the string and then of the ID
+	public int[] findPrefix(String prefix) {
+		int[] result = new int[8];
+		int found = 0;
+		for(Map.Entry<String, int[]> entry : books.tailMap(prefix, true).entrySet()) {
+			if(!entry.getKey().startsWith(prefix)) {
+				break;
+			}
+			int[] ids = entry.getValue();
+			if(found + ids[0] > result.length) {
+				result = Arrays.copyOf(result, Math.max(result.length * 2, found + ids[0]));
+			}
+			System.arraycopy(ids, 1, result, found, ids[0]);
+			found += ids[0];
+		}
+		return Arrays.copyOf(result, found);
+	}
+
+	//the number of different strings in the index
+	public int keyCount() {
+		return books.size();
+	}
+
+	//the number of books in the index
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		books.clear();
+		size = 0;
+	}
+}
@@ -0,0 +1,96 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a check of the whole library tree by {@link RedBlackTree#validate()}.
+ *
+ * Besides the violations of the red-black rules, the book order, the parent links and the book count,
+ * it records the height and black height of the tree, and the height bound 2 * log2(n + 1) that every
+ * red-black tree of n books stays within. A violation message names the book it was found at. Only the
+ * first few messages are kept, but all violations are counted.
+ */
+public class TreeValidation {
+
+	private static final int MAX_MESSAGES = 10;
+
+	private final int bookCount;
+	private int height;
+	private int blackHeight;
+	private long violationCount;
+	private final List<String> violations = new ArrayList<>();
+
+	TreeValidation(int bookCount) {
+		this.bookCount = bookCount;
+	}
+
+	void violation(String message) {
+		if(violations.size() < MAX_MESSAGES) {
+			violations.add(message);
+		}
+		violationCount++;
+	}
+
+	void setShape(int height, int blackHeight) {
+		this.height = height;
+		this.blackHeight = blackHeight;
+	}
+
+	//the largest height h of a red-black tree of n books, h <= 2 * log2(n + 1) is the same as 2^h <= (n + 1)^2
+	public static int heightBound(int bookCount) {
+		long square = (long) (bookCount + 1) * (bookCount + 1);
+		return 63 - Long.numberOfLeadingZeros(square);
+	}
+
+	public boolean isValid() {
+		return violationCount == 0;
+	}
+
+	//the number of books the library counted, which the tree is checked against
+	public int getBookCount() {
+		return bookCount;
+	}
+
+	//the number of books on the longest path from the root to a leaf
+	public int getHeight() {
+		return height;
+	}
+
+	//the number of black books on every path from the root to a leaf, on the left-most path if the paths differ
+	public int getBlackHeight() {
+		return blackHeight;
+	}
+
+	public int getHeightBound() {
+		return heightBound(bookCount);
+	}
+
+	public long getViolationCount() {
+		return violationCount;
+	}
+
+	//the first violations that were found
+	public List<String> getViolations() {
+		return Collections.unmodifiableList(violations);
+	}
+
+	//the report written for the Validate() command, one line per violation after the summary
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append(this.isValid() ? "Tree is valid: " : "Tree is invalid: ")
+				.append(bookCount).append(" books, height ").append(height)
+				.append(", black height ").append(blackHeight)
+				.append(", height bound ").append(this.getHeightBound());
+		if(!this.isValid()) {
+			builder.append(", ").append(violationCount).append(violationCount == 1 ? " violation" : " violations");
+			for(String violation : violations) {
+				builder.append('\n').append(violation);
+			}
+			if(violationCount > violations.size()) {
+				builder.append("\n...");
+			}
+		}
+		return builder.toString();
+	}
+}
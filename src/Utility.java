@@ -1,25 +1,31 @@
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Utility {
 	
-	Long timeStamp = 0L;
+	//atomic so that reservations made from different threads still get unique time stamps
+	AtomicLong timeStamp = new AtomicLong();
 	
 	public RedBlackTree library = new RedBlackTree();
 	
 	//this is common method to write the data to the file
 	public void write(String data, OutputStream access) throws IOException {
-		access.write(data.getBytes());
+		if(access instanceof OutputSink) {
+			((OutputSink) access).append(data);
+		} else {
+			access.write(data.getBytes());
+		}
 		this.addNewLine(access);
 	}
 	
-	//this method will write the entire book data into file
+	//this method will write the entire book data into file, a buffered sink gets the fields directly instead of the string
 	public void writeTheBookData(Book book, OutputStream access) throws IOException {
-		String bookString = book.toString();
-		access.write(bookString.getBytes());
+		if(access instanceof OutputSink) {
+			book.writeTo((OutputSink) access);
+		} else {
+			access.write(book.toString().getBytes());
+		}
 		this.addNewLine(access);
 	}
 	
@@ -27,34 +33,38 @@ public class Utility {
 		return book.getAvailabilityStatus().toLowerCase().equals("yes") ? "None" : String.valueOf(book.getBorrowedBy());
 	}
 	
-	//this method will give the patron id's in reservation heap
-	public List<Integer> getPatronIds(List<Reservation> reservationList) {
-		if(reservationList != null && !reservationList.isEmpty()) {
-			return reservationList.stream().map(Reservation::getPatronId).collect(Collectors.toList());
-		}
-		return new ArrayList<>();
-	}
-	
 	//this method helps to create string of patron id's from reservation heap to write the data to the file
-	public String reservationString(List<Reservation> reservationList) {
-		String str = "";
-		if(reservationList != null && !reservationList.isEmpty()) {
-			for(Reservation reservation: reservationList) {
-				int patronId = reservation.getPatronId();
-				str = str + String.valueOf(patronId) +", ";
+	public String reservationString(ReservationHeap reservationHeap) {
+		StringBuilder str = new StringBuilder();
+		if(reservationHeap != null) {
+			for(int i = 0; i < reservationHeap.size(); i++) {
+				if(i > 0) {
+					str.append(", ");
+				}
+				str.append(reservationHeap.getPatronId(i));
 			}
 		}
-		return str.length() > 0 ? str.substring(0, str.length()-2) : str;
+		return str.toString();
 	}
 	
 	
 	//This method helps to maintain the unique reservation time
-	public Long getTimestampForReservation() {
-		return ++timeStamp;
+	public long getTimestampForReservation() {
+		return timeStamp.incrementAndGet();
+	}
+
+	//the last time stamp handed out, saved with a snapshot of the library
+	public long getLastTimestamp() {
+		return timeStamp.get();
+	}
+
+	//continues the time stamps after the given one, used when a library is loaded from a snapshot
+	public void setLastTimestamp(long lastTimestamp) {
+		timeStamp.set(lastTimestamp);
 	}
 	
 	//this method will add the new line to the file
 	public void addNewLine(OutputStream access) throws IOException {
-		access.write("\n".getBytes());
+		access.write('\n');
 	}
 }
@@ -0,0 +1,397 @@
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append only log of the commands that change a library, so that the library can be recovered after a
+ * crash by replaying the log on top of the latest {@link LibrarySnapshot}.
+ *
+ * The file starts with a header holding the sequence number of the record before its first record,
+ * every record after it is numbered one higher than the one before. A record is the length and CRC32
+ * of its payload followed by the payload, which is a type byte and the arguments of an InsertBook,
+ * BorrowBook, ReturnBook, DeleteBook or CancelReservation command. A record that is cut off or does not match its checksum
+ * marks the end of the log, it was being written when the program stopped.
+ *
+ * Records are collected in a buffer and made durable with group commit: one fsync covers every record
+ * appended before it, so the cost of a sync is shared by up to groupSize records of one thread, and
+ * threads waiting in {@link #sync(long)} at the same time share a single fsync as well.
+ */
+public class WriteAheadLog implements Closeable {
+
+	private static final int MAGIC = 0x4757414C;
+	//version 2 added the CancelReservation record, older programs must not replay or extend such a log
+	private static final int VERSION = 2;
+	private static final int HEADER_SIZE = 16;
+	private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+	//a longer record means the length itself was torn or overwritten
+	private static final int MAX_RECORD_SIZE = 1 << 24;
+
+	private static final byte INSERT_BOOK = 1;
+	private static final byte BORROW_BOOK = 2;
+	private static final byte RETURN_BOOK = 3;
+	private static final byte DELETE_BOOK = 4;
+	private static final byte CANCEL_RESERVATION = 5;
+
+	private final FileChannel channel;
+	private final int groupSize;
+	private final CRC32 crc = new CRC32();
+	private ByteBuffer buffer = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE);
+	//sequence number of the last appended record and of the last record that is known to be on disk
+	private long lastSequence;
+	private volatile long durableSequence;
+	private final Object syncLock = new Object();
+
+	/**
+	 * Opens the log for appending after the records that are already in it. The log has to be replayed
+	 * with {@link #replay(String, long, Consumer)} first, which also cuts off a torn last record.
+	 *
+	 * @param fileName     The log file, created if it does not exist.
+	 * @param lastSequence The sequence number of the last record in the log or in the snapshot it continues.
+	 * @param groupSize    The number of records that are appended before they are synced to disk.
+	 * @throws IOException If the file cannot be opened.
+	 */
+	public WriteAheadLog(String fileName, long lastSequence, int groupSize) throws IOException {
+		if(groupSize < 1) {
+			throw new IllegalArgumentException("Group size must be at least 1 but was " + groupSize);
+		}
+		this.channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		this.groupSize = groupSize;
+		this.lastSequence = lastSequence;
+		this.durableSequence = lastSequence;
+		if(channel.size() < HEADER_SIZE) {
+			writeHeader(lastSequence);
+		} else {
+			try {
+				readHeader(channel, fileName);
+			} catch(IOException e) {
+				channel.close();
+				throw e;
+			}
+		}
+		channel.position(channel.size());
+	}
+
+	public long getLastSequence() {
+		synchronized(this) {
+			return lastSequence;
+		}
+	}
+
+	/**
+	 * Appends a command to the log. Commands that do not change the library are not logged.
+	 *
+	 * @param command The command about to be applied to the library.
+	 * @return        The sequence number of the record, or of the last record if the command is not logged.
+	 * @throws IOException If the log cannot be written.
+	 */
+	public long append(Command command) throws IOException {
+		long sequence;
+		synchronized(this) {
+			if(!encode(command)) {
+				return lastSequence;
+			}
+			sequence = ++lastSequence;
+			if(sequence - durableSequence < groupSize) {
+				return sequence;
+			}
+		}
+		sync(sequence);
+		return sequence;
+	}
+
+	//makes every record appended so far durable
+	public void sync() throws IOException {
+		sync(getLastSequence());
+	}
+
+	/**
+	 * Waits until the record with the given sequence number is on disk. A thread that finds an fsync in
+	 * progress waits for it and returns without its own fsync if that one already covered its record.
+	 *
+	 * @param sequence The sequence number returned by {@link #append(Command)}.
+	 * @throws IOException If the log cannot be written.
+	 */
+	public void sync(long sequence) throws IOException {
+		if(sequence <= durableSequence) {
+			return;
+		}
+		synchronized(syncLock) {
+			if(sequence <= durableSequence) {
+				return;
+			}
+			long target;
+			synchronized(this) {
+				flushBuffer();
+				target = lastSequence;
+			}
+			//appends continue into the buffer while the channel is forced
+			channel.force(false);
+			durableSequence = target;
+		}
+	}
+
+	/**
+	 * Empties the log after a snapshot containing all its records was written. The log is cut to nothing
+	 * before the new header is written, so a crash in between leaves an empty log and never old records
+	 * behind a header that claims they are new.
+	 *
+	 * @param snapshotSequence The log sequence saved in the snapshot, the next record gets the number after it.
+	 * @throws IOException If the log cannot be written.
+	 */
+	public void reset(long snapshotSequence) throws IOException {
+		synchronized(syncLock) {
+			synchronized(this) {
+				if(snapshotSequence != lastSequence) {
+					throw new IllegalStateException("Snapshot at record " + snapshotSequence + " does not contain the log up to record " + lastSequence);
+				}
+				flushBuffer();
+				channel.truncate(0);
+				channel.force(false);
+				writeHeader(snapshotSequence);
+				channel.position(HEADER_SIZE);
+				durableSequence = snapshotSequence;
+			}
+		}
+	}
+
+	/**
+	 * Reads the commands of a log in order and hands every command after the snapshot to the consumer.
+	 * A torn or corrupt record at the end is cut off so that new records can follow the last good one.
+	 *
+	 * @param fileName         The log file, a missing or empty file is an empty log.
+	 * @param snapshotSequence The log sequence of the snapshot the commands are applied on, earlier records are skipped.
+	 * @param apply            Applies a command to the library.
+	 * @return                 The sequence number of the last record, or the snapshot sequence if the log has no later record.
+	 * @throws IOException If the log cannot be read or does not continue the snapshot.
+	 */
+	public static long replay(String fileName, long snapshotSequence, Consumer<Command> apply) throws IOException {
+		Path path = Paths.get(fileName);
+		if(!path.toFile().exists()) {
+			return snapshotSequence;
+		}
+		long sequence;
+		long validEnd;
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			if(channel.size() < HEADER_SIZE) {
+				//the log was being emptied by a checkpoint, the snapshot has everything
+				channel.truncate(0);
+				return snapshotSequence;
+			}
+			sequence = readHeader(channel, fileName);
+			if(sequence > snapshotSequence) {
+				throw new IOException("Log " + fileName + " starts after record " + sequence + " but the snapshot ends at record " + snapshotSequence);
+			}
+			channel.position(HEADER_SIZE);
+			DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), DEFAULT_BUFFER_SIZE));
+			validEnd = HEADER_SIZE;
+			CRC32 checksum = new CRC32();
+			byte[] payload = new byte[256];
+			while(true) {
+				int length;
+				int expected;
+				try {
+					length = in.readInt();
+					expected = in.readInt();
+					if(length < 1 || length > MAX_RECORD_SIZE) {
+						break;
+					}
+					if(length > payload.length) {
+						payload = new byte[Math.max(length, payload.length * 2)];
+					}
+					in.readFully(payload, 0, length);
+				} catch(EOFException e) {
+					break;
+				}
+				checksum.reset();
+				checksum.update(payload, 0, length);
+				if((int) checksum.getValue() != expected) {
+					break;
+				}
+				sequence++;
+				validEnd += 8 + length;
+				if(sequence > snapshotSequence) {
+					apply.accept(decode(ByteBuffer.wrap(payload, 0, length)));
+				}
+			}
+			if(sequence < snapshotSequence) {
+				//every record of the log is already in the snapshot, the log starts over after it
+				channel.truncate(0);
+				channel.force(false);
+				return snapshotSequence;
+			}
+			if(validEnd < channel.size()) {
+				channel.truncate(validEnd);
+				channel.force(false);
+			}
+		}
+		return sequence;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			sync();
+		} finally {
+			channel.close();
+		}
+	}
+
+	//checks that the file is a log of this version and returns the sequence number it starts after
+	private static long readHeader(FileChannel channel, String fileName) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		while(header.hasRemaining()) {
+			if(channel.read(header, header.position()) < 0) {
+				throw new EOFException(fileName + " ends inside the log header");
+			}
+		}
+		header.flip();
+		if(header.getInt() != MAGIC) {
+			throw new IOException(fileName + " is not a library log");
+		}
+		int version = header.getInt();
+		if(version != VERSION) {
+			throw new IOException("Unsupported log version " + version + " in " + fileName + ", expected version " + VERSION);
+		}
+		return header.getLong();
+	}
+
+	private void writeHeader(long baseSequence) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC).putInt(VERSION).putLong(baseSequence).flip();
+		while(header.hasRemaining()) {
+			channel.write(header, HEADER_SIZE - header.remaining());
+		}
+		channel.force(false);
+	}
+
+	//writes the record of a changing command into the buffer, returns false for any other command
+	private boolean encode(Command command) throws IOException {
+		byte[] bookName = null;
+		byte[] authorName = null;
+		byte[] availabilityStatus = null;
+		int length;
+		switch(command.getType()) {
+		case INSERT_BOOK:
+			bookName = bytes(command.getBookName());
+			authorName = bytes(command.getAuthorName());
+			availabilityStatus = bytes(command.getAvailabilityStatus());
+			length = 1 + 4 + stringLength(bookName) + stringLength(authorName) + stringLength(availabilityStatus);
+			break;
+		case BORROW_BOOK:
+			length = 1 + 12;
+			break;
+		case RETURN_BOOK:
+			length = 1 + 8;
+			break;
+		case DELETE_BOOK:
+			length = 1 + 4;
+			break;
+		case CANCEL_RESERVATION:
+			length = 1 + 8;
+			break;
+		default:
+			return false;
+		}
+		if(length > MAX_RECORD_SIZE) {
+			throw new IOException("Command is too large for the log");
+		}
+		if(buffer.remaining() < 8 + length) {
+			flushBuffer();
+			if(buffer.capacity() < 8 + length) {
+				buffer = ByteBuffer.allocate(8 + length);
+			}
+		}
+		int start = buffer.position();
+		buffer.position(start + 8);
+		switch(command.getType()) {
+		case INSERT_BOOK:
+			buffer.put(INSERT_BOOK).putInt(command.getBookId());
+			putString(bookName);
+			putString(authorName);
+			putString(availabilityStatus);
+			break;
+		case BORROW_BOOK:
+			buffer.put(BORROW_BOOK).putInt(command.getPatronId()).putInt(command.getBookId()).putInt(command.getPatronPriority());
+			break;
+		case RETURN_BOOK:
+			buffer.put(RETURN_BOOK).putInt(command.getPatronId()).putInt(command.getBookId());
+			break;
+		case CANCEL_RESERVATION:
+			buffer.put(CANCEL_RESERVATION).putInt(command.getPatronId()).putInt(command.getBookId());
+			break;
+		default:
+			buffer.put(DELETE_BOOK).putInt(command.getBookId());
+			break;
+		}
+		crc.reset();
+		crc.update(buffer.array(), start + 8, length);
+		buffer.putInt(start, length);
+		buffer.putInt(start + 4, (int) crc.getValue());
+		return true;
+	}
+
+	private static Command decode(ByteBuffer record) throws IOException {
+		byte type = record.get();
+		switch(type) {
+		case INSERT_BOOK:
+			return Command.insertBook(record.getInt(), getString(record), getString(record), getString(record));
+		case BORROW_BOOK:
+			return Command.borrowBook(record.getInt(), record.getInt(), record.getInt());
+		case RETURN_BOOK:
+			return Command.returnBook(record.getInt(), record.getInt());
+		case DELETE_BOOK:
+			return Command.deleteBook(record.getInt());
+		case CANCEL_RESERVATION:
+			return Command.cancelReservation(record.getInt(), record.getInt());
+		default:
+			throw new IOException("Unknown log record type " + type);
+		}
+	}
+
+	private void flushBuffer() throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	//a null string is stored with the length -1 like in the snapshot
+	private static byte[] bytes(String text) {
+		return text == null ? null : text.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static int stringLength(byte[] text) {
+		return 4 + (text == null ? 0 : text.length);
+	}
+
+	private void putString(byte[] text) {
+		if(text == null) {
+			buffer.putInt(-1);
+			return;
+		}
+		buffer.putInt(text.length);
+		buffer.put(text);
+	}
+
+	private static String getString(ByteBuffer record) {
+		int length = record.getInt();
+		if(length < 0) {
+			return null;
+		}
+		String text = new String(record.array(), record.arrayOffset() + record.position(), length, StandardCharsets.UTF_8);
+		record.position(record.position() + length);
+		return text;
+	}
+}
@@ -0,0 +1,138 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * {@link RedBlackTree#applyBatch(List, OutputStream, Utility)} against the same commands applied one by
+ * one.
+ *
+ * Random batches of InsertBook and DeleteBook, with books that are borrowed and reserved, deleted and
+ * inserted again within a batch, and deletes of books that are not there, must write the same messages
+ * and leave the same books and reservations as applying the commands one by one, in a tree that still
+ * follows the red black rules. Only the color flip count of a batch that rebuilds the tree may differ. On
+ * two libraries built the same way, a batch of less than a quarter of the library and a batch that
+ * inserts a book ID which is in the library at that point must also give the same color flip count, and
+ * a batch with another kind of command must be refused without writing or changing anything.
+ */
+public class ApplyBatchTest {
+
+	private static final int BOOK_IDS = 600;
+	private static final int PATRONS = 30;
+
+	public static void main(String[] args) throws IOException {
+		Random random = new Random(13);
+		RedBlackTree batched = new RedBlackTree();
+		Utility batchedUtility = new Utility();
+		RedBlackTree sequential = new RedBlackTree();
+		Utility sequentialUtility = new Utility();
+		Set<Integer> present = new HashSet<>();
+		for(int round = 0; round < 200; round++) {
+			//batches from a single command up to a large part of the library
+			int size = 1 + random.nextInt(round % 10 == 0 ? 400 : 20);
+			List<Command> batch = new ArrayList<>();
+			Set<Integer> ids = new HashSet<>(present);
+			for(int i = 0; i < size; i++) {
+				int bookId = 1 + random.nextInt(BOOK_IDS);
+				if(ids.contains(bookId) || random.nextInt(4) == 0) {
+					batch.add(Command.deleteBook(bookId));
+					ids.remove(bookId);
+				} else {
+					batch.add(Command.insertBook(bookId, "Book" + bookId, "Author" + (bookId % 7), "Yes"));
+					ids.add(bookId);
+				}
+			}
+			ByteArrayOutputStream batchedOutput = new ByteArrayOutputStream();
+			batched.applyBatch(batch, batchedOutput, batchedUtility);
+			ByteArrayOutputStream sequentialOutput = new ByteArrayOutputStream();
+			for(Command command : batch) {
+				CommandExecutor.execute(command, sequential, sequentialUtility, sequentialOutput);
+			}
+			present = ids;
+			Check.equal(sequentialOutput.toString(), batchedOutput.toString(), "messages of batch " + round);
+			Check.equal(books(sequential, sequentialUtility), books(batched, batchedUtility), "books after batch " + round);
+			Check.that(batched.validate().isValid(), "red black rules after batch " + round + ": " + batched.validate());
+
+			//borrows and reservations, so the next batches delete books with waitlists
+			for(int i = 0; i < 20; i++) {
+				Command command = Command.borrowBook(1 + random.nextInt(PATRONS), 1 + random.nextInt(BOOK_IDS), 1 + random.nextInt(5));
+				CommandExecutor.execute(command, batched, batchedUtility, OutputStream.nullOutputStream());
+				CommandExecutor.execute(command, sequential, sequentialUtility, OutputStream.nullOutputStream());
+			}
+		}
+
+		//small batches and batches inserting a book that is in the library, also twice after a delete in the same batch
+		List<List<Command>> batches = List.of(
+				List.of(Command.deleteBook(10), Command.insertBook(11, "A", "B", "Yes"), Command.deleteBook(BOOK_IDS + 1)),
+				List.of(Command.insertBook(20, "A", "B", "Yes"), Command.deleteBook(20), Command.deleteBook(20)),
+				List.of(Command.deleteBook(30), Command.insertBook(30, "A", "B", "Yes"), Command.insertBook(30, "C", "D", "Yes")));
+		for(int large = 0; large < 2; large++) {
+			for(List<Command> commands : batches) {
+				List<Command> batch = new ArrayList<>(commands);
+				//filling up the batch with deletes of missing books makes it rebuild the tree
+				while(large == 1 && batch.size() * 4 < BOOK_IDS / 2) {
+					batch.add(Command.deleteBook(BOOK_IDS + batch.size()));
+				}
+				RedBlackTree library = sameLibrary();
+				RedBlackTree single = sameLibrary();
+				ByteArrayOutputStream batchedOutput = new ByteArrayOutputStream();
+				library.applyBatch(batch, batchedOutput, new Utility());
+				ByteArrayOutputStream singleOutput = new ByteArrayOutputStream();
+				for(Command command : batch) {
+					CommandExecutor.execute(command, single, new Utility(), singleOutput);
+				}
+				String name = (large == 1 ? "large " : "small ") + "batch " + batch.subList(0, 3);
+				Check.equal(singleOutput.toString(), batchedOutput.toString(), "messages of " + name);
+				Check.equal(books(single, new Utility()), books(library, new Utility()), "books after " + name);
+				//only the large batch without a second insert of a book rebuilds the tree
+				if(large == 0 || commands != batches.get(0)) {
+					Check.equal(single.colorFlipCount, library.colorFlipCount, "color flip count after " + name);
+				} else {
+					Check.that(library.validate().isValid(), "red black rules after " + name);
+				}
+			}
+		}
+
+		//a batch with another command is refused before anything is written or changed
+		String before = books(batched, batchedUtility);
+		int flips = batched.colorFlipCount;
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		boolean thrown = false;
+		try {
+			batched.applyBatch(List.of(Command.deleteBook(present.iterator().next()), Command.borrowBook(1, 1, 1)), output, batchedUtility);
+		} catch(IllegalArgumentException e) {
+			thrown = true;
+		}
+		Check.that(thrown, "batch with a BorrowBook is refused");
+		Check.equal("", output.toString(), "refused batch writes nothing");
+		Check.equal(before, books(batched, batchedUtility), "refused batch changes no book");
+		Check.equal(flips, batched.colorFlipCount, "refused batch changes no color");
+		Check.done("ApplyBatchTest");
+	}
+
+	//the even book ids up to BOOK_IDS, inserted one by one in the same random order every time
+	private static RedBlackTree sameLibrary() {
+		Random random = new Random(7);
+		List<Integer> bookIds = new ArrayList<>();
+		for(int bookId = 2; bookId <= BOOK_IDS; bookId += 2) {
+			bookIds.add(bookId);
+		}
+		Collections.shuffle(bookIds, random);
+		RedBlackTree library = new RedBlackTree();
+		for(int bookId : bookIds) {
+			library.insertBook(bookId, "Book" + bookId, "Author", "Yes");
+		}
+		return library;
+	}
+
+	private static String books(RedBlackTree library, Utility utility) throws IOException {
+		ByteArrayOutputStream books = new ByteArrayOutputStream();
+		library.printBooks(Integer.MIN_VALUE, Integer.MAX_VALUE, utility, books);
+		return books.toString();
+	}
+}
@@ -0,0 +1,117 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * {@link OffHeapBookTree} and {@link ArrayBookTree} against the {@link RedBlackTree} of the library.
+ *
+ * A random stream of inserts, deletes, lookups, floor, ceiling and higher searches and range scans is
+ * run on all three trees, every answer of the index trees must be the same book as the library tree
+ * gives, and the index trees must hold as many books. The books get new names all the time, so the
+ * {@link StringArena} of the off-heap tree has to drop the strings of deleted books and compact its
+ * pages: its direct memory must stay far below the bytes of all names ever inserted, and once every
+ * book is deleted no string may be left.
+ */
+public class BookTreeEquivalenceTest {
+
+	private static final int BOOK_IDS = 4000;
+	private static final int COMMANDS = 200_000;
+	//long names fill the pages of the arena quickly
+	private static final String PADDING = "x".repeat(1000);
+
+	public static void main(String[] args) throws IOException {
+		Random random = new Random(16);
+		RedBlackTree library = new RedBlackTree();
+		OffHeapBookTree offHeap = new OffHeapBookTree();
+		ArrayBookTree array = new ArrayBookTree();
+		List<IndexedBookTree> trees = List.of(offHeap, array);
+		Utility utility = new Utility();
+		long nameBytes = 0;
+		for(int i = 0; i < COMMANDS; i++) {
+			int bookId = 1 + random.nextInt(BOOK_IDS);
+			int choice = random.nextInt(100);
+			if(choice < 40) {
+				//the library tree adds a second book with the same id, so only absent ids are inserted
+				if(library.getBookFromLibrary(library.getRoot(), bookId) == null) {
+					String name = "Book" + bookId + "-" + i + PADDING;
+					String author = "Author" + random.nextInt(50);
+					String status = random.nextBoolean() ? "Yes" : "No";
+					nameBytes += name.length();
+					library.insertBook(bookId, name, author, status);
+					for(IndexedBookTree tree : trees) {
+						tree.insertBook(bookId, name, author, status);
+					}
+				}
+			} else if(choice < 75) {
+				boolean present = library.getBookFromLibrary(library.getRoot(), bookId) != null;
+				library.deleteBookFromLibrary(bookId, OutputStream.nullOutputStream(), utility);
+				for(IndexedBookTree tree : trees) {
+					Check.equal(present, tree.deleteBook(bookId), name(tree) + " deletes book " + bookId);
+				}
+			} else if(choice < 85) {
+				for(IndexedBookTree tree : trees) {
+					Check.equal(text(library.getBookFromLibrary(library.getRoot(), bookId)), text(tree.getBookFromLibrary(bookId)), name(tree) + " finds book " + bookId);
+					Check.equal(library.getBookFromLibrary(library.getRoot(), bookId) != null, tree.contains(bookId), name(tree) + " contains book " + bookId);
+				}
+			} else if(choice < 95) {
+				for(IndexedBookTree tree : trees) {
+					Check.equal(text(library.floor(bookId)), text(tree.floor(bookId)), name(tree) + " floor of " + bookId);
+					Check.equal(text(library.ceiling(bookId)), text(tree.ceiling(bookId)), name(tree) + " ceiling of " + bookId);
+					Check.equal(text(library.higher(bookId)), text(tree.higher(bookId)), name(tree) + " higher than " + bookId);
+				}
+			} else {
+				int end = bookId + random.nextInt(200);
+				List<String> expected = texts(library.getBooksInRange(bookId, end));
+				for(IndexedBookTree tree : trees) {
+					Check.equal(expected, texts(tree.getBooksInRange(bookId, end)), name(tree) + " books from " + bookId + " to " + end);
+				}
+			}
+			if(i % 1000 == 0) {
+				for(IndexedBookTree tree : trees) {
+					Check.equal(library.getBookCount(), tree.size(), name(tree) + " size after " + i + " commands");
+				}
+			}
+		}
+		Check.that(offHeap.getOffHeapBytes() < nameBytes / 4, "off-heap bytes " + offHeap.getOffHeapBytes() + " stay far below the " + nameBytes + " bytes of all names");
+
+		//deleting every book leaves no string in the arena
+		Iterator<Book> books = library.getBooksInRange(Integer.MIN_VALUE, Integer.MAX_VALUE);
+		List<Integer> bookIds = new ArrayList<>();
+		while(books.hasNext()) {
+			bookIds.add(books.next().getBookId());
+		}
+		for(int bookId : bookIds) {
+			for(IndexedBookTree tree : trees) {
+				Check.that(tree.deleteBook(bookId), name(tree) + " deletes book " + bookId + " at the end");
+			}
+		}
+		for(IndexedBookTree tree : trees) {
+			Check.equal(0, tree.size(), name(tree) + " is empty");
+		}
+		Check.equal(0, offHeap.getStringCount(), "strings left in the arena");
+		Check.done("BookTreeEquivalenceTest");
+	}
+
+	//the fields the index trees keep, the library tree also has reservations and a borrower
+	private static String text(Book book) {
+		if(book == null) {
+			return null;
+		}
+		return book.getBookId() + " " + book.getBookName() + " " + book.getAuthorName() + " " + book.getAvailabilityStatus();
+	}
+
+	private static List<String> texts(Iterator<Book> books) {
+		List<String> texts = new ArrayList<>();
+		while(books.hasNext()) {
+			texts.add(text(books.next()));
+		}
+		return texts;
+	}
+
+	private static String name(IndexedBookTree tree) {
+		return tree.getClass().getSimpleName();
+	}
+}
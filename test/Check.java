@@ -0,0 +1,31 @@
+/**
+ * Minimal assertions for the test programs, which run without a test framework.
+ *
+ * A failed check prints its message and is counted, so one run reports every failure of a test.
+ * {@link #done(String)} ends the test with exit code 1 if any check failed.
+ */
+public class Check {
+
+	private static int checks;
+	private static int failures;
+
+	public static void that(boolean condition, String message) {
+		checks++;
+		if(!condition) {
+			failures++;
+			System.out.println("FAILED: " + message);
+		}
+	}
+
+	public static void equal(Object expected, Object actual, String message) {
+		boolean same = expected == null ? actual == null : expected.equals(actual);
+		that(same, same ? message : message + "\n  expected: " + expected + "\n  actual:   " + actual);
+	}
+
+	public static void done(String test) {
+		System.out.println(test + ": " + checks + " checks, " + failures + " failed");
+		if(failures > 0) {
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,196 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Recovery of a {@link DurableLibrary} from every state a crash during {@link DurableLibrary#checkpoint()}
+ * can leave on disk.
+ *
+ * A checkpoint writes the snapshot to a temporary file, renames it over the old snapshot, syncs the
+ * directory and then empties the log. The test builds the files of a crash after each of these steps
+ * by hand, from a library that had a checkpoint and more changes after it, and opens the library from
+ * them. Each one must recover the same books, reservations, time stamps and color flip count as a
+ * tree that applied the same commands in memory, and must go on logging after the recovered records.
+ * The state the directory sync rules out, the emptied log without the rename, must be refused instead
+ * of silently losing the changes.
+ */
+public class CheckpointCrashTest {
+
+	private static final int GROUP_SIZE = 8;
+
+	public static void main(String[] args) throws IOException {
+		Path work = Files.createTempDirectory("checkpoint-crash");
+		try {
+			run(work);
+		} finally {
+			delete(work);
+		}
+		Check.done("CheckpointCrashTest");
+	}
+
+	private static void run(Path work) throws IOException {
+		Random random = new Random(15);
+		RedBlackTree expected = new RedBlackTree();
+		Utility expectedUtility = new Utility();
+
+		//a checkpoint, then changes that are only in the log
+		Path base = work.resolve("base");
+		long sequence;
+		try(DurableLibrary library = DurableLibrary.open(base.toString(), GROUP_SIZE)) {
+			sequence = mutate(library, expected, expectedUtility, random, 400);
+			library.checkpoint();
+			sequence += mutate(library, expected, expectedUtility, random, 300);
+		}
+		Check.equal(state(expected, expectedUtility), openState(base), "recovery from snapshot and log");
+
+		//the snapshot the interrupted checkpoint writes
+		Path newSnapshot = work.resolve("new.snapshot");
+		LibrarySnapshot.write(expected, expectedUtility, newSnapshot.toString(), sequence);
+		byte[] snapshotBytes = Files.readAllBytes(newSnapshot);
+
+		Path torn = copy(base, work.resolve("torn-temporary"));
+		Files.write(torn.resolve("library.snapshot.tmp"), Arrays.copyOf(snapshotBytes, snapshotBytes.length / 2));
+		recover(torn, "crash while writing the temporary snapshot", expected, expectedUtility, random);
+
+		Path written = copy(base, work.resolve("temporary-written"));
+		Files.copy(newSnapshot, written.resolve("library.snapshot.tmp"));
+		recover(written, "crash before the rename", expected, expectedUtility, random);
+
+		Path renamed = copy(base, work.resolve("renamed"));
+		Files.copy(newSnapshot, renamed.resolve("library.snapshot"), StandardCopyOption.REPLACE_EXISTING);
+		recover(renamed, "crash after the rename before the log is emptied", expected, expectedUtility, random);
+
+		Path truncated = copy(base, work.resolve("truncated"));
+		Files.copy(newSnapshot, truncated.resolve("library.snapshot"), StandardCopyOption.REPLACE_EXISTING);
+		truncateLog(truncated, 0);
+		recover(truncated, "crash after the log is cut before its header is written", expected, expectedUtility, random);
+
+		Path tornHeader = copy(base, work.resolve("torn-header"));
+		Files.copy(newSnapshot, tornHeader.resolve("library.snapshot"), StandardCopyOption.REPLACE_EXISTING);
+		truncateLog(tornHeader, 0);
+		Files.write(tornHeader.resolve("library.log"), new byte[] {0x47, 0x57, 0x41, 0x4C, 0, 0});
+		recover(tornHeader, "crash while the new log header is written", expected, expectedUtility, random);
+
+		//a complete checkpoint, the log only holds its header
+		Path complete = copy(base, work.resolve("complete"));
+		try(DurableLibrary library = DurableLibrary.open(complete.toString(), GROUP_SIZE)) {
+			library.checkpoint();
+		}
+		Check.that(!Files.exists(complete.resolve("library.snapshot.tmp")), "the checkpoint leaves no temporary snapshot");
+		Check.equal(16L, Files.size(complete.resolve("library.log")), "the checkpoint empties the log");
+		Path lostRename = copy(complete, work.resolve("lost-rename"));
+		recover(complete, "completed checkpoint", expected, expectedUtility, random);
+
+		//what a crash could leave without the directory sync: the emptied log but the old snapshot
+		Files.copy(base.resolve("library.snapshot"), lostRename.resolve("library.snapshot"), StandardCopyOption.REPLACE_EXISTING);
+		boolean refused = false;
+		try {
+			DurableLibrary.open(lostRename.toString(), GROUP_SIZE).close();
+		} catch(IOException e) {
+			refused = true;
+			Check.that(e.getMessage().contains("starts after record"), "lost rename is reported: " + e.getMessage());
+		}
+		Check.that(refused, "a log that starts after the snapshot must be refused");
+	}
+
+	//opens the crashed directory, compares it, then checks that new changes survive a second recovery
+	private static void recover(Path directory, String crash, RedBlackTree expected, Utility expectedUtility, Random random) throws IOException {
+		String before = state(expected, expectedUtility);
+		Check.equal(before, openState(directory), crash);
+		//a copy of the expected library, the other crash states still need the original
+		Path copy = directory.resolveSibling(directory.getFileName() + ".expected");
+		LibrarySnapshot.write(expected, expectedUtility, copy.toString());
+		Utility continuedUtility = new Utility();
+		RedBlackTree continued = LibrarySnapshot.load(copy.toString(), continuedUtility);
+		try(DurableLibrary library = DurableLibrary.open(directory.toString(), GROUP_SIZE)) {
+			mutate(library, continued, continuedUtility, random, 100);
+		}
+		Check.equal(state(continued, continuedUtility), openState(directory), crash + ", then more changes");
+	}
+
+	//applies random changes to the durable library and the same changes to the expected tree, returns the number of logged commands
+	private static long mutate(DurableLibrary library, RedBlackTree expected, Utility utility, Random random, int count) throws IOException {
+		OutputStream discard = OutputStream.nullOutputStream();
+		long logged = 0;
+		for(int i = 0; i < count; i++) {
+			logged++;
+			int bookId = 1 + random.nextInt(60);
+			int patronId = 1 + random.nextInt(25);
+			switch(random.nextInt(5)) {
+			case 0:
+				//the library expects new IDs, like the command files
+				if(expected.getBookFromLibrary(expected.getRoot(), bookId) != null) {
+					logged--;
+					break;
+				}
+				library.insertBook(bookId, "Book" + bookId, "Author" + bookId % 7, "Yes");
+				expected.insertBook(bookId, "Book" + bookId, "Author" + bookId % 7, "Yes");
+				break;
+			case 1:
+				int priority = 1 + random.nextInt(5);
+				library.borrowBook(patronId, bookId, priority, discard);
+				expected.borrowBook(patronId, bookId, priority, discard, utility);
+				break;
+			case 2:
+				library.returnBook(patronId, bookId, discard);
+				expected.returnBook(patronId, bookId, discard, utility);
+				break;
+			case 3:
+				library.deleteBookFromLibrary(bookId, discard);
+				expected.deleteBookFromLibrary(bookId, discard, utility);
+				break;
+			default:
+				library.cancelReservation(patronId, bookId, discard);
+				expected.cancelReservation(patronId, bookId, discard, utility);
+				break;
+			}
+		}
+		return logged;
+	}
+
+	private static String openState(Path directory) throws IOException {
+		try(DurableLibrary library = DurableLibrary.open(directory.toString(), GROUP_SIZE)) {
+			return state(library.getLibrary(), library.getUtility());
+		}
+	}
+
+	//every book with its reservations, the color flip count and the last reservation time stamp
+	static String state(RedBlackTree library, Utility utility) throws IOException {
+		ByteArrayOutputStream books = new ByteArrayOutputStream();
+		library.printBooks(Integer.MIN_VALUE, Integer.MAX_VALUE, utility, books);
+		return books + "flips " + library.colorFlipCount + ", time " + utility.getLastTimestamp();
+	}
+
+	private static void truncateLog(Path directory, long size) throws IOException {
+		try(FileChannel channel = FileChannel.open(directory.resolve("library.log"), StandardOpenOption.WRITE)) {
+			channel.truncate(size);
+		}
+	}
+
+	private static Path copy(Path from, Path to) throws IOException {
+		Files.createDirectories(to);
+		try(Stream<Path> files = Files.list(from)) {
+			for(Path file : (Iterable<Path>) files::iterator) {
+				Files.copy(file, to.resolve(file.getFileName()));
+			}
+		}
+		return to;
+	}
+
+	private static void delete(Path directory) throws IOException {
+		try(Stream<Path> files = Files.walk(directory)) {
+			for(Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+				Files.delete(file);
+			}
+		}
+	}
+}
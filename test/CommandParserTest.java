@@ -0,0 +1,49 @@
+/**
+ * The lines {@link CommandParser} accepts and skips, in particular lines with numbers that do not fit
+ * into an int.
+ *
+ * Like the regular expressions it replaced, the parser skips a malformed line whatever numbers it
+ * holds, and only a well formed command with a number that is too large fails. A failed line must
+ * not leave anything behind for the next one.
+ */
+public class CommandParserTest {
+
+	public static void main(String[] args) {
+		CommandParser parser = new CommandParser();
+
+		Command insert = parser.parse("InsertBook(4, \"Book 4\",  \"Author 2\", \"Yes\")");
+		Check.that(insert != null && insert.getType() == Command.Type.INSERT_BOOK, "InsertBook is parsed");
+		Check.equal("4 Book 4 Author 2 Yes", insert.getBookId() + " " + insert.getBookName() + " " + insert.getAuthorName() + " " + insert.getAvailabilityStatus(), "InsertBook arguments");
+		Command borrow = parser.parse("BorrowBook(12,4,\t3)");
+		Check.equal("12 4 3", borrow.getPatronId() + " " + borrow.getBookId() + " " + borrow.getPatronPriority(), "BorrowBook arguments");
+		Command range = parser.parse("PrintBooks(2147483646, 2147483647)");
+		Check.equal("2147483646 2147483647", range.getStart() + " " + range.getEnd(), "the largest int fits");
+		Check.equal(Command.Type.PRINT_BOOK, parser.parse("PrintBook(7) trailing text").getType(), "text after the command is ignored");
+		Check.equal(Command.Type.QUIT, parser.parse("Quit()").getType(), "Quit is parsed");
+
+		Check.that(parser.parse("") == null, "an empty line is skipped");
+		Check.that(parser.parse("PrintBook(7") == null, "a missing parenthesis is skipped");
+		Check.that(parser.parse("PrintBook(-7)") == null, "a negative number is skipped");
+		Check.that(parser.parse("InsertBook(4, \"\", \"Author\", \"Yes\")") == null, "an empty string argument is skipped");
+		Check.that(parser.parse("Quit() now") == null, "a command without arguments must be the whole line");
+
+		Check.that(parser.parse("FindClosestBook(9538779112,") == null, "a malformed line with a large number is skipped");
+		Check.that(parser.parse("BorrowBook(99999999999, 3)") == null, "a large number in a command with too few arguments is skipped");
+		Check.that(parser.parse("PrintBooks(2147483648 , 3)") == null, "a large number before a malformed separator is skipped");
+		Check.equal(Command.Type.FIND_CLOSEST_BOOK, parser.parse("FindClosestBook(12)").getType(), "the line after an overflow parses");
+		failsWith(parser, "FindClosestBook(9538779112)", "9538779112");
+		failsWith(parser, "PrintBooks(1, 2147483648)", "2147483648");
+		failsWith(parser, "ReturnBook(1, 00000000002147483648)", "00000000002147483648");
+
+		Check.done("CommandParserTest");
+	}
+
+	private static void failsWith(CommandParser parser, String line, String number) {
+		try {
+			parser.parse(line);
+			Check.that(false, line + " must fail");
+		} catch(NumberFormatException e) {
+			Check.equal("For input string: \"" + number + "\"", e.getMessage(), line + " fails like Integer.parseInt");
+		}
+	}
+}
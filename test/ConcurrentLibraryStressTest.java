@@ -0,0 +1,203 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Multi-threaded stress test of {@link ConcurrentLibrary}.
+ *
+ * Every thread mixes borrows and returns of a few shared books, inserts and deletes of its own churn
+ * books, which all threads borrow and read, reads of all kinds, and borrows and returns of books only it
+ * uses, with patrons only it uses. Afterwards the tree must pass {@link ConcurrentLibrary#validate()},
+ * every waitlist must hold distinct patrons other than the borrower, and an available book must have
+ * an empty waitlist. The books of one thread must end up exactly like in a library that ran only the
+ * commands of that thread on them, waitlist order included, as the other threads never touch them.
+ *
+ * Usage: java ConcurrentLibraryStressTest [threads] [commands per thread]
+ */
+public class ConcurrentLibraryStressTest {
+
+	private static final int SHARED_BOOKS = 64;
+	private static final int SHARED_PATRONS = 40;
+	private static final int CHURN_BOOKS = 4096;
+	private static final int OWN_BOOKS = 24;
+	//more patrons than the 20 reservations a book allows, so that full waitlists are hit as well
+	private static final int OWN_PATRONS = 30;
+	private static final int OWN_BASE = 1_000_000;
+
+	public static void main(String[] args) throws InterruptedException, IOException {
+		int threadCount = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		int commands = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+		ConcurrentLibrary library = new ConcurrentLibrary(16);
+		for(int i = 1; i <= SHARED_BOOKS; i++) {
+			library.insertBook(sharedBook(i), "Shared" + i, "Author", "Yes");
+		}
+		for(int t = 0; t < threadCount; t++) {
+			for(int k = 0; k < OWN_BOOKS; k++) {
+				library.insertBook(ownBook(t, k), "Own" + k, "Author" + t, "Yes");
+			}
+		}
+		List<List<Command>> histories = new ArrayList<>();
+		List<Thread> threads = new ArrayList<>();
+		List<Throwable> errors = new ArrayList<>();
+		for(int t = 0; t < threadCount; t++) {
+			List<Command> history = new ArrayList<>();
+			histories.add(history);
+			int thread = t;
+			Thread worker = new Thread(() -> work(library, threadCount, thread, commands, history));
+			worker.setUncaughtExceptionHandler((failed, e) -> {
+				synchronized(errors) {
+					errors.add(e);
+				}
+			});
+			threads.add(worker);
+		}
+		for(Thread thread : threads) {
+			thread.start();
+		}
+		for(Thread thread : threads) {
+			thread.join();
+		}
+		for(Throwable error : errors) {
+			Check.that(false, "a thread failed: " + error);
+		}
+
+		TreeValidation validation = library.validate();
+		Check.that(validation.isValid(), validation.toString());
+
+		ByteArrayOutputStream all = new ByteArrayOutputStream();
+		library.printBooks(0, Integer.MAX_VALUE, all);
+		int books = 0;
+		for(String book : all.toString().split("\n\n")) {
+			books++;
+			checkWaitlist(book);
+		}
+		Check.equal(validation.getBookCount(), books, "PrintBooks shows every book of the tree");
+
+		//the books of every thread against a library that only ran that thread's commands
+		for(int t = 0; t < threadCount; t++) {
+			RedBlackTree expected = new RedBlackTree();
+			Utility utility = new Utility();
+			for(int k = 0; k < OWN_BOOKS; k++) {
+				expected.insertBook(ownBook(t, k), "Own" + k, "Author" + t, "Yes");
+			}
+			for(Command command : histories.get(t)) {
+				CommandExecutor.execute(command, expected, utility, OutputStream.nullOutputStream());
+			}
+			for(int k = 0; k < OWN_BOOKS; k++) {
+				ByteArrayOutputStream actual = new ByteArrayOutputStream();
+				library.printBook(ownBook(t, k), actual);
+				Check.equal(expected.getBookFromLibrary(expected.getRoot(), ownBook(t, k)).toString() + "\n", actual.toString(),
+						"book " + ownBook(t, k) + " of thread " + t);
+			}
+		}
+		Check.done("ConcurrentLibraryStressTest");
+	}
+
+	private static void work(ConcurrentLibrary library, int threads, int thread, int commands, List<Command> history) {
+		Random random = new Random(thread);
+		OutputStream discard = OutputStream.nullOutputStream();
+		//every thread inserts and deletes its own churn books, as the library does not check that a new ID is unused
+		boolean[] inserted = new boolean[CHURN_BOOKS];
+		try {
+			for(int i = 0; i < commands; i++) {
+				int choice = random.nextInt(100);
+				if(choice < 25) {
+					int bookId = sharedBook(1 + random.nextInt(SHARED_BOOKS));
+					int patronId = 1 + random.nextInt(SHARED_PATRONS);
+					if(random.nextBoolean()) {
+						library.borrowBook(patronId, bookId, 1 + random.nextInt(5), discard);
+					} else {
+						library.returnBook(patronId, bookId, discard);
+					}
+				} else if(choice < 55) {
+					int bookId = ownBook(thread, random.nextInt(OWN_BOOKS));
+					int patronId = ownPatron(thread, random.nextInt(OWN_PATRONS));
+					Command command = random.nextInt(3) > 0
+							? Command.borrowBook(patronId, bookId, 1 + random.nextInt(5))
+							: Command.returnBook(patronId, bookId);
+					if(command.getType() == Command.Type.BORROW_BOOK) {
+						library.borrowBook(patronId, bookId, command.getPatronPriority(), discard);
+					} else {
+						library.returnBook(patronId, bookId, discard);
+					}
+					history.add(command);
+				} else if(choice < 75) {
+					int k = random.nextInt(CHURN_BOOKS);
+					int bookId = churnBook(threads, thread, k);
+					if(inserted[k]) {
+						library.deleteBookFromLibrary(bookId, discard);
+					} else {
+						library.insertBook(bookId, "Churn" + bookId, "Author", "Yes");
+					}
+					inserted[k] = !inserted[k];
+				} else if(choice < 82) {
+					//churn books of all threads come and go while they are borrowed and waited for
+					int bookId = churnBook(threads, random.nextInt(threads), random.nextInt(CHURN_BOOKS));
+					library.borrowBook(1 + random.nextInt(SHARED_PATRONS), bookId, 1 + random.nextInt(5), discard);
+				} else if(choice < 90) {
+					library.printBook(random.nextInt(2 * CHURN_BOOKS * threads), discard);
+				} else if(choice < 97) {
+					library.findClosestBooks(random.nextInt(OWN_BASE + 1000 * 64), discard);
+				} else {
+					int start = random.nextInt(2 * CHURN_BOOKS * threads);
+					library.printBooks(start, start + 50, discard);
+				}
+			}
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	//the waitlist of a printed book holds distinct patrons, never the borrower, and is empty if the book is available
+	private static void checkWaitlist(String book) {
+		String[] lines = book.split("\n");
+		String id = lines[0];
+		String availability = value(lines, "Availability = ");
+		String borrowedBy = value(lines, "BorrowedBy = ");
+		String reservations = value(lines, "Reservations = ");
+		Check.that(reservations.startsWith("[") && reservations.endsWith("]"), id + " has a waitlist: " + book);
+		String list = reservations.substring(1, reservations.length() - 1);
+		String[] patrons = list.isEmpty() ? new String[0] : list.split(", ");
+		Set<String> distinct = new HashSet<>(List.of(patrons));
+		Check.that(distinct.size() == patrons.length, id + " has a patron twice on its waitlist: " + reservations);
+		Check.that(!distinct.contains(borrowedBy), id + " has its borrower on its waitlist: " + book);
+		Check.that(patrons.length <= 20, id + " has more than 20 reservations");
+		if(availability.equals("\"Yes\"")) {
+			Check.that(borrowedBy.equals("None") && patrons.length == 0, id + " is available but borrowed or reserved: " + book);
+		} else {
+			Check.that(!borrowedBy.equals("None"), id + " is unavailable without a borrower: " + book);
+		}
+	}
+
+	private static String value(String[] lines, String prefix) {
+		for(String line : lines) {
+			if(line.startsWith(prefix)) {
+				return line.substring(prefix.length());
+			}
+		}
+		return "";
+	}
+
+	private static int sharedBook(int i) {
+		return 2 * i;
+	}
+
+	//odd ids between and after the shared books, each thread inserts and deletes every threads-th one
+	private static int churnBook(int threads, int thread, int i) {
+		return 2 * (i * threads + thread) + 1;
+	}
+
+	private static int ownBook(int thread, int k) {
+		return OWN_BASE + 1000 * thread + k;
+	}
+
+	private static int ownPatron(int thread, int k) {
+		return 1000 * (thread + 1) + k;
+	}
+}
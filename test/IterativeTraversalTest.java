@@ -0,0 +1,107 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Random command streams on the {@link RedBlackTree}, whose search, delete and delete fix-up used to
+ * call themselves and now run in loops.
+ *
+ * Every stream mixes InsertBook, DeleteBook, BorrowBook, ReturnBook, PrintBook, PrintBooks,
+ * FindClosestBook and ColorFlipCount on a key range of its own, from a few dozen ids, where nearly
+ * every delete has to rebalance, to thousands of ids, and ends with Quit(). The checksum of the output
+ * of each stream must be the one the recursive implementation wrote for it, which was recorded by
+ * running the same stream through gatorLibrary before the change, color flip counts included. While a
+ * stream runs, the tree must follow the red black rules after every change, and the loop search must
+ * find the same book as a recursive search for random ids.
+ */
+public class IterativeTraversalTest {
+
+	private static final int COMMANDS = 4000;
+	//key range of every stream, and the checksum of its output written by the recursive implementation
+	private static final int[] KEY_RANGES = {16, 40, 100, 250, 600, 1500, 4000, 10000};
+	private static final long[] EXPECTED = {
+		1410346918L, 3594772185L, 2638142628L, 74450014L, 2025129196L, 2365008587L, 1760282719L, 2485162259L,
+	};
+
+	public static void main(String[] args) throws IOException {
+		for(int stream = 0; stream < KEY_RANGES.length; stream++) {
+			RedBlackTree library = new RedBlackTree();
+			Utility utility = new Utility();
+			CommandParser parser = new CommandParser();
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			Random probes = new Random(stream);
+			boolean valid = true;
+			boolean found = true;
+			for(String line : commands(stream)) {
+				Command command = parser.parse(line);
+				CommandExecutor.execute(command, library, utility, output);
+				if(command.getType() == Command.Type.INSERT_BOOK || command.getType() == Command.Type.DELETE_BOOK) {
+					valid &= library.validate().isValid();
+				}
+				int bookId = 1 + probes.nextInt(KEY_RANGES[stream]);
+				found &= library.getBookFromLibrary(library.getRoot(), bookId) == search(library.getRoot(), bookId);
+			}
+			Check.that(valid, "red black rules after every change of stream " + stream);
+			Check.that(found, "loop search finds the book of the recursive search in stream " + stream);
+			CRC32 checksum = new CRC32();
+			checksum.update(output.toByteArray());
+			Check.equal(EXPECTED[stream], checksum.getValue(), "checksum of the output of stream " + stream);
+		}
+		Check.done("IterativeTraversalTest");
+	}
+
+	//the recursive search the library used before
+	private static Book search(Book book, int bookId) {
+		if(book == null || bookId == book.getBookId()) {
+			return book;
+		}
+		return search(bookId < book.getBookId() ? book.left : book.right, bookId);
+	}
+
+	/**
+	 * Returns the command lines of a stream, in the syntax of the input files of gatorLibrary so that
+	 * the stream could be run through the recursive implementation as well. Only ids which are not in
+	 * the library are inserted, as the library adds a second book with the same id.
+	 *
+	 * @param stream The index of the stream, which picks its key range and random seed.
+	 * @return       The command lines, ending with Quit().
+	 */
+	static List<String> commands(int stream) {
+		Random random = new Random(18_000 + stream);
+		int keys = KEY_RANGES[stream];
+		Set<Integer> present = new HashSet<>();
+		List<String> lines = new ArrayList<>();
+		for(int i = 0; i < COMMANDS; i++) {
+			int bookId = 1 + random.nextInt(keys);
+			int patronId = 1 + random.nextInt(30);
+			int choice = random.nextInt(100);
+			if(choice < 35) {
+				if(present.add(bookId)) {
+					lines.add("InsertBook(" + bookId + ", \"Book " + bookId + "\", \"Author " + (bookId % 7) + "\", \"Yes\")");
+				}
+			} else if(choice < 60) {
+				present.remove(bookId);
+				lines.add("DeleteBook(" + bookId + ")");
+			} else if(choice < 72) {
+				lines.add("BorrowBook(" + patronId + ", " + bookId + ", " + (1 + random.nextInt(5)) + ")");
+			} else if(choice < 80) {
+				lines.add("ReturnBook(" + patronId + ", " + bookId + ")");
+			} else if(choice < 86) {
+				lines.add("PrintBook(" + bookId + ")");
+			} else if(choice < 90) {
+				lines.add("PrintBooks(" + bookId + ", " + (bookId + random.nextInt(keys / 4 + 1)) + ")");
+			} else if(choice < 97) {
+				lines.add("FindClosestBook(" + bookId + ")");
+			} else {
+				lines.add("ColorFlipCount()");
+			}
+		}
+		lines.add("Quit()");
+		return lines;
+	}
+}